@@ -0,0 +1,375 @@
+package com.j256.simplezip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.j256.simplezip.ZipFileRandomInput.FileDataDecoderInputStream;
+import com.j256.simplezip.codec.CodecPool;
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.Zip64CentralDirectoryEnd;
+import com.j256.simplezip.format.ZipCentralDirectoryEnd;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipFileHeader;
+import com.j256.simplezip.format.ZipFileHeaderView;
+
+/**
+ * Read a Zip-file asynchronously using an {@link AsynchronousFileChannel}. The central-directory is read when the
+ * reader is opened and then the file-headers and file data of the entries are read with positional reads which
+ * return {@link CompletableFuture}s. This allows a large number of Zip-files to be read at the same time with a small
+ * pool of threads because no thread is blocked waiting on the disk.
+ *
+ * <p>
+ * The read completions and the decoding of the file data are run by the executor passed to
+ * {@link #open(Path, ExecutorService)}. The file data of an entry is read into memory before it is decoded so this
+ * is best suited to Zip-files with small to medium sized entries.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class AsyncZipFileReader implements Closeable {
+
+	private final AsynchronousFileChannel channel;
+	private final ExecutorService executor;
+	private final ZipCentralDirectoryEnd directoryEnd;
+	private final Zip64CentralDirectoryEnd zip64DirectoryEnd;
+	private final List<ZipCentralDirectoryFileEntry> directoryFileEntries;
+	private final ZipCentralDirectoryNameIndex nameIndex;
+	private volatile CodecPool codecPool = CodecPool.getDefaultPool();
+
+	private AsyncZipFileReader(AsynchronousFileChannel channel, ExecutorService executor,
+			ZipCentralDirectoryEnd directoryEnd, Zip64CentralDirectoryEnd zip64DirectoryEnd,
+			ByteBuffer directoryBuffer) throws IOException {
+		this.channel = channel;
+		this.executor = executor;
+		this.directoryEnd = directoryEnd;
+		this.zip64DirectoryEnd = zip64DirectoryEnd;
+		List<ZipCentralDirectoryFileEntry> entries = new ArrayList<>();
+		ByteBuffer buffer = directoryBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			ZipCentralDirectoryFileEntry entry = ZipCentralDirectoryFileEntry.read(buffer);
+			if (entry == null) {
+				break;
+			}
+			entries.add(entry);
+		}
+		this.directoryFileEntries = Collections.unmodifiableList(entries);
+		this.nameIndex = new ZipCentralDirectoryNameIndex(directoryBuffer);
+	}
+
+	/**
+	 * Open a Zip-file and asynchronously read its central-directory.
+	 *
+	 * @param path
+	 *            Path to the Zip-file.
+	 * @param executor
+	 *            Executor which handles the read completions and the decoding of the file data. It is not shut down
+	 *            when the reader is closed.
+	 * @return Future which completes with the reader once the central-directory has been read. You must call
+	 *         {@link #close()} to close the reader when you are done with it.
+	 */
+	public static CompletableFuture<AsyncZipFileReader> open(Path path, final ExecutorService executor) {
+		final AsynchronousFileChannel channel;
+		final long size;
+		try {
+			channel = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), executor);
+		} catch (IOException | RuntimeException e) {
+			return failedFuture(e);
+		}
+		try {
+			size = channel.size();
+		} catch (IOException | RuntimeException e) {
+			try {
+				channel.close();
+			} catch (IOException ioe) {
+				// ignore it since we are already failing
+			}
+			return failedFuture(e);
+		}
+
+		// read in the end of the file which should contain the directory end, its comment, and any zip64 locator
+		final int tailLength = (int) Math.min(size, ZipFileRandomInput.END_FIXED_SIZE
+				+ IoUtils.MAX_UNSIGNED_SHORT_VALUE + ZipFileRandomInput.ZIP64_LOCATOR_EXTENDED_SIZE);
+		final long tailOffset = size - tailLength;
+		final byte[] tail = new byte[tailLength];
+		CompletableFuture<AsyncZipFileReader> future = IoUtils
+				.readFully(channel, ByteBuffer.wrap(tail), tailOffset, "ZipCentralDirectoryEnd")
+				.thenCompose(new Function<ByteBuffer, CompletableFuture<AsyncZipFileReader>>() {
+					@Override
+					public CompletableFuture<AsyncZipFileReader> apply(ByteBuffer buffer) {
+						try {
+							return readDirectory(channel, executor, tail, tailOffset);
+						} catch (IOException ioe) {
+							throw new CompletionException(ioe);
+						}
+					}
+				});
+		// close the channel if we could not open the Zip-file
+		future.whenComplete(new BiConsumer<AsyncZipFileReader, Throwable>() {
+			@Override
+			public void accept(AsyncZipFileReader reader, Throwable throwable) {
+				if (throwable != null) {
+					try {
+						channel.close();
+					} catch (IOException ioe) {
+						// ignore it since we are already failing
+					}
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Return the central-directory end which was read from the end of the Zip-file.
+	 */
+	public ZipCentralDirectoryEnd getDirectoryEnd() {
+		return directoryEnd;
+	}
+
+	/**
+	 * Return the Zip64 central-directory end or null if the Zip-file is not in Zip64 format.
+	 */
+	public Zip64CentralDirectoryEnd getZip64DirectoryEnd() {
+		return zip64DirectoryEnd;
+	}
+
+	/**
+	 * Return the central-directory file-entries which were read when the reader was opened.
+	 */
+	public List<ZipCentralDirectoryFileEntry> getDirectoryFileEntries() {
+		return directoryFileEntries;
+	}
+
+	/**
+	 * Find the central-directory file-entry associated with a file-name.
+	 *
+	 * @return The entry or null if none has the name.
+	 */
+	public ZipCentralDirectoryFileEntry findDirectoryFileEntry(String fileName) throws IOException {
+		return nameIndex.findEntry(fileName);
+	}
+
+	/**
+	 * Asynchronously read the file-header associated with the central-directory entry.
+	 */
+	public CompletableFuture<ZipFileHeader> readFileHeader(final ZipCentralDirectoryFileEntry entry) {
+		final long headerOffset = entry.getZip64RelativeOffsetOfLocalHeader();
+		return readFileHeaderView(entry).thenCompose(new Function<ZipFileHeaderView, CompletableFuture<ByteBuffer>>() {
+			@Override
+			public CompletableFuture<ByteBuffer> apply(ZipFileHeaderView headerView) {
+				ByteBuffer buffer = ByteBuffer.allocate(headerView.getRecordSize());
+				return IoUtils.readFully(channel, buffer, headerOffset, "ZipFileHeader");
+			}
+		}).thenApply(new Function<ByteBuffer, ZipFileHeader>() {
+			@Override
+			public ZipFileHeader apply(ByteBuffer buffer) {
+				buffer.flip();
+				try {
+					ZipFileHeader header = ZipFileHeader.read(buffer.order(ByteOrder.LITTLE_ENDIAN));
+					if (header == null) {
+						throw invalidHeader(entry);
+					}
+					return header;
+				} catch (IOException ioe) {
+					throw new CompletionException(ioe);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously read all of file data associated with the central-directory entry into a byte array and decode
+	 * it. The decoding is run by the executor.
+	 */
+	public CompletableFuture<byte[]> readFileDataAll(ZipCentralDirectoryFileEntry entry) {
+		return readFileData(entry, false);
+	}
+
+	/**
+	 * Asynchronously read all of raw file data associated with the central-directory entry into a byte array without
+	 * decoding it.
+	 */
+	public CompletableFuture<byte[]> readRawFileDataAll(ZipCentralDirectoryFileEntry entry) {
+		return readFileData(entry, true);
+	}
+
+	/**
+	 * Close the underlying channel. Any reads which are still in progress will fail.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Set the pool that is used to get the inflaters and buffers used when decoding file data. By default the
+	 * {@link CodecPool#getDefaultPool()} is used.
+	 */
+	public void setCodecPool(CodecPool codecPool) {
+		this.codecPool = codecPool;
+	}
+
+	private CompletableFuture<byte[]> readFileData(final ZipCentralDirectoryFileEntry entry, final boolean raw) {
+		final long compressedSize = entry.getZip64CompressedSize();
+		if (compressedSize > Integer.MAX_VALUE) {
+			return failedFuture(new IOException("File data for " + entry.getFileName() + " is too large to be read "
+					+ "into memory: " + compressedSize + " bytes"));
+		}
+		final long headerOffset = entry.getZip64RelativeOffsetOfLocalHeader();
+		return readFileHeaderView(entry).thenCompose(new Function<ZipFileHeaderView, CompletableFuture<ByteBuffer>>() {
+			@Override
+			public CompletableFuture<ByteBuffer> apply(ZipFileHeaderView headerView) {
+				ByteBuffer buffer = ByteBuffer.allocate((int) compressedSize);
+				return IoUtils.readFully(channel, buffer, headerOffset + headerView.getRecordSize(),
+						"file data for " + entry.getFileName());
+			}
+		}).thenApplyAsync(new Function<ByteBuffer, byte[]>() {
+			@Override
+			public byte[] apply(ByteBuffer buffer) {
+				if (raw) {
+					return buffer.array();
+				}
+				try {
+					return decode(entry, buffer.array());
+				} catch (IOException ioe) {
+					throw new CompletionException(ioe);
+				}
+			}
+		}, executor);
+	}
+
+	private byte[] decode(ZipCentralDirectoryFileEntry entry, byte[] encoded) throws IOException {
+		if (entry.getCompressionMethod() == CompressionMethod.NONE.getValue()) {
+			return encoded;
+		}
+		RewindableInputStream rewindableStream =
+				new RewindableInputStream(new ByteArrayInputStream(encoded), IoUtils.STANDARD_BUFFER_SIZE);
+		CodecPool pool = codecPool;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (InputStream inputStream = new FileDataDecoderInputStream(ZipFileRandomInput
+				.createFileDataDecoder(entry.getCompressionMethod(), rewindableStream, encoded.length, pool))) {
+			IoUtils.copyStream(inputStream, baos);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Read the fixed part of the file-header to find the size of the header record.
+	 */
+	private CompletableFuture<ZipFileHeaderView> readFileHeaderView(final ZipCentralDirectoryFileEntry entry) {
+		ByteBuffer buffer =
+				ByteBuffer.allocate(ZipFileRandomInput.FILE_HEADER_FIXED_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		return IoUtils.readFully(channel, buffer, entry.getZip64RelativeOffsetOfLocalHeader(), "ZipFileHeader")
+				.thenApply(new Function<ByteBuffer, ZipFileHeaderView>() {
+					@Override
+					public ZipFileHeaderView apply(ByteBuffer buffer) {
+						ZipFileHeaderView headerView = new ZipFileHeaderView();
+						if (!headerView.wrap(buffer, 0)) {
+							throw new CompletionException(invalidHeader(entry));
+						}
+						return headerView;
+					}
+				});
+	}
+
+	private static CompletableFuture<AsyncZipFileReader> readDirectory(final AsynchronousFileChannel channel,
+			final ExecutorService executor, byte[] tail, long tailOffset) throws IOException {
+		int endIndex = ZipFileRandomInput.findDirectoryEnd(tail);
+		if (endIndex < 0) {
+			throw new IOException("Could not locate the Zip central-directory end in the last " + tail.length
+					+ " bytes of the Zip-file");
+		}
+		final long endOffset = tailOffset + endIndex;
+		final ZipCentralDirectoryEnd directoryEnd = ZipCentralDirectoryEnd
+				.read(ByteBuffer.wrap(tail, endIndex, tail.length - endIndex).slice().order(ByteOrder.LITTLE_ENDIAN));
+
+		// the tail has room for the zip64 locator right before the end unless the file is too short for one
+		int locatorLength = Math.min(endIndex, ZipFileRandomInput.ZIP64_LOCATOR_EXTENDED_SIZE);
+		ByteBuffer locatorBuffer = ByteBuffer.wrap(tail, endIndex - locatorLength, locatorLength).slice()
+				.order(ByteOrder.LITTLE_ENDIAN);
+		final long zip64EndOffset = ZipFileRandomInput.findZip64EndOffset(locatorBuffer, locatorLength);
+		if (zip64EndOffset < 0) {
+			return readDirectoryEntries(channel, executor, directoryEnd, null, directoryEnd.getDirectoryOffset(),
+					endOffset);
+		}
+
+		if (zip64EndOffset > endOffset) {
+			throw new IOException("Zip64 locator points to an invalid Zip64 end at offset " + zip64EndOffset);
+		}
+		ByteBuffer zip64Buffer = ByteBuffer.allocate((int) (endOffset - zip64EndOffset));
+		return IoUtils.readFully(channel, zip64Buffer, zip64EndOffset, "Zip64CentralDirectoryEnd")
+				.thenCompose(new Function<ByteBuffer, CompletableFuture<AsyncZipFileReader>>() {
+					@Override
+					public CompletableFuture<AsyncZipFileReader> apply(ByteBuffer buffer) {
+						buffer.flip();
+						try {
+							Zip64CentralDirectoryEnd zip64DirectoryEnd =
+									Zip64CentralDirectoryEnd.read(buffer.order(ByteOrder.LITTLE_ENDIAN));
+							if (zip64DirectoryEnd == null) {
+								throw new IOException(
+										"Zip64 locator points to an invalid Zip64 end at offset " + zip64EndOffset);
+							}
+							return readDirectoryEntries(channel, executor, directoryEnd, zip64DirectoryEnd,
+									zip64DirectoryEnd.getDirectoryOffset(), zip64EndOffset);
+						} catch (IOException ioe) {
+							throw new CompletionException(ioe);
+						}
+					}
+				});
+	}
+
+	private static CompletableFuture<AsyncZipFileReader> readDirectoryEntries(final AsynchronousFileChannel channel,
+			final ExecutorService executor, final ZipCentralDirectoryEnd directoryEnd,
+			final Zip64CentralDirectoryEnd zip64DirectoryEnd, long directoryOffset, long directoryLimit)
+			throws IOException {
+		if (directoryOffset > directoryLimit) {
+			throw new IOException(
+					"Zip central-directory offset " + directoryOffset + " is after its end " + directoryLimit);
+		}
+		long directorySize = directoryLimit - directoryOffset;
+		if (directorySize > Integer.MAX_VALUE) {
+			throw new IOException("Zip central-directory size " + directorySize + " is too large to be read");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) directorySize);
+		return IoUtils.readFully(channel, buffer, directoryOffset, "ZipCentralDirectoryFileEntry")
+				.thenApply(new Function<ByteBuffer, AsyncZipFileReader>() {
+					@Override
+					public AsyncZipFileReader apply(ByteBuffer buffer) {
+						buffer.flip();
+						try {
+							return new AsyncZipFileReader(channel, executor, directoryEnd, zip64DirectoryEnd,
+									buffer.order(ByteOrder.LITTLE_ENDIAN));
+						} catch (IOException ioe) {
+							throw new CompletionException(ioe);
+						}
+					}
+				});
+	}
+
+	private static IOException invalidHeader(ZipCentralDirectoryFileEntry entry) {
+		return new IOException("Invalid file-header signature at offset "
+				+ entry.getZip64RelativeOffsetOfLocalHeader() + " for " + entry.getFileName());
+	}
+
+	private static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(throwable);
+		return future;
+	}
+}
@@ -0,0 +1,179 @@
+package com.j256.simplezip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+import com.j256.simplezip.codec.CodecPool;
+import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
+import com.j256.simplezip.format.ZipFileHeader;
+
+/**
+ * Write a Zip-file asynchronously using an {@link AsynchronousFileChannel}. Each call returns a
+ * {@link CompletableFuture} right away and the operations on the Zip-file are sequenced so the entries are encoded by
+ * the executor and written to the file in the order that they were submitted. No thread is blocked waiting on the
+ * disk so a large number of Zip-files can be written at the same time with a small pool of threads.
+ *
+ * <p>
+ * The entries are encoded with a {@link ZipFileOutput} into memory and then the encoded bytes are written to the
+ * channel so the file data of each entry should be small to medium sized. If an operation fails then all of the
+ * following operations on the writer fail with the same exception.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class AsyncZipFileWriter implements Closeable {
+
+	private final AsynchronousFileChannel channel;
+	private final ExecutorService executor;
+	private final DrainableOutputStream sink = new DrainableOutputStream();
+	private final ZipFileOutput zipFileOutput = new ZipFileOutput(sink);
+
+	private CompletableFuture<Long> lastOperation = CompletableFuture.completedFuture(0L);
+	private long position;
+	private boolean zipFinished;
+
+	/**
+	 * Start writing a Zip-file to a path. The file is created or truncated. You must call {@link #finishZip()} and
+	 * then {@link #close()} when you are done.
+	 *
+	 * @param path
+	 *            Path to the Zip-file.
+	 * @param executor
+	 *            Executor which encodes the entries and handles the write completions. It is not shut down when the
+	 *            writer is closed.
+	 */
+	public AsyncZipFileWriter(Path path, ExecutorService executor) throws IOException {
+		this.channel = AsynchronousFileChannel.open(path, EnumSet.of(StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), executor);
+		this.executor = executor;
+	}
+
+	/**
+	 * Asynchronously write the file-header and the file data, encoded based on the
+	 * {@link ZipFileHeader#getCompressionMethod()}, once the previous operations on this writer have completed. The
+	 * buffer must not be changed until the returned future has completed.
+	 *
+	 * @return Future which completes with the number of bytes written to the Zip-file so far.
+	 */
+	public synchronized CompletableFuture<Long> writeFileData(final ZipFileHeader header, final byte[] buffer) {
+		if (zipFinished) {
+			throw new IllegalStateException("Cannot write file data after the zip has been finished");
+		}
+		return sequence(new EncodeOperation() {
+			@Override
+			public void encode() throws IOException {
+				zipFileOutput.writeFileHeader(header);
+				zipFileOutput.writeFileDataAll(buffer);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously finish writing the Zip-file by writing the central-directory once the previous operations on this
+	 * writer have completed. See {@link ZipFileOutput#finishZip()}.
+	 *
+	 * @return Future which completes with the size of the Zip-file.
+	 */
+	public CompletableFuture<Long> finishZip() {
+		return finishZip(null);
+	}
+
+	/**
+	 * Asynchronously finish writing the Zip-file with a comment. See
+	 * {@link ZipFileOutput#finishZip(ZipCentralDirectoryEndInfo)}.
+	 *
+	 * @return Future which completes with the size of the Zip-file.
+	 */
+	public synchronized CompletableFuture<Long> finishZip(final ZipCentralDirectoryEndInfo endInfo) {
+		if (zipFinished) {
+			return lastOperation;
+		}
+		zipFinished = true;
+		return sequence(new EncodeOperation() {
+			@Override
+			public void encode() throws IOException {
+				zipFileOutput.finishZip(endInfo);
+			}
+		});
+	}
+
+	/**
+	 * Set the pool that is used to get the deflaters and buffers used when encoding. By default the
+	 * {@link CodecPool#getDefaultPool()} is used. This should be called before any file data is written.
+	 */
+	public void setCodecPool(CodecPool codecPool) {
+		zipFileOutput.setCodecPool(codecPool);
+	}
+
+	/**
+	 * Close the underlying channel. This should be called after the future returned by {@link #finishZip()} has
+	 * completed otherwise any writes still in progress will fail.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Run the encode operation in the executor after the last operation has completed and then write the encoded
+	 * bytes to the channel.
+	 */
+	private CompletableFuture<Long> sequence(final EncodeOperation operation) {
+		lastOperation = lastOperation.thenComposeAsync(new Function<Long, CompletableFuture<Long>>() {
+			@Override
+			public CompletableFuture<Long> apply(Long ignored) {
+				try {
+					operation.encode();
+					zipFileOutput.flush();
+				} catch (IOException ioe) {
+					throw new CompletionException(ioe);
+				}
+				// the next operation does not run until this write completes so the sink bytes are not overwritten
+				ByteBuffer encoded = sink.drain();
+				final long writePosition = position;
+				position += encoded.remaining();
+				return IoUtils.writeFully(channel, encoded, writePosition)
+						.thenApply(new Function<Integer, Long>() {
+							@Override
+							public Long apply(Integer numWritten) {
+								return writePosition + numWritten;
+							}
+						});
+			}
+		}, executor);
+		return lastOperation;
+	}
+
+	/**
+	 * Encoding that is done with the Zip-file output as part of an operation.
+	 */
+	private interface EncodeOperation {
+		public void encode() throws IOException;
+	}
+
+	/**
+	 * Output stream which collects the encoded bytes so they can be written to the channel.
+	 */
+	private static class DrainableOutputStream extends ByteArrayOutputStream {
+
+		/**
+		 * Return a buffer wrapping the collected bytes and reset the stream. The returned buffer is only valid until
+		 * the stream is written to again.
+		 */
+		public ByteBuffer drain() {
+			ByteBuffer buffer = ByteBuffer.wrap(buf, 0, count);
+			reset();
+			return buffer;
+		}
+	}
+}
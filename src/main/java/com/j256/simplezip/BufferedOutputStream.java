@@ -6,22 +6,42 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
 
 import com.j256.simplezip.format.GeneralPurposeFlag;
 import com.j256.simplezip.format.ZipDataDescriptor;
 import com.j256.simplezip.format.ZipFileHeader;
 import com.j256.simplezip.format.ZipFileHeader.Builder;
+import com.j256.simplezip.format.extra.Zip64ExtraField;
 
 /**
  * Class which helps the writer by absorbing the encoded (compressed) stream information so that we can annotate the
  * {@link ZipFileHeader} with the encoded size and checksums and not have to use the {@link ZipDataDescriptor} which is
  * written after the data.
  * 
+ * <p>
+ * The bytes written to the output-stream are coalesced in a write buffer so that the many small writes of the Zip
+ * record fields go out to the underlying stream as a single bulk write. The write buffer is written out at the end of
+ * each file's data and when the stream is flushed.
+ * </p>
+ * 
+ * <p>
+ * If patching is enabled with a seekable channel then instead of buffering, a placeholder file-header is written
+ * before the file data and then the channel is used to patch the CRC32 and sizes into it once the data is finished.
+ * </p>
+ * 
  * @author graywatson
  */
 public class BufferedOutputStream extends OutputStream {
 
+	private static final int HEADER_FLAGS_OFFSET = 4 + 2;
+	private static final int HEADER_CRC32_OFFSET = HEADER_FLAGS_OFFSET + 2 + 2 + 2 + 2;
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
 	private final CountingOutputStream delegate;
 	private final byte[] singleByteBuffer = new byte[1];
 	private final byte[] tmpBuffer = new byte[IoUtils.STANDARD_BUFFER_SIZE];
@@ -35,9 +55,22 @@ public class BufferedOutputStream extends OutputStream {
 	private File tmpFile;
 	private FileOutputStream tmpFileOutputStream;
 	private ZipFileHeader fileHeader;
+	private ZipFileHeader transferredFileHeader;
+	private SeekableByteChannel patchChannel;
+	private ZipFileHeader patchedFileHeader;
+	private long patchHeaderPosition = -1;
+	private int patchZip64Offset = -1;
 
 	public BufferedOutputStream(OutputStream outputStream) {
+		this(outputStream, 0);
+	}
+
+	/**
+	 * Create the stream with a starting write-count for when the output-stream starts partway into the Zip-file.
+	 */
+	public BufferedOutputStream(OutputStream outputStream, long startingWriteCount) {
 		this.delegate = new CountingOutputStream(outputStream);
+		this.delegate.addWriteCount(startingWriteCount);
 	}
 
 	/**
@@ -48,6 +81,14 @@ public class BufferedOutputStream extends OutputStream {
 		this.maxSizeInMemory = maxSizeInMemory;
 	}
 
+	/**
+	 * Enable the patching of the file-headers through the channel that our output-stream is writing to. This takes
+	 * precedence over the buffer.
+	 */
+	public void enablePatching(SeekableByteChannel channel) {
+		this.patchChannel = channel;
+	}
+
 	@Override
 	public void write(int b) throws IOException {
 		singleByteBuffer[0] = (byte) b;
@@ -56,6 +97,9 @@ public class BufferedOutputStream extends OutputStream {
 
 	@Override
 	public void write(byte[] buffer, int offset, int length) throws IOException {
+		if (fileHeader != null && patchChannel != null) {
+			writePlaceholderHeader();
+		}
 		if (fileHeader == null) {
 			// we have already given up and written the header
 			delegate.write(buffer, offset, length);
@@ -76,8 +120,8 @@ public class BufferedOutputStream extends OutputStream {
 			System.arraycopy(buffer, offset, memoryBuffer, memoryOffset, memLen);
 			offset += memLen;
 			length -= memLen;
-			memoryOffset += length;
-			encodedSize += length;
+			memoryOffset += memLen;
+			encodedSize += memLen;
 		}
 		if (encodedSize + length > maxSizeBuffered) {
 			// need to give up and write out to the delegate
@@ -101,32 +145,74 @@ public class BufferedOutputStream extends OutputStream {
 	 * @return Returned the file-header that was written to the stream if it is different from the one set.
 	 */
 	public ZipFileHeader finishFileData(long crc32, long uncompressedSize) throws IOException {
+		ZipFileHeader writtenFileHeader = doFinishFileData(crc32, uncompressedSize);
+		// the file is done so send it on its way
+		delegate.writeBuffer();
+		return writtenFileHeader;
+	}
+
+	private ZipFileHeader doFinishFileData(long crc32, long uncompressedSize) throws IOException {
+		if (fileHeader != null && patchChannel != null) {
+			// no file data was written
+			writePlaceholderHeader();
+		}
+		if (patchHeaderPosition >= 0) {
+			return patchFileHeader(crc32, uncompressedSize);
+		}
 		if (!buffered) {
 			// we would have written everything already
-			return null;
+			return transferredFileHeader;
 		}
 
 		// need to build a new file-header from the newly calculated information
-		Builder fullHeaderBuilder = ZipFileHeader.Builder.fromHeader(fileHeader);
-		/*
-		 * We need to clear the data-descriptor flag here because we are writing enough information into the header so
-		 * we don't need one.
-		 */
-		fullHeaderBuilder.clearGeneralPurposeFlag(GeneralPurposeFlag.DATA_DESCRIPTOR);
-		fullHeaderBuilder.setCrc32(crc32);
-		fullHeaderBuilder.setCompressedSize(encodedSize);
-		fullHeaderBuilder.setUncompressedSize(uncompressedSize);
-		ZipFileHeader writtenFileHeader = fullHeaderBuilder.build();
+		ZipFileHeader writtenFileHeader = buildFullHeader(fileHeader, crc32, encodedSize, uncompressedSize);
 		writtenFileHeader.write(delegate);
 
 		// first write the memory buffer to the delegate
-		delegate.write(memoryBuffer, 0, memoryBuffer.length);
+		delegate.write(memoryBuffer, 0, memoryOffset);
 		writeAnyTmpFileToDelegate();
 
 		fileHeader = null;
 		return writtenFileHeader;
 	}
 
+	/**
+	 * Write all of the file data of the current file by having the OS transfer it from the source channel to the
+	 * target channel which must be the channel of the file that our output-stream is writing to. Because the CRC32 and
+	 * size are known up front, the file-header is written with them before the data so nothing needs to be buffered.
+	 * This must be called before any other file data has been written for the file-header.
+	 */
+	public void transferFileData(FileChannel source, FileChannel target, long crc32, long size) throws IOException {
+		if (fileHeader == null || memoryOffset > 0 || tmpFile != null) {
+			throw new IllegalStateException("Cannot transfer file data after other file data has been written");
+		}
+		ZipFileHeader writtenFileHeader = buildFullHeader(fileHeader, crc32, size, size);
+		writtenFileHeader.write(delegate);
+		transferFrom(source, 0, size, target);
+		encodedSize = size;
+		transferredFileHeader = writtenFileHeader;
+		buffered = false;
+		fileHeader = null;
+	}
+
+	/**
+	 * Have the OS transfer bytes from the source channel straight to the target channel which must be the channel of
+	 * the file that our output-stream is writing to. The bytes are counted as written.
+	 */
+	public void transferFrom(FileChannel source, long position, long length, FileChannel target) throws IOException {
+		// make sure that everything written to the stream is in the file before the target's position is used
+		delegate.flush();
+		long offset = 0;
+		while (offset < length) {
+			long num = source.transferTo(position + offset, length - offset, target);
+			if (num <= 0) {
+				throw new IOException("File was truncated while transferring at position " + (position + offset));
+			}
+			offset += num;
+		}
+		delegate.addWriteCount(length);
+	}
+
 	/**
 	 * Number of byte written to the output-stream.
 	 */
@@ -176,13 +262,117 @@ public class BufferedOutputStream extends OutputStream {
 		this.encodedSize = 0;
 		this.tmpFile = null;
 		this.tmpFileOutputStream = null;
+		this.transferredFileHeader = null;
+		this.patchHeaderPosition = -1;
+		this.patchZip64Offset = -1;
 		this.buffered = true;
 	}
 
+	/**
+	 * Build a file-header from the one that was set with the CRC32 and sizes.
+	 */
+	private static ZipFileHeader buildFullHeader(ZipFileHeader header, long crc32, long compressedSize,
+			long uncompressedSize) {
+		Builder fullHeaderBuilder = ZipFileHeader.Builder.fromHeader(header);
+		/*
+		 * We need to clear the data-descriptor flag here because we are writing enough information into the header so
+		 * we don't need one.
+		 */
+		fullHeaderBuilder.clearGeneralPurposeFlag(GeneralPurposeFlag.DATA_DESCRIPTOR);
+		fullHeaderBuilder.setCrc32(crc32);
+		fullHeaderBuilder.setCompressedSize(compressedSize);
+		fullHeaderBuilder.setUncompressedSize(uncompressedSize);
+		return fullHeaderBuilder.build();
+	}
+
+	/**
+	 * Write the file-header with zeros for the CRC32 and sizes and remember where it is so it can be patched. If the
+	 * size of the file is not known then a Zip64 extra-field is reserved in case the file data is larger than 4gb.
+	 */
+	private void writePlaceholderHeader() throws IOException {
+		Builder placeholderBuilder = ZipFileHeader.Builder.fromHeader(fileHeader);
+		placeholderBuilder.setCrc32(0);
+		placeholderBuilder.setCompressedSize(0);
+		placeholderBuilder.setUncompressedSize(0);
+		if (fileHeader.getZip64ExtraField() == null && fileHeader.getUncompressedSize() == 0) {
+			placeholderBuilder.setZip64ExtraField(new Zip64ExtraField(0, 0, 0, 0));
+		}
+		ZipFileHeader placeholderHeader = placeholderBuilder.build();
+		// make sure that everything written to the stream is in the channel before its position is used
+		delegate.flush();
+		patchHeaderPosition = patchChannel.position();
+		int fieldOffset = findZip64FieldDataOffset(placeholderHeader.getExtraFieldBytes());
+		if (fieldOffset >= 0) {
+			patchZip64Offset = ZipFileRandomInput.FILE_HEADER_FIXED_SIZE
+					+ placeholderHeader.getFileNameBytes().length + fieldOffset;
+		}
+		placeholderHeader.write(delegate);
+		patchedFileHeader = fileHeader;
+		buffered = false;
+		fileHeader = null;
+		encodedSize = 0;
+	}
+
+	/**
+	 * Seek back and patch the flags, CRC32, and sizes into the placeholder file-header and its Zip64 extra-field.
+	 */
+	private ZipFileHeader patchFileHeader(long crc32, long uncompressedSize) throws IOException {
+		ZipFileHeader writtenFileHeader = buildFullHeader(patchedFileHeader, crc32, encodedSize, uncompressedSize);
+		if (writtenFileHeader.getZip64ExtraField() != null && patchZip64Offset < 0) {
+			throw new IOException("File data of " + writtenFileHeader.getFileName()
+					+ " needs Zip64 sizes but no Zip64 extra-field was reserved in its file-header");
+		}
+		delegate.flush();
+		int flags = writtenFileHeader.getGeneralPurposeFlags();
+		if (writtenFileHeader.needsDataDescriptor()) {
+			flags |= GeneralPurposeFlag.DATA_DESCRIPTOR.getValue();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putShort((short) flags);
+		buffer.flip();
+		IoUtils.writeFully(patchChannel, buffer, patchHeaderPosition + HEADER_FLAGS_OFFSET);
+		buffer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt((int) writtenFileHeader.getCrc32());
+		buffer.putInt((int) writtenFileHeader.getCompressedSize());
+		buffer.putInt((int) writtenFileHeader.getUncompressedSize());
+		buffer.flip();
+		IoUtils.writeFully(patchChannel, buffer, patchHeaderPosition + HEADER_CRC32_OFFSET);
+		if (patchZip64Offset >= 0) {
+			buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putLong(uncompressedSize);
+			buffer.putLong(encodedSize);
+			buffer.flip();
+			IoUtils.writeFully(patchChannel, buffer, patchHeaderPosition + patchZip64Offset);
+		}
+		patchHeaderPosition = -1;
+		patchedFileHeader = null;
+		return writtenFileHeader;
+	}
+
+	/**
+	 * Return the offset in the extra bytes of the data of the Zip64 extra-field or -1 if none.
+	 */
+	private static int findZip64FieldDataOffset(byte[] extraBytes) {
+		if (extraBytes == null) {
+			return -1;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(extraBytes).order(ByteOrder.LITTLE_ENDIAN);
+		int offset = 0;
+		while (offset + 4 <= extraBytes.length) {
+			int id = (buffer.getShort(offset) & 0xFFFF);
+			int size = (buffer.getShort(offset + 2) & 0xFFFF);
+			if (id == Zip64ExtraField.EXPECTED_ID && size >= 16) {
+				return offset + 4;
+			}
+			offset += 4 + size;
+		}
+		return -1;
+	}
+
 	private void giveUp(byte[] buffer, int offset, int length) throws IOException {
 		fileHeader.write(delegate);
 		long start = delegate.getWriteCount();
-		delegate.write(memoryBuffer, 0, memoryBuffer.length);
+		delegate.write(memoryBuffer, 0, memoryOffset);
 		writeAnyTmpFileToDelegate();
 		// write the rest of the current buffer to the delegate
 		delegate.write(buffer, offset, length);
@@ -227,11 +417,13 @@ public class BufferedOutputStream extends OutputStream {
 	}
 
 	/**
-	 * Output stream which counts the bytes written to it.
+	 * Output stream which counts the bytes written to it and coalesces the small writes into a write buffer.
 	 */
 	private static class CountingOutputStream extends OutputStream {
 
 		private final OutputStream delegate;
+		private final byte[] writeBuffer = new byte[WRITE_BUFFER_SIZE];
+		private int writeBufferOffset;
 		private long writeCount;
 
 		public CountingOutputStream(OutputStream delegate) {
@@ -240,17 +432,45 @@ public class BufferedOutputStream extends OutputStream {
 
 		@Override
 		public void write(int b) throws IOException {
-			// may not get here
-			delegate.write(b);
+			if (writeBufferOffset == writeBuffer.length) {
+				writeBuffer();
+			}
+			writeBuffer[writeBufferOffset++] = (byte) b;
 			writeCount++;
 		}
 
 		@Override
 		public void write(byte[] buffer, int offset, int length) throws IOException {
-			delegate.write(buffer, offset, length);
+			if (writeBufferOffset + length > writeBuffer.length) {
+				writeBuffer();
+			}
+			if (length >= writeBuffer.length) {
+				// no reason to copy large writes
+				delegate.write(buffer, offset, length);
+			} else {
+				System.arraycopy(buffer, offset, writeBuffer, writeBufferOffset, length);
+				writeBufferOffset += length;
+			}
 			writeCount += length;
 		}
 
+		/**
+		 * Write any bytes in the write buffer to the delegate without flushing it.
+		 */
+		public void writeBuffer() throws IOException {
+			if (writeBufferOffset > 0) {
+				delegate.write(writeBuffer, 0, writeBufferOffset);
+				writeBufferOffset = 0;
+			}
+		}
+
+		/**
+		 * Count bytes that were written to the underlying file without going through this stream.
+		 */
+		public void addWriteCount(long count) {
+			writeCount += count;
+		}
+
 		/**
 		 * Get the total counts.
 		 */
@@ -260,12 +480,17 @@ public class BufferedOutputStream extends OutputStream {
 
 		@Override
 		public void flush() throws IOException {
+			writeBuffer();
 			delegate.flush();
 		}
 
 		@Override
 		public void close() throws IOException {
-			delegate.close();
+			try {
+				writeBuffer();
+			} finally {
+				delegate.close();
+			}
 		}
 	}
 }
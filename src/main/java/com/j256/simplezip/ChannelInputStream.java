@@ -0,0 +1,86 @@
+package com.j256.simplezip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Input stream which reads a region of a channel using positional reads. Multiple of these streams can be open on the
+ * same channel at the same time because each one keeps track of its own position.
+ *
+ * @author graywatson
+ */
+public class ChannelInputStream extends InputStream {
+
+	private final SeekableByteChannel channel;
+	private final long limit;
+	private final byte[] singleByteBuffer = new byte[1];
+	private long position;
+
+	/**
+	 * Create a stream that reads the channel from the start position up to (but not including) the limit position.
+	 */
+	public ChannelInputStream(SeekableByteChannel channel, long start, long limit) {
+		this.channel = channel;
+		this.position = start;
+		this.limit = limit;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int num = read(singleByteBuffer, 0, 1);
+		if (num < 0) {
+			return -1;
+		} else {
+			return (singleByteBuffer[0] & 0xFF);
+		}
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (position >= limit) {
+			return -1;
+		}
+		// we do this instead of Math.min() because one is long but never > than MAXINT
+		if (limit - position < length) {
+			length = (int) (limit - position);
+		}
+		int numRead = IoUtils.read(channel, ByteBuffer.wrap(buffer, offset, length), position);
+		if (numRead < 0) {
+			return -1;
+		}
+		position += numRead;
+		return numRead;
+	}
+
+	@Override
+	public long skip(long numBytes) {
+		if (numBytes <= 0) {
+			return 0;
+		}
+		long skipped = Math.min(numBytes, limit - position);
+		position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return (int) Math.min(limit - position, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Return the current position in the channel.
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public void close() {
+		// no-op, the channel is owned by the caller
+	}
+}
@@ -0,0 +1,270 @@
+package com.j256.simplezip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * CRC32 utility methods including combining the CRC32 values of sequential runs of bytes and calculating the CRC32 of a
+ * large file or buffer in chunks concurrently. For example, this allows the CRC32 and sizes of a large stored
+ * (uncompressed) file to be set in the {@link com.j256.simplezip.format.ZipFileHeader} before the file-data is written
+ * without a sequential pass over the file.
+ *
+ * @author graywatson
+ */
+public class Crc32Utils {
+
+	/** default number of bytes in each of the chunks that are checksummed concurrently */
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	/** reversed CRC-32 polynomial */
+	private static final long POLYNOMIAL = 0xedb88320L;
+	private static final int NUM_BITS = 32;
+	private static final int READ_BUFFER_SIZE = IoUtils.STANDARD_BUFFER_SIZE * 16;
+	/** largest section of a file that is mapped at one time */
+	private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+	/**
+	 * Return the CRC32 of the bytes of the first run followed by the bytes of the second run. This is a port of zlib's
+	 * crc32_combine() which works by applying the length of zeros to the first CRC using GF(2) matrix operations.
+	 *
+	 * @param crc1
+	 *            CRC32 of the first run of bytes.
+	 * @param crc2
+	 *            CRC32 of the second run of bytes.
+	 * @param length2
+	 *            Number of bytes in the second run.
+	 */
+	public static long combine(long crc1, long crc2, long length2) {
+		if (length2 <= 0) {
+			return crc1;
+		}
+		long[] even = new long[NUM_BITS];
+		long[] odd = new long[NUM_BITS];
+
+		// put the operator for one zero bit in odd
+		odd[0] = POLYNOMIAL;
+		long row = 1;
+		for (int i = 1; i < NUM_BITS; i++) {
+			odd[i] = row;
+			row <<= 1;
+		}
+		// put the operator for two zero bits in even and then four zero bits in odd
+		gf2MatrixSquare(even, odd);
+		gf2MatrixSquare(odd, even);
+
+		// apply length2 zeros to crc1, the first square puts the operator for one zero byte (eight bits) in even
+		do {
+			gf2MatrixSquare(even, odd);
+			if ((length2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(even, crc1);
+			}
+			length2 >>= 1;
+			if (length2 == 0) {
+				break;
+			}
+			gf2MatrixSquare(odd, even);
+			if ((length2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(odd, crc1);
+			}
+			length2 >>= 1;
+		} while (length2 != 0);
+
+		return (crc1 ^ crc2) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Calculate the CRC32 of a file by reading chunks of it concurrently with an executor and combining the results.
+	 */
+	public static long calculateCrc32(File file, ExecutorService executor) throws IOException {
+		return calculateCrc32(file, executor, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Calculate the CRC32 of a file by reading chunks of it concurrently with an executor and combining the results.
+	 *
+	 * @param file
+	 *            File to be checksummed.
+	 * @param executor
+	 *            Executor which runs the checksumming of the chunks. It is not shut down by this method.
+	 * @param chunkSize
+	 *            Number of bytes in each chunk.
+	 */
+	public static long calculateCrc32(File file, ExecutorService executor, int chunkSize) throws IOException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			List<Long> lengths = new ArrayList<Long>();
+			for (long position = 0; position < size; position += chunkSize) {
+				long length = Math.min(chunkSize, size - position);
+				futures.add(executor.submit(new FileChunkChecksummer(channel, position, length)));
+				lengths.add(length);
+			}
+			return combineFutures(futures, lengths);
+		}
+	}
+
+	/**
+	 * Calculate the CRC32 of a section of a file in a single pass over memory-mapped sections of it. This avoids
+	 * copying the bytes into a heap buffer.
+	 *
+	 * @param channel
+	 *            Channel of the file to be checksummed. Its position is not changed.
+	 * @param position
+	 *            Position in the file of the bytes.
+	 * @param length
+	 *            Number of bytes to be checksummed.
+	 */
+	public static long calculateCrc32(FileChannel channel, long position, long length) throws IOException {
+		CRC32 crc32 = new CRC32();
+		for (long offset = 0; offset < length;) {
+			long mapLength = Math.min(MAX_MAPPED_SIZE, length - offset);
+			crc32.update(channel.map(MapMode.READ_ONLY, position + offset, mapLength));
+			offset += mapLength;
+		}
+		return crc32.getValue();
+	}
+
+	/**
+	 * Calculate the CRC32 of a section of a buffer by checksumming chunks of it concurrently with an executor and
+	 * combining the results.
+	 *
+	 * @param buffer
+	 *            Buffer to be checksummed.
+	 * @param offset
+	 *            Offset in the buffer of the bytes.
+	 * @param length
+	 *            Number of bytes to be checksummed.
+	 * @param executor
+	 *            Executor which runs the checksumming of the chunks. It is not shut down by this method.
+	 * @param chunkSize
+	 *            Number of bytes in each chunk.
+	 */
+	public static long calculateCrc32(byte[] buffer, int offset, int length, ExecutorService executor, int chunkSize)
+			throws IOException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		List<Future<Long>> futures = new ArrayList<Future<Long>>();
+		List<Long> lengths = new ArrayList<Long>();
+		for (int chunkOffset = 0; chunkOffset < length; chunkOffset += chunkSize) {
+			int chunkLength = Math.min(chunkSize, length - chunkOffset);
+			futures.add(executor.submit(new BufferChunkChecksummer(buffer, offset + chunkOffset, chunkLength)));
+			lengths.add((long) chunkLength);
+		}
+		return combineFutures(futures, lengths);
+	}
+
+	private static long combineFutures(List<Future<Long>> futures, List<Long> lengths) throws IOException {
+		long crc = 0;
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				crc = combine(crc, futures.get(i).get(), lengths.get(i));
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for checksum");
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else {
+				throw new IOException("Checksumming failed", cause);
+			}
+		} finally {
+			// in case of error, we don't care about the rest
+			for (Future<Long> future : futures) {
+				future.cancel(false);
+			}
+		}
+		return crc;
+	}
+
+	private static long gf2MatrixTimes(long[] matrix, long vector) {
+		long sum = 0;
+		for (int i = 0; vector != 0; i++, vector >>>= 1) {
+			if ((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(long[] square, long[] matrix) {
+		for (int i = 0; i < NUM_BITS; i++) {
+			square[i] = gf2MatrixTimes(matrix, matrix[i]);
+		}
+	}
+
+	/**
+	 * Calculates the CRC32 of a chunk of a file using positional reads so the channel can be shared.
+	 */
+	private static class FileChunkChecksummer implements Callable<Long> {
+
+		private final FileChannel channel;
+		private final long position;
+		private final long length;
+
+		public FileChunkChecksummer(FileChannel channel, long position, long length) {
+			this.channel = channel;
+			this.position = position;
+			this.length = length;
+		}
+
+		@Override
+		public Long call() throws IOException {
+			CRC32 crc32 = new CRC32();
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, length));
+			long offset = 0;
+			while (offset < length) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), length - offset));
+				int numRead = channel.read(buffer, position + offset);
+				if (numRead < 0) {
+					throw new IOException("File was truncated while checksumming at position " + (position + offset));
+				}
+				buffer.flip();
+				crc32.update(buffer);
+				offset += numRead;
+			}
+			return crc32.getValue();
+		}
+	}
+
+	/**
+	 * Calculates the CRC32 of a chunk of a buffer.
+	 */
+	private static class BufferChunkChecksummer implements Callable<Long> {
+
+		private final byte[] buffer;
+		private final int offset;
+		private final int length;
+
+		public BufferChunkChecksummer(byte[] buffer, int offset, int length) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public Long call() {
+			CRC32 crc32 = new CRC32();
+			crc32.update(buffer, offset, length);
+			return crc32.getValue();
+		}
+	}
+}
@@ -4,6 +4,13 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Input/output utility methods.
@@ -16,6 +23,16 @@ public class IoUtils {
 	public static int MAX_UNSIGNED_SHORT_VALUE = 65535;
 	public static long MAX_UNSIGNED_INT_VALUE = 4294967295L;
 	private static final byte[] NO_BYTES = new byte[0];
+	/** initial size of the record buffers which holds most records with their file-names and extra bytes */
+	private static final int RECORD_BUFFER_SIZE = 1024;
+	/** maximum size of a grown record buffer that is kept for the thread so one huge record doesn't pin its memory */
+	private static final int MAX_RECORD_BUFFER_SIZE = 64 * 1024;
+	private static final ThreadLocal<ByteBuffer> RECORD_BUFFER = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(RECORD_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	};
 
 	/**
 	 * Read a byte from the input stream
@@ -101,6 +118,116 @@ public class IoUtils {
 		}
 	}
 
+	/**
+	 * Read a 2-byte short from the buffer which should be in little-endian order.
+	 * 
+	 * @throws IOException
+	 *             If there are not enough bytes remaining in the buffer.
+	 */
+	public static int readShort(ByteBuffer buffer, String label) throws IOException {
+		ensureRemaining(buffer, 2, label);
+		return (buffer.getShort() & 0xFFFF);
+	}
+
+	/**
+	 * Read an 4-byte int from the buffer which should be in little-endian order.
+	 * 
+	 * @throws IOException
+	 *             If there are not enough bytes remaining in the buffer.
+	 */
+	public static int readInt(ByteBuffer buffer, String label) throws IOException {
+		ensureRemaining(buffer, 4, label);
+		return buffer.getInt();
+	}
+
+	/**
+	 * Read an 4-byte int from the buffer which should be in little-endian order as a long. This is done to handle
+	 * positive integer values larger than Integer.MAX_VALUE.
+	 * 
+	 * @throws IOException
+	 *             If there are not enough bytes remaining in the buffer.
+	 */
+	public static long readIntAsLong(ByteBuffer buffer, String label) throws IOException {
+		ensureRemaining(buffer, 4, label);
+		return (buffer.getInt() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Read a 8-byte long from the buffer which should be in little-endian order.
+	 * 
+	 * @throws IOException
+	 *             If there are not enough bytes remaining in the buffer.
+	 */
+	public static long readLong(ByteBuffer buffer, String label) throws IOException {
+		ensureRemaining(buffer, 8, label);
+		return buffer.getLong();
+	}
+
+	/**
+	 * Read an array of bytes from the buffer.
+	 * 
+	 * @throws IOException
+	 *             If there are not enough bytes remaining in the buffer.
+	 */
+	public static byte[] readBytes(ByteBuffer buffer, int size, String label) throws IOException {
+		if (size == 0) {
+			return NO_BYTES;
+		}
+		ensureRemaining(buffer, size, label);
+		byte[] bytes = new byte[size];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Return an empty little-endian record buffer which is reused by the calling thread. The bytes of a record are read
+	 * into it in bulk with {@link #readFully(InputStream, ByteBuffer, int, String)} and then decoded from the buffer
+	 * which is a lot faster than reading each of the fields a byte at a time from the stream.
+	 * 
+	 * NOTE: the buffer is only valid until the next call to this method from the same thread.
+	 */
+	public static ByteBuffer getRecordBuffer() {
+		ByteBuffer buffer = RECORD_BUFFER.get();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Read a number of bytes from the input stream into the record buffer at its position and advance the position.
+	 * If the buffer is not large enough then a larger one is allocated and the bytes before the position are copied
+	 * into it. If the buffer was the thread's record buffer then the larger one is reused by the thread from then on
+	 * unless it is larger than 64k.
+	 * 
+	 * @return The buffer with the bytes which may not be the same buffer that was passed in.
+	 * @throws IOException
+	 *             If end is reached or some io problem occurs.
+	 */
+	public static ByteBuffer readFully(InputStream input, ByteBuffer buffer, int length, String label)
+			throws IOException {
+		if (buffer.remaining() < length) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.flip();
+			larger.put(buffer);
+			if (buffer == RECORD_BUFFER.get() && larger.capacity() <= MAX_RECORD_BUFFER_SIZE) {
+				RECORD_BUFFER.set(larger);
+			}
+			buffer = larger;
+		}
+		int offset = buffer.arrayOffset() + buffer.position();
+		int left = length;
+		while (left > 0) {
+			int numRead = input.read(buffer.array(), offset, left);
+			if (numRead < 0) {
+				throw new EOFException("reached unexpected EOF while reading " + left + " bytes for " + label);
+			}
+			left -= numRead;
+			offset += numRead;
+		}
+		buffer.position(buffer.position() + length);
+		return buffer;
+	}
+
 	/**
 	 * Write a byte to the output stream.
 	 */
@@ -188,7 +315,175 @@ public class IoUtils {
 			offset += numRead;
 		}
 	}
- 
+
+	/**
+	 * Skip a number of bytes in the input stream using {@link InputStream#skip(long)} which may be able to seek over
+	 * the bytes without reading them.
+	 * 
+	 * @throws IOException
+	 *             If end is reached or some io problem occurs.
+	 */
+	public static void skipFully(InputStream input, long length, String label) throws IOException {
+		while (length > 0) {
+			long numSkipped = input.skip(length);
+			if (numSkipped <= 0) {
+				// skip can return 0 without being at EOF so we read a byte to see
+				readByte(input, label);
+				numSkipped = 1;
+			}
+			length -= numSkipped;
+		}
+	}
+
+	/**
+	 * Read from the channel at a certain position until the buffer is full. If the channel is a {@link FileChannel}
+	 * then positional reads are used which don't change the position of the channel and can be done from multiple
+	 * threads. Otherwise the channel is locked while it is positioned and read.
+	 * 
+	 * @throws IOException
+	 *             If end is reached or some io problem occurs.
+	 */
+	public static void readFully(SeekableByteChannel channel, ByteBuffer buffer, long position, String label)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			int numRead = read(channel, buffer, position);
+			if (numRead < 0) {
+				throw new EOFException("reached unexpected EOF while reading " + buffer.remaining() + " bytes for "
+						+ label + " at position " + position);
+			}
+			position += numRead;
+		}
+	}
+
+	/**
+	 * Read from the channel at a certain position into the buffer. See
+	 * {@link #readFully(SeekableByteChannel, ByteBuffer, long, String)} for more details.
+	 * 
+	 * @return The number of bytes read or -1 on EOF.
+	 */
+	public static int read(SeekableByteChannel channel, ByteBuffer buffer, long position) throws IOException {
+		if (channel instanceof FileChannel) {
+			return ((FileChannel) channel).read(buffer, position);
+		}
+		synchronized (channel) {
+			channel.position(position);
+			return channel.read(buffer);
+		}
+	}
+
+	/**
+	 * Write all of the buffer to the channel at a certain position. If the channel is a {@link FileChannel} then
+	 * positional writes are used. Otherwise the channel is positioned and written and then the position of the channel
+	 * is restored so that writing can continue where it left off.
+	 */
+	public static void writeFully(SeekableByteChannel channel, ByteBuffer buffer, long position) throws IOException {
+		if (channel instanceof FileChannel) {
+			FileChannel fileChannel = (FileChannel) channel;
+			while (buffer.hasRemaining()) {
+				position += fileChannel.write(buffer, position);
+			}
+			return;
+		}
+		synchronized (channel) {
+			long savedPosition = channel.position();
+			channel.position(position);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.position(savedPosition);
+		}
+	}
+
+	/**
+	 * Asynchronously read from the channel at a certain position until the buffer is full.
+	 * 
+	 * @return A future which completes with the buffer once it is full or exceptionally with an EOFException if the
+	 *         end of the channel is reached or some other IO problem.
+	 */
+	public static CompletableFuture<ByteBuffer> readFully(final AsynchronousFileChannel channel,
+			final ByteBuffer buffer, long position, final String label) {
+		final CompletableFuture<ByteBuffer> future = new CompletableFuture<ByteBuffer>();
+		if (!buffer.hasRemaining()) {
+			future.complete(buffer);
+			return future;
+		}
+		try {
+			channel.read(buffer, position, position, new CompletionHandler<Integer, Long>() {
+				@Override
+				public void completed(Integer numRead, Long readPosition) {
+					if (numRead < 0) {
+						future.completeExceptionally(new EOFException("reached unexpected EOF while reading "
+								+ buffer.remaining() + " bytes for " + label + " at position " + readPosition));
+					} else if (buffer.hasRemaining()) {
+						long nextPosition = readPosition + numRead;
+						try {
+							channel.read(buffer, nextPosition, nextPosition, this);
+						} catch (RuntimeException re) {
+							future.completeExceptionally(re);
+						}
+					} else {
+						future.complete(buffer);
+					}
+				}
+
+				@Override
+				public void failed(Throwable throwable, Long readPosition) {
+					future.completeExceptionally(throwable);
+				}
+			});
+		} catch (RuntimeException re) {
+			future.completeExceptionally(re);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously write the remaining bytes in the buffer to the channel at a certain position.
+	 * 
+	 * @return A future which completes with the number of bytes written once the buffer has been fully written or
+	 *         exceptionally if there was an IO problem.
+	 */
+	public static CompletableFuture<Integer> writeFully(final AsynchronousFileChannel channel,
+			final ByteBuffer buffer, long position) {
+		final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+		final int length = buffer.remaining();
+		if (length == 0) {
+			future.complete(0);
+			return future;
+		}
+		try {
+			channel.write(buffer, position, position, new CompletionHandler<Integer, Long>() {
+				@Override
+				public void completed(Integer numWritten, Long writePosition) {
+					if (buffer.hasRemaining()) {
+						long nextPosition = writePosition + numWritten;
+						try {
+							channel.write(buffer, nextPosition, nextPosition, this);
+						} catch (RuntimeException re) {
+							future.completeExceptionally(re);
+						}
+					} else {
+						future.complete(length);
+					}
+				}
+
+				@Override
+				public void failed(Throwable throwable, Long writePosition) {
+					future.completeExceptionally(throwable);
+				}
+			});
+		} catch (RuntimeException re) {
+			future.completeExceptionally(re);
+		}
+		return future;
+	}
+
+	private static void ensureRemaining(ByteBuffer buffer, int size, String label) throws EOFException {
+		if (buffer.remaining() < size) {
+			throw new EOFException("reached unexpected end of buffer while reading " + size + " bytes for " + label);
+		}
+	}
+
 	private static byte[] readFully(InputStream input, int length, String label) throws IOException {
 		byte[] bytes = new byte[length];
 		readFully(input, bytes, length, label);
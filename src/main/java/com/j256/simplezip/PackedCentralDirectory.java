@@ -0,0 +1,522 @@
+package com.j256.simplezip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.j256.simplezip.format.Zip64CentralDirectoryEnd;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntryView;
+import com.j256.simplezip.format.ZipCentralDirectoryFileInfo;
+
+/**
+ * Append-only store of the serialized central-directory entries that are written by {@link ZipFileOutput} when the
+ * Zip-file is finished. Each entry is written out in its final form into large off-heap chunks as soon as its file is
+ * finished so no objects are held per entry. This allows Zip-files with millions of entries to be written with a
+ * small heap.
+ *
+ * <p>
+ * Entries are addressed by their position in the store. The index of the file-names, which is needed to add file-info
+ * to an entry by name, is an open-addressing table of primitive arrays that is only built the first time that it is
+ * needed. If the same file-name is added more than once then the last entry is found.
+ * </p>
+ *
+ * <p>
+ * If spilling is enabled then each chunk is written to a temporary file once it is full and its buffer is reused for
+ * the next chunk so only one chunk is held in memory regardless of the number of entries. The spilled entries are
+ * streamed from the temporary file with a channel transfer when the store is written.
+ * </p>
+ *
+ * @author graywatson
+ */
+class PackedCentralDirectory implements Closeable {
+
+	/** larger than the biggest possible entry so an entry never spans chunks */
+	private static final int CHUNK_SIZE = 1024 * 1024;
+	private static final int ENTRY_FIXED_SIZE = ZipCentralDirectoryFileEntryView.FIXED_SIZE;
+	private static final int VERSION_MADE_OFFSET = 4;
+	private static final int VERSION_NEEDED_OFFSET = 6;
+	private static final int FILE_NAME_LENGTH_OFFSET = 28;
+	private static final int EXTRA_LENGTH_OFFSET = 30;
+	private static final int COMMENT_LENGTH_OFFSET = 32;
+	private static final int DISK_NUMBER_START_OFFSET = 34;
+	private static final int INTERNAL_ATTRIBUTES_OFFSET = 36;
+	private static final int EXTERNAL_ATTRIBUTES_OFFSET = 38;
+	private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+	private static final int FNV_PRIME = 0x01000193;
+	/** hash slot value which marks that the slot is empty */
+	private static final int EMPTY_HASH = 0;
+
+	/** chunks of entries by index which are null if they have been spilled */
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private final EntryOutputStream entryStream = new EntryOutputStream();
+	private ByteBuffer currentChunk;
+	private long numEntries;
+	private long size;
+	/** entries whose comment changed size after they were added so they are written from here instead */
+	private Map<Long, byte[]> replacedEntries;
+
+	private FileChannel spillChannel;
+	/** position in the spill file of each of the spilled chunks */
+	private final List<Long> spillPositions = new ArrayList<>();
+	private long spillSize;
+	private ByteBuffer spillReadBuffer;
+
+	private int[] hashes;
+	private long[] addresses;
+	private int mask;
+	private int numIndexed;
+
+	/**
+	 * Write the full chunks to a temporary file instead of holding them in memory. The file is deleted when the store
+	 * is closed. This must be called before any entries are added.
+	 */
+	public void enableSpilling() throws IOException {
+		if (numEntries > 0) {
+			throw new IllegalStateException("Spilling must be enabled before any entries are added");
+		}
+		if (spillChannel != null) {
+			return;
+		}
+		File spillFile = File.createTempFile(getClass().getSimpleName(), ".zcd");
+		spillFile.deleteOnExit();
+		spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	/**
+	 * Serialize the entry and append it to the store.
+	 *
+	 * @return The address of the entry in the store.
+	 */
+	public long add(ZipCentralDirectoryFileEntry entry) throws IOException {
+		entryStream.reset();
+		entry.write(entryStream);
+		int entrySize = entryStream.size();
+		if (currentChunk == null) {
+			currentChunk = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			chunks.add(currentChunk);
+		} else if (currentChunk.remaining() < entrySize) {
+			if (spillChannel == null) {
+				currentChunk = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			} else {
+				spillCurrentChunk();
+			}
+			chunks.add(currentChunk);
+		}
+		long address = (long) (chunks.size() - 1) * CHUNK_SIZE + currentChunk.position();
+		entryStream.writeTo(currentChunk);
+		numEntries++;
+		size += entrySize;
+		if (hashes != null) {
+			index(address, entryBuffer(address));
+		}
+		return address;
+	}
+
+	/**
+	 * Add the file-info to the last entry with the file-name.
+	 *
+	 * @return True if it worked otherwise false if the file-name was not found.
+	 */
+	public boolean addFileInfo(String fileName, ZipCentralDirectoryFileInfo fileInfo) throws IOException {
+		long address = findEntryAddress(fileName.getBytes());
+		if (address < 0) {
+			return false;
+		}
+		addFileInfo(address, fileInfo);
+		return true;
+	}
+
+	/**
+	 * Add the file-info to the entry at the address replacing the version, disk-number, attributes, and comment fields
+	 * the same way as {@link ZipCentralDirectoryFileEntry.Builder#addFileInfo(ZipCentralDirectoryFileInfo)}.
+	 */
+	public void addFileInfo(long address, ZipCentralDirectoryFileInfo fileInfo) throws IOException {
+		ByteBuffer entry = entryBuffer(address);
+		if (fileInfo.getDiskNumberStart() >= IoUtils.MAX_UNSIGNED_SHORT_VALUE) {
+			// the disk-number has to go in a zip64 extra-field so the builder has to rebuild the entry
+			ZipCentralDirectoryFileEntry oldEntry = new ZipCentralDirectoryFileEntryView(entry, 0).toEntry();
+			ZipCentralDirectoryFileEntry.Builder builder =
+					ZipFileOutput.relocatedEntryBuilder(oldEntry, oldEntry.getZip64RelativeOffsetOfLocalHeader());
+			builder.addFileInfo(fileInfo);
+			ByteArrayOutputStream entryStream = new ByteArrayOutputStream();
+			builder.build().write(entryStream);
+			replaceEntry(address, entrySize(entry), entryStream.toByteArray());
+			return;
+		}
+		// like the builder, a version-needed of 0 is bumped to the zip64 version if the entry has a zip64 field
+		int versionNeeded = fileInfo.getVersionNeeded();
+		if (versionNeeded == 0 && new ZipCentralDirectoryFileEntryView(entry, 0).getZip64ExtraField() != null) {
+			versionNeeded = Zip64CentralDirectoryEnd.DEFAULT_VERSION_NEEDED;
+		}
+		// replaced entries are patched in their copy and not in the spill file
+		boolean spilled = (chunks.get(chunkIndex(address)) == null
+				&& (replacedEntries == null || !replacedEntries.containsKey(address)));
+		byte[] commentBytes = fileInfo.getCommentBytes();
+		int commentLength = (commentBytes == null ? 0 : commentBytes.length);
+		int oldCommentLength = (entry.getShort(COMMENT_LENGTH_OFFSET) & 0xFFFF);
+		if (commentLength != oldCommentLength) {
+			// the entry changes size so copy it out and write it from there
+			int prefixLength = entrySize(entry) - oldCommentLength;
+			byte[] replacedBytes = new byte[prefixLength + commentLength];
+			entry.get(replacedBytes, 0, prefixLength);
+			replaceEntry(address, entrySize(entry), replacedBytes);
+			entry = ByteBuffer.wrap(replacedBytes).order(ByteOrder.LITTLE_ENDIAN);
+			entry.putShort(COMMENT_LENGTH_OFFSET, (short) commentLength);
+			spilled = false;
+		}
+		entry.putShort(VERSION_MADE_OFFSET, (short) fileInfo.getVersionMade());
+		entry.putShort(VERSION_NEEDED_OFFSET, (short) versionNeeded);
+		entry.putShort(DISK_NUMBER_START_OFFSET, (short) fileInfo.getDiskNumberStart());
+		entry.putShort(INTERNAL_ATTRIBUTES_OFFSET, (short) fileInfo.getInternalFileAttributes());
+		entry.putInt(EXTERNAL_ATTRIBUTES_OFFSET, fileInfo.getExternalFileAttributes());
+		if (commentLength > 0) {
+			entry.position(entrySize(entry) - commentLength);
+			entry.put(commentBytes);
+		}
+		if (spilled) {
+			// the entry was read from the spill file so write it back
+			entry.clear();
+			IoUtils.writeFully(spillChannel, entry, spillPosition(address));
+		}
+	}
+
+	/**
+	 * Write all of the entries to the output-stream in the order that they were added.
+	 */
+	public void write(OutputStream outputStream) throws IOException {
+		if (spillSize > 0 && replacedEntries == null) {
+			// the spilled entries are written as is straight from the spill file
+			WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+			long position = 0;
+			while (position < spillSize) {
+				position += spillChannel.transferTo(position, spillSize - position, outputChannel);
+			}
+		}
+		writeChunks(outputStream);
+	}
+
+	/**
+	 * Write all of the entries to the output-stream in the order that they were added. The output-channel must be the
+	 * file that the output-stream is writing to so the spilled entries can be transferred to it by the OS.
+	 */
+	public void write(BufferedOutputStream outputStream, FileChannel outputChannel) throws IOException {
+		if (spillSize > 0 && replacedEntries == null) {
+			outputStream.transferFrom(spillChannel, 0, spillSize, outputChannel);
+		}
+		writeChunks(outputStream);
+	}
+
+	/**
+	 * Write the entries in the chunks that are in memory, or all of them if some have been replaced.
+	 */
+	private void writeChunks(OutputStream outputStream) throws IOException {
+		byte[] buffer = new byte[IoUtils.STANDARD_BUFFER_SIZE];
+		for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+			if (replacedEntries == null) {
+				if (chunks.get(chunkIndex) != null) {
+					copyBytes(chunkContents(chunkIndex), buffer, outputStream);
+				}
+				continue;
+			}
+			ByteBuffer chunk = chunkContents(chunkIndex);
+			int limit = chunk.limit();
+			// walk the entries so the replaced ones can be written in their place
+			int offset = 0;
+			while (offset < limit) {
+				chunk.limit(limit).position(offset);
+				int entrySize = entrySize(chunk.slice().order(ByteOrder.LITTLE_ENDIAN));
+				byte[] replacedBytes = replacedEntries.get((long) chunkIndex * CHUNK_SIZE + offset);
+				if (replacedBytes == null) {
+					chunk.limit(offset + entrySize);
+					copyBytes(chunk, buffer, outputStream);
+				} else {
+					outputStream.write(replacedBytes);
+				}
+				offset += entrySize;
+			}
+		}
+	}
+
+	/**
+	 * Return the number of entries in the store.
+	 */
+	public long getNumEntries() {
+		return numEntries;
+	}
+
+	/**
+	 * Return the number of bytes that the entries will take when written.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Return the number of bytes that have been spilled to the temporary file.
+	 */
+	public long getSpillSize() {
+		return spillSize;
+	}
+
+	/**
+	 * Close and delete the spill file if spilling was enabled.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (spillChannel != null) {
+			spillChannel.close();
+			spillChannel = null;
+		}
+	}
+
+	/**
+	 * Write the current chunk to the spill file and then clear it so it can be reused as the next chunk.
+	 */
+	private void spillCurrentChunk() throws IOException {
+		chunks.set(chunks.size() - 1, null);
+		spillPositions.add(spillSize);
+		currentChunk.flip();
+		spillSize += currentChunk.remaining();
+		IoUtils.writeFully(spillChannel, currentChunk, spillPositions.get(spillPositions.size() - 1));
+		currentChunk.clear();
+	}
+
+	/**
+	 * Return a buffer from position 0 to the limit of the entries in the chunk, reading it from the spill file if
+	 * necessary.
+	 */
+	private ByteBuffer chunkContents(int chunkIndex) throws IOException {
+		ByteBuffer chunk = chunks.get(chunkIndex);
+		if (chunk != null) {
+			chunk = chunk.duplicate();
+			chunk.flip();
+			return chunk;
+		}
+		long spillPosition = spillPositions.get(chunkIndex);
+		long spillEnd = (chunkIndex + 1 < spillPositions.size() ? spillPositions.get(chunkIndex + 1) : spillSize);
+		if (spillReadBuffer == null) {
+			spillReadBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+		}
+		spillReadBuffer.clear();
+		spillReadBuffer.limit((int) (spillEnd - spillPosition));
+		IoUtils.readFully(spillChannel, spillReadBuffer, spillPosition, "spilled central-directory");
+		spillReadBuffer.flip();
+		return spillReadBuffer;
+	}
+
+	/**
+	 * Find the address of the last entry with the file-name, building the index if necessary.
+	 *
+	 * @return The address or -1 if not found.
+	 */
+	private long findEntryAddress(byte[] fileNameBytes) throws IOException {
+		if (hashes == null) {
+			buildIndex();
+		}
+		int hash = FNV_OFFSET_BASIS;
+		for (byte b : fileNameBytes) {
+			hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+		}
+		hash = fixHash(hash);
+		int slot = (hash & mask);
+		while (hashes[slot] != EMPTY_HASH) {
+			if (hashes[slot] == hash && nameEquals(entryBuffer(addresses[slot]), fileNameBytes)) {
+				return addresses[slot];
+			}
+			slot = ((slot + 1) & mask);
+		}
+		return -1;
+	}
+
+	private void buildIndex() throws IOException {
+		resizeIndex(Math.max(16, Integer.highestOneBit((int) Math.min(numEntries, 1 << 29)) << 2));
+		for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+			ByteBuffer chunk = chunkContents(chunkIndex);
+			int limit = chunk.limit();
+			int offset = 0;
+			while (offset < limit) {
+				chunk.limit(limit).position(offset);
+				ByteBuffer entry = chunk.slice().order(ByteOrder.LITTLE_ENDIAN);
+				int entrySize = entrySize(entry);
+				long address = (long) chunkIndex * CHUNK_SIZE + offset;
+				if (replacedEntries != null && replacedEntries.containsKey(address)) {
+					entry = entryBuffer(address);
+				}
+				index(address, entry);
+				offset += entrySize;
+			}
+		}
+	}
+
+	/**
+	 * Add the entry at the address to the index replacing any entry with the same file-name.
+	 */
+	private void index(long address, ByteBuffer entry) throws IOException {
+		if ((numIndexed + 1) * 2 > hashes.length) {
+			resizeIndex(hashes.length * 2);
+		}
+		int nameLength = (entry.getShort(FILE_NAME_LENGTH_OFFSET) & 0xFFFF);
+		int hash = FNV_OFFSET_BASIS;
+		for (int i = ENTRY_FIXED_SIZE; i < ENTRY_FIXED_SIZE + nameLength; i++) {
+			hash = (hash ^ (entry.get(i) & 0xFF)) * FNV_PRIME;
+		}
+		hash = fixHash(hash);
+		int slot = (hash & mask);
+		while (hashes[slot] != EMPTY_HASH) {
+			if (hashes[slot] == hash && namesEqual(entryBuffer(addresses[slot]), entry)) {
+				addresses[slot] = address;
+				return;
+			}
+			slot = ((slot + 1) & mask);
+		}
+		hashes[slot] = hash;
+		addresses[slot] = address;
+		numIndexed++;
+	}
+
+	private void resizeIndex(int capacity) {
+		int[] oldHashes = hashes;
+		long[] oldAddresses = addresses;
+		hashes = new int[capacity];
+		addresses = new long[capacity];
+		mask = capacity - 1;
+		if (oldHashes == null) {
+			return;
+		}
+		for (int i = 0; i < oldHashes.length; i++) {
+			if (oldHashes[i] != EMPTY_HASH) {
+				int slot = (oldHashes[i] & mask);
+				while (hashes[slot] != EMPTY_HASH) {
+					slot = ((slot + 1) & mask);
+				}
+				hashes[slot] = oldHashes[i];
+				addresses[slot] = oldAddresses[i];
+			}
+		}
+	}
+
+	/**
+	 * Return a little-endian buffer whose index 0 is the start of the entry at the address. If the entry has been
+	 * spilled then it is read into a new buffer.
+	 */
+	private ByteBuffer entryBuffer(long address) throws IOException {
+		if (replacedEntries != null) {
+			byte[] replacedBytes = replacedEntries.get(address);
+			if (replacedBytes != null) {
+				return ByteBuffer.wrap(replacedBytes).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+		ByteBuffer chunk = chunks.get(chunkIndex(address));
+		if (chunk == null) {
+			long spillPosition = spillPosition(address);
+			ByteBuffer entry = ByteBuffer.allocate(ENTRY_FIXED_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			IoUtils.readFully(spillChannel, entry, spillPosition, "spilled central-directory entry");
+			int entrySize = entrySize(entry);
+			entry = ByteBuffer.allocate(entrySize).order(ByteOrder.LITTLE_ENDIAN);
+			IoUtils.readFully(spillChannel, entry, spillPosition, "spilled central-directory entry");
+			entry.clear();
+			return entry;
+		}
+		chunk = chunk.duplicate();
+		chunk.limit(chunk.position()).position((int) (address % CHUNK_SIZE));
+		return chunk.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Write the bytes in place of the entry at the address when the entries are written.
+	 */
+	private void replaceEntry(long address, int oldEntrySize, byte[] replacedBytes) {
+		if (replacedEntries == null) {
+			replacedEntries = new HashMap<>();
+		}
+		replacedEntries.put(address, replacedBytes);
+		size += replacedBytes.length - oldEntrySize;
+	}
+
+	private long spillPosition(long address) {
+		return spillPositions.get(chunkIndex(address)) + address % CHUNK_SIZE;
+	}
+
+	private static int chunkIndex(long address) {
+		return (int) (address / CHUNK_SIZE);
+	}
+
+	private static int entrySize(ByteBuffer entry) {
+		return ENTRY_FIXED_SIZE //
+				+ (entry.getShort(FILE_NAME_LENGTH_OFFSET) & 0xFFFF)
+				+ (entry.getShort(EXTRA_LENGTH_OFFSET) & 0xFFFF)
+				+ (entry.getShort(COMMENT_LENGTH_OFFSET) & 0xFFFF);
+	}
+
+	private static boolean nameEquals(ByteBuffer entry, byte[] fileNameBytes) {
+		int nameLength = (entry.getShort(FILE_NAME_LENGTH_OFFSET) & 0xFFFF);
+		if (nameLength != fileNameBytes.length) {
+			return false;
+		}
+		for (int i = 0; i < nameLength; i++) {
+			if (entry.get(ENTRY_FIXED_SIZE + i) != fileNameBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean namesEqual(ByteBuffer entry1, ByteBuffer entry2) {
+		int nameLength = (entry1.getShort(FILE_NAME_LENGTH_OFFSET) & 0xFFFF);
+		if (nameLength != (entry2.getShort(FILE_NAME_LENGTH_OFFSET) & 0xFFFF)) {
+			return false;
+		}
+		for (int i = ENTRY_FIXED_SIZE; i < ENTRY_FIXED_SIZE + nameLength; i++) {
+			if (entry1.get(i) != entry2.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Make sure that the hash is never the empty marker.
+	 */
+	private static int fixHash(int hash) {
+		if (hash == EMPTY_HASH) {
+			return 1;
+		} else {
+			return hash;
+		}
+	}
+
+	/**
+	 * Copy the remaining bytes of the buffer to the output-stream.
+	 */
+	private static void copyBytes(ByteBuffer source, byte[] buffer, OutputStream outputStream) throws IOException {
+		while (source.hasRemaining()) {
+			int length = Math.min(source.remaining(), buffer.length);
+			source.get(buffer, 0, length);
+			outputStream.write(buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Output stream that the entries are serialized into before being copied into a chunk.
+	 */
+	private static class EntryOutputStream extends ByteArrayOutputStream {
+
+		public void writeTo(ByteBuffer buffer) {
+			buffer.put(buf, 0, count);
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package com.j256.simplezip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import com.j256.simplezip.codec.CodecPool;
+import com.j256.simplezip.codec.FileDataEncoder;
+import com.j256.simplezip.format.GeneralPurposeFlag;
+import com.j256.simplezip.format.ZipFileHeader;
+
+/**
+ * Writes a Zip-file with a lot of entries by compressing the entries concurrently with a pool of threads. The entries
+ * are encoded into memory, or temporary files if they are large, and then written to the {@link ZipFileOutput} by the
+ * calling thread in the order that they were submitted so the resulting Zip-file is the same as if it was written
+ * sequentially. Because the CRC32 and sizes are known before the entry is written, the file-headers contain them and no
+ * data-descriptors are needed.
+ *
+ * <p>
+ * Of the submitted entries that are waiting to be compressed, the largest are compressed first so the threads are kept
+ * busy and a large entry doesn't end up being compressed alone at the end.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ParallelZipFileOutput implements Closeable {
+
+	/** default maximum number of entries which have been submitted but not written */
+	public static final int DEFAULT_MAX_PENDING_PER_THREAD = 16;
+	/** default size of an encoded entry above which it is written to a temporary file instead of kept in memory */
+	public static final int DEFAULT_MAX_SIZE_IN_MEMORY = 1024 * 1024;
+
+	private final ZipFileOutput zipFileOutput;
+	private final ThreadPoolExecutor executor;
+	private final int maxPendingEntries;
+	private final int maxSizeInMemory;
+	private final ArrayDeque<EntryTask> pendingEntries = new ArrayDeque<EntryTask>();
+	private CodecPool codecPool = CodecPool.getDefaultPool();
+	private long entryCount;
+	private boolean closed;
+	private Throwable writeFailure;
+
+	/**
+	 * Create the output which compresses with a certain number of threads.
+	 */
+	public ParallelZipFileOutput(ZipFileOutput zipFileOutput, int numThreads) {
+		this(zipFileOutput, numThreads, numThreads * DEFAULT_MAX_PENDING_PER_THREAD, DEFAULT_MAX_SIZE_IN_MEMORY);
+	}
+
+	/**
+	 * Create the output.
+	 *
+	 * @param zipFileOutput
+	 *            Where the encoded entries are written in order.
+	 * @param numThreads
+	 *            Number of threads which encode the entries.
+	 * @param maxPendingEntries
+	 *            Maximum number of entries that have been submitted but not written after which the submit methods wait
+	 *            for the oldest to be encoded and written. The largest-first ordering is only done across these
+	 *            entries.
+	 * @param maxSizeInMemory
+	 *            Size of an encoded entry above which it is spilled to a temporary file.
+	 */
+	public ParallelZipFileOutput(ZipFileOutput zipFileOutput, int numThreads, int maxPendingEntries,
+			int maxSizeInMemory) {
+		if (numThreads <= 0) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + numThreads);
+		}
+		if (maxPendingEntries <= 0) {
+			throw new IllegalArgumentException("Max pending entries must be positive: " + maxPendingEntries);
+		}
+		this.zipFileOutput = zipFileOutput;
+		this.maxPendingEntries = maxPendingEntries;
+		this.maxSizeInMemory = maxSizeInMemory;
+		// priority queue so the largest entries waiting are run first, the tasks must all be EntryTasks
+		this.executor = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<Runnable>(), new EncoderThreadFactory());
+	}
+
+	/**
+	 * Submit an entry with the contents of a file to be written to the Zip-file. It will be encoded based on the
+	 * {@link ZipFileHeader#getCompressionMethod()}. This may wait for older entries to be written.
+	 */
+	public void submitFile(ZipFileHeader fileHeader, final File file) throws IOException {
+		submit(fileHeader, file.length(), new DataSource() {
+			@Override
+			public InputStream open() throws IOException {
+				return new FileInputStream(file);
+			}
+		});
+	}
+
+	/**
+	 * Submit an entry with the contents of a file-path to be written to the Zip-file. It will be encoded based on the
+	 * {@link ZipFileHeader#getCompressionMethod()}. This may wait for older entries to be written.
+	 */
+	public void submitFile(ZipFileHeader fileHeader, String filePath) throws IOException {
+		submitFile(fileHeader, new File(filePath));
+	}
+
+	/**
+	 * Submit an entry with the contents of a byte array to be written to the Zip-file. It will be encoded based on the
+	 * {@link ZipFileHeader#getCompressionMethod()}. This may wait for older entries to be written. The array must not
+	 * be changed until the entry has been written.
+	 */
+	public void submitFileData(ZipFileHeader fileHeader, final byte[] fileData) throws IOException {
+		submit(fileHeader, fileData.length, new DataSource() {
+			@Override
+			public InputStream open() {
+				return new ByteArrayInputStream(fileData);
+			}
+		});
+	}
+
+	/**
+	 * Wait for all of the submitted entries to be encoded and written and then finish the Zip-file. See
+	 * {@link ZipFileOutput#finishZip()}.
+	 *
+	 * @return Returns the number of bytes written to the stream so far.
+	 */
+	public long finishZip() throws IOException {
+		writePendingEntries(0);
+		return zipFileOutput.finishZip();
+	}
+
+	/**
+	 * Set the pool that is used to get the deflaters and buffers used by the encoding threads. By default the
+	 * {@link CodecPool#getDefaultPool()} is used. This should be called before any entries are submitted.
+	 */
+	public void setCodecPool(CodecPool codecPool) {
+		this.codecPool = codecPool;
+	}
+
+	/**
+	 * Return the underlying output which, for example, can be used to add directory file-info to the written entries.
+	 */
+	public ZipFileOutput getZipFileOutput() {
+		return zipFileOutput;
+	}
+
+	/**
+	 * Finish the Zip-file if necessary, close the underlying output, and stop the encoding threads. If an entry could
+	 * not be encoded or written, even if that was already thrown by a submit method, then the underlying output is
+	 * closed without finishing the Zip-file so the partial Zip-file isn't mistaken for a good one.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			try {
+				finishZip();
+			} catch (IOException | RuntimeException e) {
+				try {
+					zipFileOutput.closeWithoutFinishing();
+				} catch (IOException | RuntimeException closeException) {
+					e.addSuppressed(closeException);
+				}
+				throw e;
+			}
+			zipFileOutput.close();
+		} finally {
+			executor.shutdownNow();
+			cleanupPendingEntries();
+		}
+	}
+
+	/**
+	 * If there was an error then clean up the entries that were not written. Tasks that are cancelled while running
+	 * delete their own data when they finish.
+	 */
+	private void cleanupPendingEntries() {
+		for (EntryTask task : pendingEntries) {
+			if (!task.cancel(false)) {
+				try {
+					task.get().data.delete();
+				} catch (Exception e) {
+					// ignored because we are already cleaning up after an error
+				}
+			}
+		}
+		pendingEntries.clear();
+	}
+
+	private void submit(ZipFileHeader fileHeader, long size, DataSource dataSource) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Cannot submit an entry after the output has been closed");
+		}
+		EntryTask task = new EntryTask(new EntryEncoder(fileHeader, dataSource), size, entryCount++);
+		pendingEntries.addLast(task);
+		executor.execute(task);
+		writePendingEntries(maxPendingEntries - 1);
+	}
+
+	/**
+	 * Write out the oldest entries until there are at most a certain number pending. Any other entries that have
+	 * already been encoded are also written.
+	 */
+	private void writePendingEntries(int maxPending) throws IOException {
+		if (writeFailure != null) {
+			// the failed entry is gone so we can't write any later entries or finish the zip without it
+			throw new IOException("Cannot continue after an earlier entry failed to be written", writeFailure);
+		}
+		try {
+			while (!pendingEntries.isEmpty()
+					&& (pendingEntries.size() > maxPending || pendingEntries.peekFirst().isDone())) {
+				writeEntry(getEncodedEntry(pendingEntries.removeFirst()));
+			}
+		} catch (IOException | RuntimeException e) {
+			writeFailure = e;
+			throw e;
+		}
+	}
+
+	private EncodedEntry getEncodedEntry(EntryTask task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for encoded entry");
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else {
+				throw new IOException("Encoding entry failed", cause);
+			}
+		}
+	}
+
+	private void writeEntry(EncodedEntry entry) throws IOException {
+		try {
+			ZipFileHeader fileHeader = entry.fileHeader;
+			if (entry.data.size < IoUtils.MAX_UNSIGNED_INT_VALUE
+					&& entry.uncompressedSize < IoUtils.MAX_UNSIGNED_INT_VALUE) {
+				// we know all of the information so we can put it in the header
+				ZipFileHeader.Builder builder = ZipFileHeader.Builder.fromHeader(fileHeader);
+				builder.clearGeneralPurposeFlag(GeneralPurposeFlag.DATA_DESCRIPTOR);
+				builder.setCrc32(entry.crc32);
+				builder.setCompressedSize(entry.data.size);
+				builder.setUncompressedSize(entry.uncompressedSize);
+				fileHeader = builder.build();
+			}
+			zipFileOutput.writeFileHeader(fileHeader);
+			entry.data.writeTo(zipFileOutput);
+			zipFileOutput.finishFileData(entry.crc32, entry.uncompressedSize);
+		} finally {
+			entry.data.delete();
+		}
+	}
+
+	/**
+	 * Source of the bytes for an entry which is opened by the encoding thread.
+	 */
+	private static interface DataSource {
+		public InputStream open() throws IOException;
+	}
+
+	/**
+	 * Task that is run by the executor which is ordered so the largest entries are run first.
+	 */
+	private static class EntryTask extends FutureTask<EncodedEntry> implements Comparable<EntryTask> {
+
+		private final long size;
+		private final long sequence;
+
+		public EntryTask(Callable<EncodedEntry> callable, long size, long sequence) {
+			super(callable);
+			this.size = size;
+			this.sequence = sequence;
+		}
+
+		@Override
+		protected void set(EncodedEntry entry) {
+			super.set(entry);
+			if (isCancelled()) {
+				// we were cancelled while running so no one else will write or delete the data
+				entry.data.delete();
+			}
+		}
+
+		@Override
+		public int compareTo(EntryTask other) {
+			if (size != other.size) {
+				// larger entries first
+				return (size > other.size ? -1 : 1);
+			}
+			// then in the order they were submitted
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+
+	/**
+	 * Encodes an entry in one of the executor threads.
+	 */
+	private class EntryEncoder implements Callable<EncodedEntry> {
+
+		private final ZipFileHeader fileHeader;
+		private final DataSource dataSource;
+
+		public EntryEncoder(ZipFileHeader fileHeader, DataSource dataSource) {
+			this.fileHeader = fileHeader;
+			this.dataSource = dataSource;
+		}
+
+		@Override
+		public EncodedEntry call() throws IOException {
+			SpillOutputStream data = new SpillOutputStream(maxSizeInMemory);
+			CRC32 crc32 = new CRC32();
+			long uncompressedSize = 0;
+			byte[] buffer = codecPool.borrowBuffer();
+			try (InputStream inputStream = dataSource.open()) {
+				FileDataEncoder encoder = ZipFileOutput.createFileDataEncoder(fileHeader.getCompressionMethod(), data,
+						fileHeader.getCompressionLevel(), codecPool);
+				try {
+					while (true) {
+						int numRead = inputStream.read(buffer);
+						if (numRead < 0) {
+							break;
+						}
+						crc32.update(buffer, 0, numRead);
+						encoder.encode(buffer, 0, numRead);
+						uncompressedSize += numRead;
+					}
+				} finally {
+					encoder.close();
+				}
+				data.close();
+			} catch (IOException ioe) {
+				data.delete();
+				throw ioe;
+			} finally {
+				codecPool.returnBuffer(buffer);
+			}
+			return new EncodedEntry(fileHeader, data, crc32.getValue(), uncompressedSize);
+		}
+	}
+
+	/**
+	 * Results of encoding an entry.
+	 */
+	private static class EncodedEntry {
+
+		final ZipFileHeader fileHeader;
+		final SpillOutputStream data;
+		final long crc32;
+		final long uncompressedSize;
+
+		public EncodedEntry(ZipFileHeader fileHeader, SpillOutputStream data, long crc32, long uncompressedSize) {
+			this.fileHeader = fileHeader;
+			this.data = data;
+			this.crc32 = crc32;
+			this.uncompressedSize = uncompressedSize;
+		}
+	}
+
+	/**
+	 * Output stream which stores the encoded bytes in memory until it gets too large and then writes to a temporary
+	 * file.
+	 */
+	private static class SpillOutputStream extends OutputStream {
+
+		private final int maxSizeInMemory;
+		private final ByteArrayOutputStream memoryStream = new ByteArrayOutputStream();
+		private File tmpFile;
+		private FileOutputStream tmpFileOutputStream;
+		long size;
+
+		public SpillOutputStream(int maxSizeInMemory) {
+			this.maxSizeInMemory = maxSizeInMemory;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			if (tmpFileOutputStream == null && size + length > maxSizeInMemory) {
+				tmpFile = File.createTempFile(ParallelZipFileOutput.class.getSimpleName(), ".ztf");
+				tmpFile.deleteOnExit();
+				tmpFileOutputStream = new FileOutputStream(tmpFile);
+				memoryStream.writeTo(tmpFileOutputStream);
+				memoryStream.reset();
+			}
+			if (tmpFileOutputStream == null) {
+				memoryStream.write(buffer, offset, length);
+			} else {
+				tmpFileOutputStream.write(buffer, offset, length);
+			}
+			size += length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (tmpFileOutputStream != null) {
+				tmpFileOutputStream.close();
+			}
+		}
+
+		/**
+		 * Write the stored bytes to the Zip-file without encoding them again.
+		 */
+		public void writeTo(ZipFileOutput zipFileOutput) throws IOException {
+			if (tmpFile == null) {
+				zipFileOutput.writeRawFileDataPart(memoryStream.toByteArray());
+				return;
+			}
+			byte[] buffer = new byte[IoUtils.STANDARD_BUFFER_SIZE * 16];
+			try (InputStream inputStream = new FileInputStream(tmpFile)) {
+				while (true) {
+					int numRead = inputStream.read(buffer);
+					if (numRead < 0) {
+						break;
+					}
+					zipFileOutput.writeRawFileDataPart(buffer, 0, numRead);
+				}
+			}
+		}
+
+		/**
+		 * Delete any temporary file.
+		 */
+		public void delete() {
+			if (tmpFile != null) {
+				try {
+					close();
+				} catch (IOException e) {
+					// ignored since we are deleting it
+				}
+				tmpFile.delete();
+				tmpFile = null;
+			}
+		}
+	}
+
+	/**
+	 * Creates daemon threads for the encoding so they won't keep the JVM running.
+	 */
+	private static class EncoderThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "simplezip-encoder-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -7,36 +7,78 @@ import java.io.InputStream;
  * Buffer that keeps around the last read bytes, allowing us to rewind the stream for a certain number of bytes. This is
  * necessary because there are a couple of places where the stream is read ahead because of buffering and we need to
  * rewind when done.
- * 
+ *
+ * <p>
+ * The last read bytes are kept in a fixed size ring buffer so the memory used is bounded no matter how large the reads
+ * are. Reads are passed through to the delegate stream directly into the caller's buffer and only the tail of the read
+ * is copied into the ring buffer.
+ * </p>
+ *
+ * <p>
+ * If a read-ahead size is specified then small reads, such as the fields of the Zip headers, are satisfied by reading a
+ * large block from the delegate into the ring buffer. The ring buffer is enlarged by the read-ahead size so the number
+ * of bytes that can be rewound is not reduced by the bytes that have been read ahead.
+ * </p>
+ *
  * @author graywatson
  */
 public class RewindableInputStream extends InputStream {
 
 	private final InputStream delegate;
-	private byte[] buffer;
-	private int offset;
-	private int extraOffset;
+	private final byte[] buffer;
+	private final int readAheadSize;
+	/** number of bytes that have been read from the delegate */
+	private long delegateCount;
+	/** number of bytes that have been read from this stream minus the number of bytes rewound */
 	private long byteCount;
+	/** stream offset before which we can't rewind because the bytes were skipped and not saved in the ring */
+	private long rewindStart;
 
-	public RewindableInputStream(InputStream delegate, int initialBufferSize) {
+	/**
+	 * Create the stream.
+	 *
+	 * @param bufferSize
+	 *            Size of the ring buffer which is the maximum number of bytes that can be rewound.
+	 */
+	public RewindableInputStream(InputStream delegate, int bufferSize) {
+		this(delegate, bufferSize, 0);
+	}
+
+	/**
+	 * Create the stream with read-ahead.
+	 *
+	 * @param bufferSize
+	 *            Maximum number of bytes that can be rewound.
+	 * @param readAheadSize
+	 *            Number of bytes to read from the delegate at once when a read is smaller than this. Reads that are
+	 *            this size or larger are passed through to the delegate directly. Set to 0 to disable the read-ahead.
+	 */
+	public RewindableInputStream(InputStream delegate, int bufferSize, int readAheadSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		if (readAheadSize < 0) {
+			throw new IllegalArgumentException("Read-ahead size must not be negative: " + readAheadSize);
+		}
 		this.delegate = delegate;
-		this.buffer = new byte[initialBufferSize];
+		this.buffer = new byte[bufferSize + readAheadSize];
+		this.readAheadSize = readAheadSize;
 	}
 
 	@Override
 	public int read() throws IOException {
-		if (extraOffset < offset) {
-			int ret = (int) (buffer[extraOffset++] & 0xff);
-			byteCount++;
-			return ret;
+		if (byteCount == delegateCount && readAheadSize > 0 && readAhead() < 0) {
+			return -1;
+		}
+		if (byteCount < delegateCount) {
+			return (buffer[bufferIndex(byteCount++)] & 0xff);
 		}
-		ensureSpace(1);
-		int ret = delegate.read(buffer, offset, 1);
+		int ret = delegate.read();
 		if (ret < 0) {
 			return -1;
 		}
-		ret = (int) (buffer[offset++] & 0xff);
-		extraOffset++;
+		buffer[bufferIndex(delegateCount)] = (byte) ret;
+		delegateCount++;
 		byteCount++;
 		return ret;
 	}
@@ -51,42 +93,62 @@ public class RewindableInputStream extends InputStream {
 		if (length == 0) {
 			return 0;
 		}
-		int extraRead = 0;
-		for (; extraOffset < offset && length > 0; length--) {
-			outBuffer[outOffset++] = buffer[extraOffset++];
-			extraRead++;
-			byteCount++;
+		if (byteCount == delegateCount && length < readAheadSize && readAhead() < 0) {
+			return -1;
 		}
-		if (length == 0) {
-			return extraRead;
+		if (byteCount < delegateCount) {
+			// return the bytes that have been rewound, we don't block on the delegate for more
+			int numRead = (int) Math.min(length, delegateCount - byteCount);
+			copyFromBuffer(outBuffer, outOffset, numRead);
+			return numRead;
 		}
-		ensureSpace(length);
-		int numRead = delegate.read(buffer, offset, length);
+		int numRead = delegate.read(outBuffer, outOffset, length);
 		if (numRead < 0) {
-			if (extraRead == 0) {
-				return -1;
-			} else {
-				return extraRead;
-			}
-		}
-		System.arraycopy(buffer, offset, outBuffer, outOffset, numRead);
-		offset += numRead;
-		extraOffset += numRead;
-		byteCount += numRead;
-		return extraRead + numRead;
+			return -1;
+		}
+		copyToBuffer(outBuffer, outOffset, numRead);
+		return numRead;
+	}
+
+	/**
+	 * Skip over bytes in the stream. This uses the delegate's skip so, for example, it will seek over the bytes of a
+	 * file without reading them. The skipped bytes can't be rewound.
+	 */
+	@Override
+	public long skip(long numBytes) throws IOException {
+		if (numBytes <= 0) {
+			return 0;
+		}
+		if (byteCount < delegateCount) {
+			long num = Math.min(numBytes, delegateCount - byteCount);
+			byteCount += num;
+			return num;
+		}
+		long num = delegate.skip(numBytes);
+		if (num > 0) {
+			delegateCount += num;
+			byteCount += num;
+			rewindStart = delegateCount;
+		}
+		return num;
 	}
 
 	/**
 	 * Rewind the buffer a certain number of bytes.
 	 */
 	public void rewind(int numBytes) throws IOException {
-		if (numBytes > extraOffset) {
-			throw new IOException("Trying to rewind " + numBytes + " but buffer only has " + extraOffset);
+		long available = byteCount - Math.max(rewindStart, delegateCount - buffer.length);
+		if (numBytes > available) {
+			throw new IOException("Trying to rewind " + numBytes + " but buffer only has " + available);
 		}
-		extraOffset -= numBytes;
 		byteCount -= numBytes;
 	}
 
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(Integer.MAX_VALUE, (delegateCount - byteCount) + delegate.available());
+	}
+
 	@Override
 	public void close() throws IOException {
 		delegate.close();
@@ -100,20 +162,53 @@ public class RewindableInputStream extends InputStream {
 	}
 
 	/**
-	 * Ensure we have these many bytes left in the buffer.
-	 * 
-	 * NOTE: we wouldn't be here if there were extra bytes so we don't have to copy anything around
+	 * Read a block from the delegate into the ring buffer after the bytes that have been read. This is only called when
+	 * all of the bytes from the delegate have been consumed so at most the read-ahead size is unconsumed afterwards and
+	 * the rest of the ring is still available for rewinding.
+	 *
+	 * @return The number of bytes read or -1 on EOF.
+	 */
+	private int readAhead() throws IOException {
+		int index = bufferIndex(delegateCount);
+		int numRead = delegate.read(buffer, index, Math.min(readAheadSize, buffer.length - index));
+		if (numRead > 0) {
+			delegateCount += numRead;
+		}
+		return numRead;
+	}
+
+	/**
+	 * Copy rewound bytes from the ring buffer into the output buffer which may wrap around the end of the ring.
 	 */
-	private void ensureSpace(int numBytes) {
-		if (offset + numBytes <= buffer.length) {
-			return;
+	private void copyFromBuffer(byte[] outBuffer, int outOffset, int length) {
+		int index = bufferIndex(byteCount);
+		int firstLength = Math.min(length, buffer.length - index);
+		System.arraycopy(buffer, index, outBuffer, outOffset, firstLength);
+		if (firstLength < length) {
+			System.arraycopy(buffer, 0, outBuffer, outOffset + firstLength, length - firstLength);
 		}
-		// only grow the buffer if the read is more than the buffer size
-		if (numBytes > buffer.length) {
-			int newLength = Math.max(buffer.length * 2, numBytes * 2);
-			buffer = new byte[newLength];
+		byteCount += length;
+	}
+
+	/**
+	 * Copy the bytes that were just read from the delegate into the ring buffer. Only the last bytes that fit in the
+	 * ring need to be saved.
+	 */
+	private void copyToBuffer(byte[] inBuffer, int inOffset, int length) {
+		int skip = Math.max(0, length - buffer.length);
+		long start = delegateCount + skip;
+		int copyLength = length - skip;
+		int index = bufferIndex(start);
+		int firstLength = Math.min(copyLength, buffer.length - index);
+		System.arraycopy(inBuffer, inOffset + skip, buffer, index, firstLength);
+		if (firstLength < copyLength) {
+			System.arraycopy(inBuffer, inOffset + skip + firstLength, buffer, 0, copyLength - firstLength);
 		}
-		offset = 0;
-		extraOffset = 0;
+		delegateCount += length;
+		byteCount += length;
+	}
+
+	private int bufferIndex(long streamOffset) {
+		return (int) (streamOffset % buffer.length);
 	}
 }
@@ -0,0 +1,172 @@
+package com.j256.simplezip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Read-only memory-mapping of a file which is split into multiple segments so that files larger than
+ * Integer.MAX_VALUE can be mapped. Each segment overlaps the next one by a fixed number of bytes so that any Zip
+ * record which starts in a segment can be parsed completely from that segment's bytes without having to stitch
+ * segments together.
+ *
+ * @author graywatson
+ */
+public class SegmentedMappedBuffer {
+
+	/** default size of each of the mapped segments */
+	public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024 * 1024;
+	/**
+	 * Default overlap of the segments which needs to be larger than the largest record. A central-directory entry can
+	 * have a 46 byte fixed portion plus a 64k file-name, 64k extra field, and 64k comment.
+	 */
+	public static final int DEFAULT_SEGMENT_OVERLAP = 256 * 1024;
+
+	private final long size;
+	private final int segmentSize;
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * Map the file-channel using the default segment size and overlap.
+	 */
+	public SegmentedMappedBuffer(FileChannel channel) throws IOException {
+		this(channel, DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENT_OVERLAP);
+	}
+
+	/**
+	 * Map the file-channel using a specific segment size and overlap. The segment size plus the overlap must be less
+	 * than or equal to Integer.MAX_VALUE.
+	 */
+	public SegmentedMappedBuffer(FileChannel channel, int segmentSize, int segmentOverlap) throws IOException {
+		if (segmentSize <= 0 || segmentOverlap < 0 || (long) segmentSize + segmentOverlap > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"Invalid segment size " + segmentSize + " and overlap " + segmentOverlap);
+		}
+		this.size = channel.size();
+		this.segmentSize = segmentSize;
+		long numSegments = (size + segmentSize - 1) / segmentSize;
+		if (numSegments > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Segment size " + segmentSize + " is too small for file size " + size);
+		}
+		this.segments = new MappedByteBuffer[(int) numSegments];
+		for (int i = 0; i < segments.length; i++) {
+			long start = (long) i * segmentSize;
+			long length = Math.min(size - start, (long) segmentSize + segmentOverlap);
+			segments[i] = channel.map(MapMode.READ_ONLY, start, length);
+		}
+	}
+
+	/**
+	 * Return a little-endian buffer with the bytes starting at the file position. The buffer's index 0 and position
+	 * will be at the file position and it will extend until the end of the segment's overlap or the end of the file.
+	 * The returned buffer is independent so it can be used by multiple threads.
+	 */
+	public ByteBuffer slice(long position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position " + position + " is outside of the mapped size " + size);
+		}
+		ByteBuffer buffer = segments[(int) (position / segmentSize)].duplicate();
+		buffer.position((int) (position % segmentSize));
+		return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Copy bytes from the file position into the byte array. This may read fewer bytes than requested if the read
+	 * spans segments.
+	 *
+	 * @return The number of bytes copied or -1 if the position is at or past the end of the file.
+	 */
+	public int read(long position, byte[] bytes, int offset, int length) {
+		if (position >= size) {
+			return -1;
+		}
+		if (length == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = segments[(int) (position / segmentSize)].duplicate();
+		int segmentOffset = (int) (position % segmentSize);
+		buffer.position(segmentOffset);
+		length = Math.min(length, buffer.limit() - segmentOffset);
+		buffer.get(bytes, offset, length);
+		return length;
+	}
+
+	/**
+	 * Open an input-stream that reads from the start position up to (but not including) the limit position. Multiple
+	 * of these streams can be open at the same time because each one keeps track of its own position.
+	 */
+	public InputStream openInputStream(long start, long limit) {
+		return new MappedInputStream(start, Math.min(limit, size));
+	}
+
+	/**
+	 * Return the size of the mapped file.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Input-stream which reads a region of the mapped segments.
+	 */
+	private class MappedInputStream extends InputStream {
+
+		private final long limit;
+		private final byte[] singleByteBuffer = new byte[1];
+		private long position;
+
+		public MappedInputStream(long start, long limit) {
+			this.position = start;
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() {
+			int num = read(singleByteBuffer, 0, 1);
+			if (num < 0) {
+				return -1;
+			} else {
+				return (singleByteBuffer[0] & 0xFF);
+			}
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (position >= limit) {
+				return -1;
+			}
+			// we do this instead of Math.min() because one is long but never > than MAXINT
+			if (limit - position < length) {
+				length = (int) (limit - position);
+			}
+			int numRead = SegmentedMappedBuffer.this.read(position, buffer, offset, length);
+			if (numRead < 0) {
+				return -1;
+			}
+			position += numRead;
+			return numRead;
+		}
+
+		@Override
+		public long skip(long numBytes) {
+			if (numBytes <= 0) {
+				return 0;
+			}
+			long skipped = Math.min(numBytes, limit - position);
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(limit - position, Integer.MAX_VALUE);
+		}
+	}
+}
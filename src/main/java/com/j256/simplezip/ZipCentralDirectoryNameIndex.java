@@ -0,0 +1,209 @@
+package com.j256.simplezip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntryView;
+
+/**
+ * Index of the file-names in the central-directory which allows entries to be looked up by name without having to
+ * create a {@link ZipCentralDirectoryFileEntry} for every entry. The index is an open-addressing hash table of
+ * primitive int slots that hold the hash of the file-name bytes and the offset of the entry in the central-directory
+ * buffer. Lookups compare the file-name bytes in place in the buffer so are allocation free.
+ *
+ * <p>
+ * If the same file-name appears more than once in the central-directory then the first entry is found.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ZipCentralDirectoryNameIndex {
+
+	private static final int ENTRY_SIGNATURE = 0x2014b50;
+	/** size of the entry including the signature but not including the file-name, extra, and comment */
+	private static final int ENTRY_FIXED_SIZE = 4 + ZipCentralDirectoryFileEntry.MINIMUM_READ_SIZE;
+	private static final int FILE_NAME_LENGTH_OFFSET = 28;
+	private static final int EXTRA_LENGTH_OFFSET = 30;
+	private static final int COMMENT_LENGTH_OFFSET = 32;
+	private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+	private static final int FNV_PRIME = 0x01000193;
+	/** hash slot value which marks that the slot is empty */
+	private static final int EMPTY_HASH = 0;
+
+	private final ByteBuffer directoryBuffer;
+	private final int numEntries;
+	private final int mask;
+	private final int[] hashes;
+	private final int[] offsets;
+
+	/**
+	 * Build the index by walking the central-directory entries in the buffer. The buffer's index 0 should be the start
+	 * of the first entry and its limit the end of the last entry. The buffer is held by the index and is not modified.
+	 */
+	public ZipCentralDirectoryNameIndex(ByteBuffer directoryBuffer) {
+		this.directoryBuffer = directoryBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+		// first count the entries so we can size the table
+		int count = 0;
+		int offset = 0;
+		while (offset < this.directoryBuffer.limit()) {
+			int entrySize = entrySize(offset);
+			if (entrySize < 0) {
+				break;
+			}
+			offset += entrySize;
+			count++;
+		}
+		this.numEntries = count;
+
+		// keep the table at most half full so the probe chains stay short
+		int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+		this.mask = capacity - 1;
+		this.hashes = new int[capacity];
+		this.offsets = new int[capacity];
+
+		offset = 0;
+		for (int i = 0; i < count; i++) {
+			int nameLength = (this.directoryBuffer.getShort(offset + FILE_NAME_LENGTH_OFFSET) & 0xFFFF);
+			int hash = hash(offset + ENTRY_FIXED_SIZE, nameLength);
+			int slot = (hash & mask);
+			while (hashes[slot] != EMPTY_HASH) {
+				slot = ((slot + 1) & mask);
+			}
+			hashes[slot] = hash;
+			offsets[slot] = offset;
+			offset += entrySize(offset);
+		}
+	}
+
+	/**
+	 * Find the offset in the central-directory buffer of the entry with the file-name.
+	 *
+	 * @return The offset of the entry or -1 if there is no entry with the name.
+	 */
+	public int findEntryOffset(byte[] fileNameBytes) {
+		int hash = FNV_OFFSET_BASIS;
+		for (byte b : fileNameBytes) {
+			hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+		}
+		hash = fixHash(hash);
+		int slot = (hash & mask);
+		while (hashes[slot] != EMPTY_HASH) {
+			if (hashes[slot] == hash && nameEquals(offsets[slot], fileNameBytes)) {
+				return offsets[slot];
+			}
+			slot = ((slot + 1) & mask);
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the offset in the central-directory buffer of the entry with the file-name.
+	 *
+	 * @return The offset of the entry or -1 if there is no entry with the name.
+	 */
+	public int findEntryOffset(String fileName) {
+		return findEntryOffset(fileName.getBytes());
+	}
+
+	/**
+	 * Find and read the central-directory entry with the file-name.
+	 *
+	 * @return The entry or null if there is no entry with the name.
+	 */
+	public ZipCentralDirectoryFileEntry findEntry(String fileName) throws IOException {
+		int offset = findEntryOffset(fileName);
+		if (offset < 0) {
+			return null;
+		} else {
+			return readEntry(offset);
+		}
+	}
+
+	/**
+	 * Point the view at the central-directory entry with the file-name. This does not allocate any objects.
+	 *
+	 * @return True if the entry was found otherwise false.
+	 */
+	public boolean findEntryView(byte[] fileNameBytes, ZipCentralDirectoryFileEntryView view) {
+		int offset = findEntryOffset(fileNameBytes);
+		if (offset < 0) {
+			return false;
+		} else {
+			return view.wrap(directoryBuffer, offset);
+		}
+	}
+
+	/**
+	 * Read the central-directory entry at an offset returned by {@link #findEntryOffset(byte[])}.
+	 */
+	public ZipCentralDirectoryFileEntry readEntry(int offset) throws IOException {
+		ByteBuffer buffer = directoryBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(offset);
+		return ZipCentralDirectoryFileEntry.read(buffer);
+	}
+
+	/**
+	 * Return the number of entries that were indexed.
+	 */
+	public int getNumEntries() {
+		return numEntries;
+	}
+
+	/**
+	 * Return the size of the entry at the offset or -1 if there isn't a valid entry.
+	 */
+	private int entrySize(int offset) {
+		if (directoryBuffer.limit() - offset < ENTRY_FIXED_SIZE
+				|| directoryBuffer.getInt(offset) != ENTRY_SIGNATURE) {
+			return -1;
+		}
+		int size = ENTRY_FIXED_SIZE //
+				+ (directoryBuffer.getShort(offset + FILE_NAME_LENGTH_OFFSET) & 0xFFFF)
+				+ (directoryBuffer.getShort(offset + EXTRA_LENGTH_OFFSET) & 0xFFFF)
+				+ (directoryBuffer.getShort(offset + COMMENT_LENGTH_OFFSET) & 0xFFFF);
+		if (size > directoryBuffer.limit() - offset) {
+			return -1;
+		} else {
+			return size;
+		}
+	}
+
+	private boolean nameEquals(int offset, byte[] fileNameBytes) {
+		int nameLength = (directoryBuffer.getShort(offset + FILE_NAME_LENGTH_OFFSET) & 0xFFFF);
+		if (nameLength != fileNameBytes.length) {
+			return false;
+		}
+		int nameOffset = offset + ENTRY_FIXED_SIZE;
+		for (int i = 0; i < nameLength; i++) {
+			if (directoryBuffer.get(nameOffset + i) != fileNameBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * FNV-1a hash of the bytes in the buffer.
+	 */
+	private int hash(int offset, int length) {
+		int hash = FNV_OFFSET_BASIS;
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash ^ (directoryBuffer.get(i) & 0xFF)) * FNV_PRIME;
+		}
+		return fixHash(hash);
+	}
+
+	/**
+	 * Make sure that the hash is never the empty marker.
+	 */
+	private static int fixHash(int hash) {
+		if (hash == EMPTY_HASH) {
+			return 1;
+		} else {
+			return hash;
+		}
+	}
+}
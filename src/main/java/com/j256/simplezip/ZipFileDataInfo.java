@@ -11,6 +11,8 @@ public class ZipFileDataInfo {
 
 	private long byteCount;
 	private final CRC32 crc32 = new CRC32();
+	private boolean assigned;
+	private long assignedCrc32;
 
 	/**
 	 * Update the count with a buffer of bytes.
@@ -20,12 +22,23 @@ public class ZipFileDataInfo {
 		crc32.update(buffer, offset, length);
 	}
 
+	/**
+	 * Assign the count and crc which were calculated elsewhere, such as by a parallel encoder, instead of updating them
+	 * with the bytes.
+	 */
+	public void assign(long byteCount, long crc32) {
+		this.byteCount = byteCount;
+		this.assignedCrc32 = crc32;
+		this.assigned = true;
+	}
+
 	/**
 	 * Reset the count so we can count something else.
 	 */
 	public void reset() {
 		byteCount = 0;
 		crc32.reset();
+		assigned = false;
 	}
 
 	/**
@@ -39,6 +52,10 @@ public class ZipFileDataInfo {
 	 * Return the crc of the bytes.
 	 */
 	public long getCrc32() {
-		return crc32.getValue();
+		if (assigned) {
+			return assignedCrc32;
+		} else {
+			return crc32.getValue();
+		}
 	}
 }
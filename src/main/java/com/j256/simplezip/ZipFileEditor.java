@@ -0,0 +1,330 @@
+package com.j256.simplezip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntryView;
+import com.j256.simplezip.format.ZipCentralDirectoryFileInfo;
+import com.j256.simplezip.format.ZipFileHeader;
+
+/**
+ * Removes and replaces entries in an existing Zip-file in place. When the editor is finished, the local records of the
+ * entries that follow the first removed entry are slid down over the removed bytes using large buffered channel copies,
+ * the replacement entries are written after them, and then the central-directory is rewritten and the file truncated.
+ * The entries before the first removed entry are not touched and the central-directory entries of entries that did
+ * not move are written out byte-for-byte.
+ *
+ * <p>
+ * NOTE: The Zip-file is edited in place so if the process fails while the editor is finishing then the Zip-file will be
+ * corrupt. Make a copy of the file first if that matters.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ZipFileEditor implements Closeable {
+
+	private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+	private final FileChannel channel;
+	private final ZipFileRandomInput input;
+	private final List<EditorEntry> entries = new ArrayList<>();
+	/** entries by file-name which is a list in case the Zip-file has duplicate names */
+	private final Map<String, List<EditorEntry>> entryMap = new HashMap<>();
+	private final Map<String, Replacement> replacements = new LinkedHashMap<>();
+	private boolean finished;
+	private long zipSize;
+
+	/**
+	 * Open an existing Zip-file and read its central-directory. You must call {@link #finish()} or {@link #close()}
+	 * when you are done.
+	 */
+	public ZipFileEditor(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			this.input = new ZipFileRandomInput(channel, false);
+			Iterator<ZipCentralDirectoryFileEntryView> viewIterator = input.iterateDirectoryFileEntryViews();
+			for (ZipCentralDirectoryFileEntry entry : input.readDirectoryFileEntries()) {
+				ZipCentralDirectoryFileEntryView view = viewIterator.next();
+				EditorEntry editorEntry = new EditorEntry(entry, view.getOffset(), view.getRecordSize());
+				entries.add(editorEntry);
+				List<EditorEntry> nameEntries = entryMap.get(entry.getFileName());
+				if (nameEntries == null) {
+					nameEntries = new ArrayList<>(1);
+					entryMap.put(entry.getFileName(), nameEntries);
+				}
+				nameEntries.add(editorEntry);
+			}
+		} catch (IOException ioe) {
+			channel.close();
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Return the central-directory entries of the files in the Zip-file that have not been removed.
+	 */
+	public List<ZipCentralDirectoryFileEntry> getDirectoryFileEntries() {
+		List<ZipCentralDirectoryFileEntry> results = new ArrayList<>(entries.size());
+		for (EditorEntry editorEntry : entries) {
+			if (!editorEntry.removed) {
+				results.add(editorEntry.entry);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Remove the entry with the file-name from the Zip-file. If the Zip-file has more than one entry with the file-name
+	 * then they are all removed. Any replacement of the entry that has not been written yet is dropped as well.
+	 *
+	 * @return True if the entry or its replacement was removed otherwise false if the file-name is not found.
+	 */
+	public boolean removeEntry(String fileName) {
+		checkNotFinished();
+		boolean removed = (replacements.remove(fileName) != null);
+		List<EditorEntry> nameEntries = entryMap.get(fileName);
+		if (nameEntries != null) {
+			for (EditorEntry editorEntry : nameEntries) {
+				if (!editorEntry.removed) {
+					editorEntry.removed = true;
+					removed = true;
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Replace the entry with the same file-name as the file-header with the file data, encoded based on the
+	 * {@link ZipFileHeader#getCompressionMethod()}. The comment and attributes of the existing central-directory entry
+	 * are carried over to the new one, even if the entry was removed or replaced already. The new entry is written
+	 * after the existing entries when the editor is finished and it takes the place of an earlier replacement of the
+	 * same file-name. If the Zip-file has more than one entry with the file-name then they are all replaced and the
+	 * information of the last one is carried over. If there is no entry with the file-name then the entry is added.
+	 *
+	 * @return True if an existing entry or earlier replacement was replaced otherwise false if it was added.
+	 */
+	public boolean replaceEntry(ZipFileHeader fileHeader, byte[] fileData) {
+		return addReplacement(fileHeader, fileData, null);
+	}
+
+	/**
+	 * Replace the entry with the same file-name as the file-header with the contents of a file, encoded based on the
+	 * {@link ZipFileHeader#getCompressionMethod()}. See {@link #replaceEntry(ZipFileHeader, byte[])}.
+	 *
+	 * @return True if an existing entry or earlier replacement was replaced otherwise false if it was added.
+	 */
+	public boolean replaceEntry(ZipFileHeader fileHeader, File file) {
+		return addReplacement(fileHeader, null, file);
+	}
+
+	/**
+	 * Compact the Zip-file, write the replacement entries, rewrite the central-directory, and truncate the Zip-file.
+	 *
+	 * @return The size of the Zip-file.
+	 */
+	public long finish() throws IOException {
+		if (finished) {
+			return zipSize;
+		}
+		finished = true;
+		try {
+			long writePosition = compactEntries();
+			ZipCentralDirectoryEndInfo endInfo = ZipFileOutput.existingEndInfo(input);
+			ByteArrayOutputStream directoryStream = new ByteArrayOutputStream();
+			long numEntries = writeDirectoryEntries(directoryStream);
+			ZipFileOutput output = new ZipFileOutput(channel.position(writePosition), writePosition,
+					directoryStream.toByteArray(), numEntries, endInfo);
+			for (Replacement replacement : replacements.values()) {
+				output.writeFileHeader(replacement.fileHeader);
+				if (replacement.fileInfo != null) {
+					output.addDirectoryFileInfo(replacement.fileInfo);
+				}
+				if (replacement.file == null) {
+					output.writeFileDataAll(replacement.fileData);
+				} else {
+					output.writeFileData(replacement.file);
+				}
+			}
+			// finishes the zip and truncates the file
+			output.close();
+			zipSize = output.getNumBytesWritten();
+			return zipSize;
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Close the Zip-file. If {@link #finish()} has not been called then it will be called at this point.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (finished) {
+			input.close();
+			channel.close();
+		} else {
+			finish();
+		}
+	}
+
+	private void checkNotFinished() {
+		if (finished) {
+			throw new IllegalStateException("Cannot edit the zip after it has been finished");
+		}
+	}
+
+	private boolean addReplacement(ZipFileHeader fileHeader, byte[] fileData, File file) {
+		checkNotFinished();
+		String fileName = fileHeader.getFileName();
+		ZipCentralDirectoryFileInfo fileInfo = null;
+		// the entries stay in the map after they are removed so the file-info can still be carried over
+		List<EditorEntry> nameEntries = entryMap.get(fileName);
+		if (nameEntries != null) {
+			for (EditorEntry editorEntry : nameEntries) {
+				editorEntry.removed = true;
+			}
+			ZipCentralDirectoryFileEntry lastEntry = nameEntries.get(nameEntries.size() - 1).entry;
+			fileInfo = ZipCentralDirectoryFileInfo.Builder.fromCentralDirectoryFileEntry(lastEntry).build();
+		}
+		Replacement previous = replacements.put(fileName, new Replacement(fileHeader, fileData, file, fileInfo));
+		return (nameEntries != null || previous != null);
+	}
+
+	/**
+	 * Slide the records of the kept entries after the first removed entry down over the removed bytes.
+	 *
+	 * @return The position after the last kept entry where the new entries and the directory are written.
+	 */
+	private long compactEntries() throws IOException {
+		List<EditorEntry> sorted = new ArrayList<>(entries);
+		Collections.sort(sorted, new Comparator<EditorEntry>() {
+			@Override
+			public int compare(EditorEntry entry1, EditorEntry entry2) {
+				return Long.compare(entry1.entry.getZip64RelativeOffsetOfLocalHeader(),
+						entry2.entry.getZip64RelativeOffsetOfLocalHeader());
+			}
+		});
+		long writePosition = -1;
+		ByteBuffer buffer = null;
+		for (EditorEntry editorEntry : sorted) {
+			long offset = editorEntry.entry.getZip64RelativeOffsetOfLocalHeader();
+			if (editorEntry.removed) {
+				if (writePosition < 0) {
+					writePosition = offset;
+				}
+			} else if (writePosition >= 0) {
+				long length = input.findRawEntryLength(editorEntry.entry);
+				if (buffer == null) {
+					buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+				}
+				moveRange(offset, writePosition, length, buffer);
+				editorEntry.newOffset = writePosition;
+				writePosition += length;
+			}
+		}
+		if (writePosition < 0) {
+			// nothing was removed so the new entries go where the directory is now
+			writePosition = input.getDirectoryOffset();
+		}
+		return writePosition;
+	}
+
+	/**
+	 * Copy bytes to a lower position in the file. Since the target is below the source, copying forward in chunks never
+	 * overwrites bytes that have not been read yet.
+	 */
+	private void moveRange(long sourcePosition, long targetPosition, long length, ByteBuffer buffer)
+			throws IOException {
+		long offset = 0;
+		while (offset < length) {
+			buffer.clear();
+			if (length - offset < buffer.capacity()) {
+				buffer.limit((int) (length - offset));
+			}
+			IoUtils.readFully(channel, buffer, sourcePosition + offset, "entry records");
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				offset += channel.write(buffer, targetPosition + offset);
+			}
+		}
+	}
+
+	/**
+	 * Write the central-directory entries of the kept entries in their original order.
+	 *
+	 * @return The number of entries written.
+	 */
+	private long writeDirectoryEntries(ByteArrayOutputStream outputStream) throws IOException {
+		ByteBuffer directoryBuffer = input.getDirectoryBuffer();
+		long numEntries = 0;
+		for (EditorEntry editorEntry : entries) {
+			if (editorEntry.removed) {
+				continue;
+			}
+			if (editorEntry.newOffset < 0) {
+				ByteBuffer record = directoryBuffer.duplicate();
+				record.position(editorEntry.directoryOffset);
+				record.limit(editorEntry.directoryOffset + editorEntry.directorySize);
+				byte[] bytes = new byte[editorEntry.directorySize];
+				record.get(bytes);
+				outputStream.write(bytes);
+			} else {
+				ZipFileOutput.relocatedEntryBuilder(editorEntry.entry, editorEntry.newOffset)
+						.build()
+						.write(outputStream);
+			}
+			numEntries++;
+		}
+		return numEntries;
+	}
+
+	/**
+	 * Existing entry in the Zip-file.
+	 */
+	private static class EditorEntry {
+		final ZipCentralDirectoryFileEntry entry;
+		final int directoryOffset;
+		final int directorySize;
+		boolean removed;
+		long newOffset = -1;
+
+		public EditorEntry(ZipCentralDirectoryFileEntry entry, int directoryOffset, int directorySize) {
+			this.entry = entry;
+			this.directoryOffset = directoryOffset;
+			this.directorySize = directorySize;
+		}
+	}
+
+	/**
+	 * New entry to be written when the editor is finished.
+	 */
+	private static class Replacement {
+		final ZipFileHeader fileHeader;
+		final byte[] fileData;
+		final File file;
+		final ZipCentralDirectoryFileInfo fileInfo;
+
+		public Replacement(ZipFileHeader fileHeader, byte[] fileData, File file, ZipCentralDirectoryFileInfo fileInfo) {
+			this.fileHeader = fileHeader;
+			this.fileData = fileData;
+			this.file = file;
+			this.fileInfo = fileInfo;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.j256.simplezip;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.j256.simplezip.format.ExternalFileAttributesUtils;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+
+/**
+ * Extracts the files from a Zip-file into a directory using multiple threads. The central-directory entries are
+ * partitioned across a number of tasks which are run by an executor service. Each task reads its entries using
+ * positional reads from the {@link ZipFileRandomInput} and decodes them with its own decoders so the inflating is done
+ * in parallel.
+ *
+ * <p>
+ * The executor service is provided by the caller and is not shut down by this class.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ZipFileExtractor {
+
+	private final ZipFileRandomInput input;
+	private final ExecutorService executor;
+	private final int numTasks;
+	private boolean assignPermissions = true;
+
+	/**
+	 * Create an extractor which partitions the entries into a number of tasks equal to the number of available
+	 * processors.
+	 */
+	public ZipFileExtractor(ZipFileRandomInput input, ExecutorService executor) {
+		this(input, executor, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create an extractor which partitions the entries into a number of tasks. This should be the same as the number of
+	 * threads in the executor.
+	 */
+	public ZipFileExtractor(ZipFileRandomInput input, ExecutorService executor, int numTasks) {
+		if (numTasks <= 0) {
+			throw new IllegalArgumentException("Number of tasks must be positive: " + numTasks);
+		}
+		this.input = input;
+		this.executor = executor;
+		this.numTasks = numTasks;
+	}
+
+	/**
+	 * Set whether or not the permissions from the central-directory entries are assigned to the extracted files and
+	 * directories using {@link ExternalFileAttributesUtils#assignToFile(File, int)}. Default is true.
+	 */
+	public void setAssignPermissions(boolean assignPermissions) {
+		this.assignPermissions = assignPermissions;
+	}
+
+	/**
+	 * Extract all of the files in the Zip-file into the output directory.
+	 *
+	 * @return The number of bytes written to the files.
+	 */
+	public long extractAll(File outputDir) throws IOException {
+		return extract(input.readDirectoryFileEntries(), outputDir);
+	}
+
+	/**
+	 * Extract the files associated with the entries into the output directory.
+	 *
+	 * @return The number of bytes written to the files.
+	 */
+	public long extract(List<ZipCentralDirectoryFileEntry> entries, File outputDir) throws IOException {
+		List<ZipCentralDirectoryFileEntry> dirEntries = new ArrayList<>();
+		List<File> dirFiles = new ArrayList<>();
+		List<List<ZipCentralDirectoryFileEntry>> partitions = new ArrayList<>();
+		for (int i = 0; i < numTasks; i++) {
+			partitions.add(new ArrayList<>());
+		}
+		long[] partitionSizes = new long[numTasks];
+
+		// create the directories and assign the largest files first to the least loaded partition
+		List<ZipCentralDirectoryFileEntry> fileEntries = new ArrayList<>(entries.size());
+		for (ZipCentralDirectoryFileEntry entry : entries) {
+			if (entry.getFileName().endsWith("/")) {
+				File dir = resolveOutputFile(outputDir, entry);
+				makeDirs(dir);
+				dirEntries.add(entry);
+				dirFiles.add(dir);
+			} else {
+				fileEntries.add(entry);
+			}
+		}
+		Collections.sort(fileEntries, new Comparator<ZipCentralDirectoryFileEntry>() {
+			@Override
+			public int compare(ZipCentralDirectoryFileEntry entry1, ZipCentralDirectoryFileEntry entry2) {
+				return Long.compare(entry2.getZip64CompressedSize(), entry1.getZip64CompressedSize());
+			}
+		});
+		for (ZipCentralDirectoryFileEntry entry : fileEntries) {
+			int smallest = 0;
+			for (int i = 1; i < numTasks; i++) {
+				if (partitionSizes[i] < partitionSizes[smallest]) {
+					smallest = i;
+				}
+			}
+			partitions.get(smallest).add(entry);
+			partitionSizes[smallest] += entry.getZip64CompressedSize();
+		}
+
+		List<Future<Long>> futures = new ArrayList<>(numTasks);
+		for (List<ZipCentralDirectoryFileEntry> partition : partitions) {
+			if (!partition.isEmpty()) {
+				futures.add(executor.submit(new ExtractTask(partition, outputDir)));
+			}
+		}
+		long byteCount = 0;
+		try {
+			for (Future<Long> future : futures) {
+				byteCount += future.get();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			cancelAll(futures);
+			throw new IOException("Interrupted while extracting the Zip-file", ie);
+		} catch (ExecutionException ee) {
+			cancelAll(futures);
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else {
+				throw new IOException("Problems extracting the Zip-file", cause);
+			}
+		}
+
+		// we assign the directory permissions last in case they are read-only
+		if (assignPermissions) {
+			for (int i = 0; i < dirEntries.size(); i++) {
+				assignPermissions(dirFiles.get(i), dirEntries.get(i));
+			}
+		}
+		return byteCount;
+	}
+
+	private void cancelAll(List<Future<Long>> futures) {
+		for (Future<Long> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Resolve the entry's file-name in the output directory making sure that it doesn't escape out of the directory.
+	 */
+	private static File resolveOutputFile(File outputDir, ZipCentralDirectoryFileEntry entry) throws IOException {
+		File file = new File(outputDir, entry.getFileName());
+		String dirPath = outputDir.getCanonicalPath() + File.separator;
+		String filePath = file.getCanonicalPath();
+		if (!filePath.startsWith(dirPath) && !(filePath + File.separator).equals(dirPath)) {
+			throw new IOException("Zip entry is outside of the output directory: " + entry.getFileName());
+		}
+		return file;
+	}
+
+	private static void makeDirs(File dir) throws IOException {
+		// another thread may have created the directory so we test for it after the mkdirs
+		if (!dir.mkdirs() && !dir.isDirectory()) {
+			throw new IOException("Could not create directory: " + dir);
+		}
+	}
+
+	private static void assignPermissions(File file, ZipCentralDirectoryFileEntry entry) {
+		// some Zip writers don't set the external attributes at all
+		if (entry.getExternalFileAttributes() != 0) {
+			ExternalFileAttributesUtils.assignToFile(file, entry.getExternalFileAttributes());
+		}
+	}
+
+	/**
+	 * Task which extracts a partition of the entries.
+	 */
+	private class ExtractTask implements Callable<Long> {
+
+		private final List<ZipCentralDirectoryFileEntry> entries;
+		private final File outputDir;
+		private final byte[] buffer = new byte[IoUtils.STANDARD_BUFFER_SIZE * 16];
+
+		public ExtractTask(List<ZipCentralDirectoryFileEntry> entries, File outputDir) {
+			this.entries = entries;
+			this.outputDir = outputDir;
+		}
+
+		@Override
+		public Long call() throws IOException {
+			long byteCount = 0;
+			for (ZipCentralDirectoryFileEntry entry : entries) {
+				if (Thread.currentThread().isInterrupted()) {
+					// don't report a partial extraction as success
+					throw new InterruptedIOException("Interrupted before extracting " + entry.getFileName());
+				}
+				File file = resolveOutputFile(outputDir, entry);
+				File parent = file.getParentFile();
+				if (parent != null) {
+					makeDirs(parent);
+				}
+				try (InputStream inputStream = input.openFileDataInputStream(entry, false);
+						OutputStream outputStream = new FileOutputStream(file);) {
+					while (true) {
+						int numRead = inputStream.read(buffer);
+						if (numRead < 0) {
+							break;
+						}
+						outputStream.write(buffer, 0, numRead);
+						byteCount += numRead;
+					}
+				}
+				if (assignPermissions) {
+					assignPermissions(file, entry);
+				}
+			}
+			return byteCount;
+		}
+	}
+}
@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import com.j256.simplezip.codec.CodecPool;
 import com.j256.simplezip.codec.FileDataDecoder;
 import com.j256.simplezip.codec.InflatorFileDataDecoder;
 import com.j256.simplezip.codec.SimpleZipFileDataDecoder;
@@ -34,9 +35,12 @@ import com.j256.simplezip.format.ZipFileHeader;
  */
 public class ZipFileInput implements Closeable {
 
+	private static final int FILE_READ_AHEAD_SIZE = 64 * 1024;
+
 	private final RewindableInputStream inputStream;
 	private final ZipFileDataInfo fileDataCountingInfo = new ZipFileDataInfo();
-	private final byte[] tmpBuffer = new byte[IoUtils.STANDARD_BUFFER_SIZE];
+	private CodecPool codecPool = CodecPool.getDefaultPool();
+	private byte[] tmpBuffer;
 
 	private FileDataDecoder fileDataDecoder;
 	private ZipFileHeader currentFileHeader;
@@ -63,9 +67,13 @@ public class ZipFileInput implements Closeable {
 
 	/**
 	 * Read a Zip-file from an input-stream. You must call {@link #close()} to close the stream when you are done.
+	 * 
+	 * NOTE: if the input-stream is a {@link FileInputStream} then it is read in large blocks so the small reads of the
+	 * header fields don't each go to the OS.
 	 */
 	public ZipFileInput(InputStream inputStream) {
-		this.inputStream = new RewindableInputStream(inputStream, IoUtils.STANDARD_BUFFER_SIZE);
+		int readAheadSize = (inputStream instanceof FileInputStream ? FILE_READ_AHEAD_SIZE : 0);
+		this.inputStream = new RewindableInputStream(inputStream, IoUtils.STANDARD_BUFFER_SIZE, readAheadSize);
 		readTillEof = true;
 	}
 
@@ -95,14 +103,23 @@ public class ZipFileInput implements Closeable {
 	}
 
 	/**
-	 * Skip over the file data in the zip.
+	 * Skip over the file data in the zip. If the compressed size is known from the file-header and none of the data
+	 * has been read then the encoded bytes are skipped without being decoded. Otherwise the data is decoded and thrown
+	 * away.
 	 * 
 	 * @return The number of bytes skipped.
 	 */
 	public long skipFileData() throws IOException {
+		if (currentFileHeader != null && !currentFileEofReached && fileDataDecoder == null
+				&& !currentFileHeader.hasFlag(GeneralPurposeFlag.DATA_DESCRIPTOR)) {
+			IoUtils.skipFully(inputStream, currentFileHeader.getZip64CompressedSize(), "ZipFileInput.fileData");
+			currentFileEofReached = true;
+			return currentFileHeader.getZip64UncompressedSize();
+		}
+		byte[] buffer = getTmpBuffer();
 		long byteCount = 0;
 		while (true) {
-			int numRead = readFileDataPart(tmpBuffer, 0, tmpBuffer.length);
+			int numRead = readFileDataPart(buffer, 0, buffer.length);
 			if (numRead < 0) {
 				break;
 			}
@@ -159,13 +176,14 @@ public class ZipFileInput implements Closeable {
 	 * @return The number of bytes written into the output-stream.
 	 */
 	public long readFileData(OutputStream outputStream) throws IOException {
+		byte[] buffer = getTmpBuffer();
 		long byteCount = 0;
 		while (true) {
-			int numRead = readFileDataPart(tmpBuffer, 0, tmpBuffer.length);
+			int numRead = readFileDataPart(buffer, 0, buffer.length);
 			if (numRead < 0) {
 				break;
 			}
-			outputStream.write(tmpBuffer, 0, numRead);
+			outputStream.write(buffer, 0, numRead);
 			byteCount += numRead;
 		}
 		return byteCount;
@@ -235,13 +253,14 @@ public class ZipFileInput implements Closeable {
 	 * @return The number of bytes written into the output-stream.
 	 */
 	public long readRawFileData(OutputStream outputStream) throws IOException {
+		byte[] buffer = getTmpBuffer();
 		long byteCount = 0;
 		while (true) {
-			int numRead = readRawFileDataPart(tmpBuffer, 0, tmpBuffer.length);
+			int numRead = readRawFileDataPart(buffer, 0, buffer.length);
 			if (numRead < 0) {
 				break;
 			}
-			outputStream.write(tmpBuffer, 0, numRead);
+			outputStream.write(buffer, 0, numRead);
 			byteCount += numRead;
 		}
 		return byteCount;
@@ -404,8 +423,9 @@ public class ZipFileInput implements Closeable {
 	 * constructor is used.
 	 */
 	public void readToEndOfZip() throws IOException {
+		byte[] buffer = getTmpBuffer();
 		while (true) {
-			int num = inputStream.read(tmpBuffer);
+			int num = inputStream.read(buffer);
 			if (num < 0) {
 				break;
 			}
@@ -421,10 +441,22 @@ public class ZipFileInput implements Closeable {
 	 */
 	@Override
 	public void close() throws IOException {
-		if (readTillEof) {
-			readToEndOfZip();
+		try {
+			if (readTillEof) {
+				readToEndOfZip();
+			}
+			inputStream.close();
+		} finally {
+			// give back our pooled objects
+			if (fileDataDecoder != null) {
+				fileDataDecoder.close();
+				fileDataDecoder = null;
+			}
+			if (tmpBuffer != null) {
+				codecPool.returnBuffer(tmpBuffer);
+				tmpBuffer = null;
+			}
 		}
-		inputStream.close();
 	}
 
 	/**
@@ -478,6 +510,25 @@ public class ZipFileInput implements Closeable {
 		this.readTillEof = readTillEof;
 	}
 
+	/**
+	 * Set the pool that is used to get the inflaters and buffers used by this reader. By default the
+	 * {@link CodecPool#getDefaultPool()} is used. This should be called before any file data is read.
+	 */
+	public void setCodecPool(CodecPool codecPool) {
+		if (tmpBuffer != null) {
+			this.codecPool.returnBuffer(tmpBuffer);
+			tmpBuffer = null;
+		}
+		this.codecPool = codecPool;
+	}
+
+	private byte[] getTmpBuffer() {
+		if (tmpBuffer == null) {
+			tmpBuffer = codecPool.borrowBuffer();
+		}
+		return tmpBuffer;
+	}
+
 	private int doReadFileDataPart(byte[] buffer, int offset, int length, int compressionMethod) throws IOException {
 		if (currentFileEofReached) {
 			return -1;
@@ -517,9 +568,14 @@ public class ZipFileInput implements Closeable {
 
 	private void assignFileDataDecoder(int compressionMethod) throws IOException {
 		if (compressionMethod == CompressionMethod.NONE.getValue()) {
-			this.fileDataDecoder = new StoredFileDataDecoder(inputStream, currentFileHeader.getCompressedSize());
+			this.fileDataDecoder = new StoredFileDataDecoder(inputStream, currentFileHeader.getZip64CompressedSize());
 		} else if (compressionMethod == CompressionMethod.DEFLATED.getValue()) {
-			this.fileDataDecoder = new InflatorFileDataDecoder(inputStream);
+			// if there is no data-descriptor then the header has the size so the inflater can read in large chunks
+			long compressedSize = -1;
+			if (!currentFileHeader.hasFlag(GeneralPurposeFlag.DATA_DESCRIPTOR)) {
+				compressedSize = currentFileHeader.getZip64CompressedSize();
+			}
+			this.fileDataDecoder = new InflatorFileDataDecoder(inputStream, compressedSize, codecPool);
 		} else if (compressionMethod == CompressionMethod.SIMPLEZIP.getValue()) {
 			this.fileDataDecoder = new SimpleZipFileDataDecoder(inputStream);
 		} else {
@@ -1,5 +1,6 @@
 package com.j256.simplezip;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -8,13 +9,19 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
+import com.j256.simplezip.codec.CodecPool;
 import com.j256.simplezip.codec.DeflatorFileDataEncoder;
 import com.j256.simplezip.codec.FileDataEncoder;
+import com.j256.simplezip.codec.ParallelDeflatorFileDataEncoder;
 import com.j256.simplezip.codec.SimpleZipFileDataEncoder;
 import com.j256.simplezip.codec.StoredFileDataEncoder;
 import com.j256.simplezip.format.CompressionMethod;
@@ -24,9 +31,11 @@ import com.j256.simplezip.format.Zip64CentralDirectoryEndLocator;
 import com.j256.simplezip.format.ZipCentralDirectoryEnd;
 import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
 import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntryView;
 import com.j256.simplezip.format.ZipCentralDirectoryFileInfo;
 import com.j256.simplezip.format.ZipDataDescriptor;
 import com.j256.simplezip.format.ZipFileHeader;
+import com.j256.simplezip.format.extra.Zip64ExtraField;
 
 /**
  * Write out a Zip-file to either a {@link File} or an {@link OutputStream}.
@@ -36,15 +45,23 @@ import com.j256.simplezip.format.ZipFileHeader;
 public class ZipFileOutput implements Closeable {
 
 	private final BufferedOutputStream bufferedOutputStream;
+	private final FileChannel outputChannel;
+	private final SeekableByteChannel seekableChannel;
+	private final byte[] appendDirectoryBytes;
+	private final ZipCentralDirectoryEndInfo appendEndInfo;
 	private final ZipFileDataInfo incomingFileDateInfo = new ZipFileDataInfo();
-	private final byte[] tmpBuffer = new byte[IoUtils.STANDARD_BUFFER_SIZE];
-	private final List<ZipCentralDirectoryFileEntry.Builder> dirFileEntryBuilders = new ArrayList<>();
-	private final Map<String, ZipCentralDirectoryFileEntry.Builder> dirFileEntryBuilderMap = new HashMap<>();
+	private CodecPool codecPool = CodecPool.getDefaultPool();
+	private byte[] tmpBuffer;
+	private ExecutorService parallelDeflateExecutor;
+	private int parallelDeflateBlockSize;
+	private final PackedCentralDirectory dirFileEntries = new PackedCentralDirectory();
 
 	private ZipFileHeader currentFileHeader;
 	private FileDataEncoder fileDataEncoder;
+	private ParallelDeflatorFileDataEncoder parallelEncoder;
 	private ZipDataDescriptor.Builder dataDescriptorBuilder = ZipDataDescriptor.builder();
 	private ZipCentralDirectoryFileEntry.Builder dirFileBuilder;
+	private long lastDirFileEntryAddress = -1;
 	private ZipFileDataOutputStream fileDataOutputStream;
 	private boolean fileFinished = true;
 	private boolean zipFinished;
@@ -67,9 +84,105 @@ public class ZipFileOutput implements Closeable {
 	/**
 	 * Start writing a Zip-file to an output-stream. You must call {@link #close()} to close the stream when you are
 	 * done.
+	 * 
+	 * NOTE: if the output-stream is a {@link FileOutputStream} then the file data of STORED entries written with
+	 * {@link #writeFileData(File)} is transferred straight from the file by the OS.
 	 */
 	public ZipFileOutput(OutputStream outputStream) {
 		this.bufferedOutputStream = new BufferedOutputStream(outputStream);
+		if (outputStream instanceof FileOutputStream) {
+			this.outputChannel = ((FileOutputStream) outputStream).getChannel();
+		} else {
+			this.outputChannel = null;
+		}
+		this.seekableChannel = this.outputChannel;
+		this.appendDirectoryBytes = null;
+		this.appendEndInfo = null;
+	}
+
+	/**
+	 * Start writing a Zip-file to a seekable channel which allows the file-headers to be patched. See
+	 * {@link #enableHeaderPatching()}. You must call {@link #close()} to close the channel when you are done.
+	 */
+	public ZipFileOutput(SeekableByteChannel channel) {
+		this.bufferedOutputStream = new BufferedOutputStream(Channels.newOutputStream(channel));
+		if (channel instanceof FileChannel) {
+			this.outputChannel = (FileChannel) channel;
+		} else {
+			this.outputChannel = null;
+		}
+		this.seekableChannel = channel;
+		this.appendDirectoryBytes = null;
+		this.appendEndInfo = null;
+	}
+
+	/**
+	 * Start writing into an existing Zip-file at an offset. When the Zip-file is finished the existing directory bytes
+	 * are written before the entries of the new files. See {@link #openForAppend(File)}.
+	 */
+	ZipFileOutput(FileChannel channel, long directoryOffset, byte[] directoryBytes, long numEntries,
+			ZipCentralDirectoryEndInfo endInfo) {
+		this.bufferedOutputStream = new BufferedOutputStream(Channels.newOutputStream(channel), directoryOffset);
+		this.outputChannel = channel;
+		this.seekableChannel = channel;
+		this.appendDirectoryBytes = directoryBytes;
+		this.appendEndInfo = endInfo;
+		this.fileCount = numEntries;
+	}
+
+	/**
+	 * Open an existing Zip-file so that more entries can be appended to it without rewriting the existing file data.
+	 * The central-directory of the existing Zip-file is read into memory and then the new entries are written over it
+	 * starting at its offset. When the Zip-file is finished, the existing central-directory entries are written out
+	 * byte-for-byte followed by the entries for the new files and then new directory end records. You must call
+	 * {@link #close()} to close the file when you are done.
+	 * 
+	 * <p>
+	 * NOTE: If {@link #finishZip()} is called without an end-info then the comment and Zip64 settings of the existing
+	 * directory end are used. The existing entries cannot be found by {@link #addDirectoryFileInfo(String,
+	 * ZipCentralDirectoryFileInfo)}. The Zip-file is not valid until this output has been closed.
+	 * </p>
+	 */
+	public static ZipFileOutput openForAppend(File file) throws IOException {
+		long directoryOffset;
+		byte[] directoryBytes;
+		long numEntries = 0;
+		ZipCentralDirectoryEndInfo endInfo;
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file)) {
+			directoryOffset = input.getDirectoryOffset();
+			ByteBuffer directoryBuffer = input.getDirectoryBuffer();
+			directoryBytes = new byte[directoryBuffer.remaining()];
+			directoryBuffer.duplicate().get(directoryBytes);
+			for (Iterator<ZipCentralDirectoryFileEntryView> iterator =
+					input.iterateDirectoryFileEntryViews(); iterator.hasNext(); iterator.next()) {
+				numEntries++;
+			}
+			endInfo = existingEndInfo(input);
+		}
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		try {
+			channel.position(directoryOffset);
+		} catch (IOException ioe) {
+			channel.close();
+			throw ioe;
+		}
+		return new ZipFileOutput(channel, directoryOffset, directoryBytes, numEntries, endInfo);
+	}
+
+	/**
+	 * Return the end-info with the comment and Zip64 settings of the existing Zip-file.
+	 */
+	static ZipCentralDirectoryEndInfo existingEndInfo(ZipFileRandomInput input) {
+		ZipCentralDirectoryEnd end = input.getDirectoryEnd();
+		Zip64CentralDirectoryEnd zip64End = input.getZip64DirectoryEnd();
+		if (zip64End == null) {
+			return ZipCentralDirectoryEndInfo.Builder.fromCentralDirectoryEnd(end).build();
+		}
+		ZipCentralDirectoryEndInfo.Builder endInfoBuilder =
+				ZipCentralDirectoryEndInfo.Builder.fromCentralDirectoryEnd(zip64End);
+		endInfoBuilder.setZip64(true);
+		endInfoBuilder.setCommentBytes(end.getCommentBytes());
+		return endInfoBuilder.build();
 	}
 
 	/**
@@ -92,6 +205,62 @@ public class ZipFileOutput implements Closeable {
 		bufferedOutputStream.enableBuffer(maxSizeBuffered, maxSizeInMemory);
 	}
 
+	/**
+	 * Write each file-header with zeros for the CRC32 and sizes, stream the file data straight through, and then seek
+	 * back and patch the real CRC32 and sizes into the file-header. This means that no {@link ZipDataDescriptor} is
+	 * needed and, unlike {@link #enableFileBuffering(int, int)}, the file data is not staged in memory or in a
+	 * temporary file first. If the file-header does not have an uncompressed size then a {@link Zip64ExtraField} is
+	 * reserved in it in case the file data is larger than 4gb. This takes precedence over the file buffering.
+	 * 
+	 * <p>
+	 * NOTE: this is only available if we are writing to a {@link File}, a {@link FileOutputStream}, or a
+	 * {@link SeekableByteChannel}.
+	 * </p>
+	 */
+	public void enableHeaderPatching() {
+		if (seekableChannel == null) {
+			throw new IllegalStateException("Header patching needs the output to be a file or a seekable channel");
+		}
+		bufferedOutputStream.enablePatching(seekableChannel);
+	}
+
+	/**
+	 * Compress the file-data of DEFLATED entries in blocks concurrently using an executor. This is useful for very
+	 * large entries because otherwise an entry is compressed by a single thread. See
+	 * {@link ParallelDeflatorFileDataEncoder} for more details.
+	 * 
+	 * @param executor
+	 *            Executor which compresses the blocks. It is not shut down when this output is closed. It can be the
+	 *            same executor whose threads are writing the Zip-files because the writing thread compresses the oldest
+	 *            block itself if the executor hasn't started it.
+	 * @param blockSize
+	 *            Number of uncompressed bytes in each block such as
+	 *            {@link ParallelDeflatorFileDataEncoder#DEFAULT_BLOCK_SIZE}.
+	 */
+	public void enableParallelDeflate(ExecutorService executor, int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.parallelDeflateExecutor = executor;
+		this.parallelDeflateBlockSize = blockSize;
+	}
+
+	/**
+	 * Write the central-directory entries to a temporary file as each file is finished instead of holding them in
+	 * memory until the Zip-file is finished. At most one 1mb chunk of entries is held in memory no matter how many
+	 * files are written, and the temporary file is streamed into the Zip-file with a channel transfer by
+	 * {@link #finishZip()}. The temporary file is deleted when this output is closed. This must be called before the
+	 * first file is finished.
+	 * 
+	 * <p>
+	 * NOTE: calling {@link #addDirectoryFileInfo(String, ZipCentralDirectoryFileInfo)} builds an in-memory index of the
+	 * file-names and may have to read and rewrite spilled entries.
+	 * </p>
+	 */
+	public void enableDirectorySpilling() throws IOException {
+		dirFileEntries.enableSpilling();
+	}
+
 	/**
 	 * Write a file-header which starts the Zip-file. This actually may or may not actually write it to disk depending
 	 * on buffering.
@@ -119,13 +288,22 @@ public class ZipFileOutput implements Closeable {
 	 * {@link #writeFileHeader(ZipFileHeader)} method and before {@link #finishFileData()} have been called.
 	 */
 	public void addDirectoryFileInfo(ZipCentralDirectoryFileInfo fileInfo) {
-		if (dirFileBuilder == null) {
+		if (dirFileBuilder == null && lastDirFileEntryAddress < 0) {
 			throw new IllegalStateException("Cannot add directory file-info a file header has not been written");
 		}
 		if (zipFinished) {
 			throw new IllegalStateException("Cannot add directory file-info if the zip has been finished");
 		}
-		dirFileBuilder.addFileInfo(fileInfo);
+		if (fileFinished) {
+			// the entry of the most recent file has already been packed
+			try {
+				dirFileEntries.addFileInfo(lastDirFileEntryAddress, fileInfo);
+			} catch (IOException ioe) {
+				throw new RuntimeException("problems adding file-info to central-directory entry", ioe);
+			}
+		} else {
+			dirFileBuilder.addFileInfo(fileInfo);
+		}
 	}
 
 	/**
@@ -139,12 +317,11 @@ public class ZipFileOutput implements Closeable {
 		if (zipFinished) {
 			throw new IllegalStateException("Cannot add directory file-info if the zip has been finished");
 		}
-		ZipCentralDirectoryFileEntry.Builder builder = dirFileEntryBuilderMap.get(fileName);
-		if (builder == null) {
-			return false;
-		} else {
-			builder.addFileInfo(fileInfo);
-			return true;
+		try {
+			return dirFileEntries.addFileInfo(fileName, fileInfo);
+		} catch (IOException ioe) {
+			// this only happens if the central-directory has been spilled to disk
+			throw new RuntimeException("problems adding file-info to central-directory entry: " + fileName, ioe);
 		}
 	}
 
@@ -178,9 +355,19 @@ public class ZipFileOutput implements Closeable {
 	 * 
 	 * NOTE: this method calls {@link #finishFileData()} for you.
 	 * 
+	 * <p>
+	 * If the compression method is STORED and we are writing to a file then the data is transferred from the file to
+	 * the Zip-file with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} so it is
+	 * copied by the OS. The CRC32 from the file-header is used if it was set otherwise it is calculated in a pass over
+	 * the memory-mapped file.
+	 * </p>
+	 * 
 	 * @return Returns the number of bytes written to the stream so far.
 	 */
 	public long writeFileData(File file) throws IOException {
+		if (canTransferFileData()) {
+			return transferFileData(file);
+		}
 		try (InputStream inputStream = new FileInputStream(file)) {
 			return writeFileData(inputStream);
 		}
@@ -195,6 +382,10 @@ public class ZipFileOutput implements Closeable {
 	 * @return Returns the number of bytes written to the stream so far.
 	 */
 	public long writeRawFileData(File file) throws IOException {
+		if (canTransferFileData()) {
+			// stored data is the same raw or not
+			return transferFileData(file);
+		}
 		try (InputStream inputStream = new FileInputStream(file)) {
 			return writeRawFileData(inputStream);
 		}
@@ -209,12 +400,13 @@ public class ZipFileOutput implements Closeable {
 	 * @return Returns the number of bytes written to the stream so far.
 	 */
 	public long writeFileData(InputStream inputStream) throws IOException {
+		byte[] buffer = getTmpBuffer();
 		while (true) {
-			int numRead = inputStream.read(tmpBuffer);
+			int numRead = inputStream.read(buffer);
 			if (numRead < 0) {
 				break;
 			}
-			writeFileDataPart(tmpBuffer, 0, numRead);
+			writeFileDataPart(buffer, 0, numRead);
 		}
 		return finishFileData();
 	}
@@ -228,16 +420,53 @@ public class ZipFileOutput implements Closeable {
 	 * @return Returns the number of bytes written to the stream so far.
 	 */
 	public long writeRawFileData(InputStream inputStream) throws IOException {
+		byte[] buffer = getTmpBuffer();
 		while (true) {
-			int numRead = inputStream.read(tmpBuffer);
+			int numRead = inputStream.read(buffer);
 			if (numRead < 0) {
 				break;
 			}
-			writeRawFileDataPart(tmpBuffer, 0, numRead);
+			writeRawFileDataPart(buffer, 0, numRead);
 		}
 		return finishFileData();
 	}
 
+	/**
+	 * Copy an entry from another Zip-file verbatim, without decoding and re-encoding its file data. The file-header,
+	 * the encoded file data, any data-descriptor, and the central-directory information of the entry are copied with
+	 * only the offset of the file-header adjusted. If both Zip-files are files then the bytes are transferred by the
+	 * OS with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}. Should be called
+	 * between entries, not after a file-header has been written.
+	 * 
+	 * @param input
+	 *            Zip-file that we are copying from.
+	 * @param entry
+	 *            Central-directory entry from the input of the file that we are copying.
+	 * @return Returns the number of bytes written to the stream so far.
+	 */
+	public long copyRawEntry(ZipFileRandomInput input, ZipCentralDirectoryFileEntry entry) throws IOException {
+		if (zipFinished) {
+			throw new IllegalStateException("Cannot copy an entry if the zip has been finished");
+		}
+		if (!fileFinished) {
+			throw new IllegalStateException("Need to call finishFileData() before copying an entry");
+		}
+		long headerOffset = bufferedOutputStream.getWriteCount();
+		long sourceOffset = entry.getZip64RelativeOffsetOfLocalHeader();
+		long length = input.findRawEntryLength(entry);
+		FileChannel sourceChannel = input.getFileChannel();
+		if (sourceChannel != null && outputChannel != null) {
+			bufferedOutputStream.transferFrom(sourceChannel, sourceOffset, length, outputChannel);
+		} else {
+			input.copyRange(sourceOffset, length, bufferedOutputStream);
+		}
+
+		lastDirFileEntryAddress = dirFileEntries.add(relocatedEntryBuilder(entry, headerOffset).build());
+		dirFileBuilder = null;
+		fileCount++;
+		return bufferedOutputStream.getWriteCount();
+	}
+
 	/**
 	 * Get an output stream suitable for writing the bytes for a single Zip file-entry. A call to the
 	 * {@link OutputStream#write(byte[], int, int)} basically calls through to
@@ -320,11 +549,20 @@ public class ZipFileOutput implements Closeable {
 		if (zipFinished) {
 			throw new IllegalStateException("Cannot finish file-data if the zip has been finished");
 		}
+		if (fileFinished) {
+			// the file-data output-stream may be closed after the file was finished
+			return bufferedOutputStream.getWriteCount();
+		}
 		if (fileDataEncoder == null) {
 			// we need to open the encoder if no data has been sent
 			assignFileDataEncoder(currentFileHeader.getCompressionMethod());
 		}
 		fileDataEncoder.close();
+		if (parallelEncoder != null) {
+			// the parallel encoder calculated the crc and size of the incoming data itself
+			incomingFileDateInfo.assign(parallelEncoder.getByteCount(), parallelEncoder.getCrc32());
+			parallelEncoder = null;
+		}
 		ZipFileHeader writtenFileHeader;
 		if (currentFileHeader.getCrc32() != 0 && currentFileHeader.getUncompressedSize() != 0) {
 			writtenFileHeader = bufferedOutputStream.finishFileData(currentFileHeader.getCrc32(),
@@ -341,8 +579,9 @@ public class ZipFileOutput implements Closeable {
 		dirFileBuilder.setFileHeader(writtenFileHeader);
 		if (writtenFileHeader != currentFileHeader) {
 			dirFileBuilder.assignGeneralPurposeFlag(GeneralPurposeFlag.DATA_DESCRIPTOR, false);
-			dirFileBuilder.setCompressedSize(bufferedOutputStream.getEncodedSize());
 		}
+		// the directory always needs the real encoded size even if it was written in a data-descriptor
+		dirFileBuilder.setCompressedSize(bufferedOutputStream.getEncodedSize());
 		if (currentFileHeader.getCrc32() == 0 || currentFileHeader.getUncompressedSize() == 0) {
 			// calculate the crc and size from the incoming file data
 			dirFileBuilder.setUncompressedSize(incomingFileDateInfo.getByteCount());
@@ -357,16 +596,38 @@ public class ZipFileOutput implements Closeable {
 			ZipDataDescriptor dataDescriptor = dataDescriptorBuilder.build();
 			dataDescriptor.write(bufferedOutputStream);
 		}
-		dirFileEntryBuilders.add(dirFileBuilder);
-		String fileName = dirFileBuilder.getFileName();
-		if (fileName != null) {
-			dirFileEntryBuilderMap.put(fileName, dirFileBuilder);
-		}
+		// the entry is packed now so we don't hold onto an object per file
+		lastDirFileEntryAddress = dirFileEntries.add(dirFileBuilder.build());
+		dirFileBuilder = null;
 		fileDataEncoder = null;
 		fileFinished = true;
 		return bufferedOutputStream.getWriteCount();
 	}
 
+	/**
+	 * Called at the end of file data that was written with the raw methods such as
+	 * {@link #writeRawFileDataPart(byte[], int, int)} when it was already encoded with the compression method from the
+	 * file-header. Because the written bytes are not the original file bytes, the CRC32 and size of the original bytes
+	 * need to be passed in so they can be recorded in the header, data-descriptor, and central-directory.
+	 * 
+	 * @param crc32
+	 *            CRC32 of the original (unencoded) file bytes.
+	 * @param uncompressedSize
+	 *            Number of original (unencoded) file bytes.
+	 * @return Returns the number of bytes written to the stream so far.
+	 */
+	public long finishFileData(long crc32, long uncompressedSize) throws IOException {
+		if (currentFileHeader == null) {
+			throw new IllegalStateException("Need to call writeFileHeader() before you can finish file data");
+		}
+		if (fileDataEncoder == null) {
+			// nothing was written so make sure we don't encode anything
+			assignFileDataEncoder(CompressionMethod.NONE.getValue());
+		}
+		incomingFileDateInfo.assign(uncompressedSize, crc32);
+		return finishFileData();
+	}
+
 	/**
 	 * Finish writing the zip-file. See the {@link #finishZip(ZipCentralDirectoryEndInfo)} for more information.
 	 * 
@@ -394,6 +655,10 @@ public class ZipFileOutput implements Closeable {
 			finishFileData();
 		}
 
+		if (endInfo == null) {
+			endInfo = appendEndInfo;
+		}
+
 		// start our directory end
 		ZipCentralDirectoryEnd.Builder dirEndBuilder;
 		if (endInfo == null) {
@@ -404,10 +669,15 @@ public class ZipFileOutput implements Closeable {
 		long dirOffset = bufferedOutputStream.getWriteCount();
 		dirEndBuilder.setDirectoryOffset(dirOffset);
 
+		// if we are appending then the existing central-directory entries are written first as they were
+		if (appendDirectoryBytes != null) {
+			bufferedOutputStream.write(appendDirectoryBytes);
+		}
 		// write out our recorded central-directory file-headers
-		for (ZipCentralDirectoryFileEntry.Builder dirEntryBuilder : dirFileEntryBuilders) {
-			ZipCentralDirectoryFileEntry dirEntry = dirEntryBuilder.build();
-			dirEntry.write(bufferedOutputStream);
+		if (outputChannel == null) {
+			dirFileEntries.write(bufferedOutputStream);
+		} else {
+			dirFileEntries.write(bufferedOutputStream, outputChannel);
 		}
 
 		// build our directory end but don't write it yet
@@ -433,6 +703,8 @@ public class ZipFileOutput implements Closeable {
 		// finally we write the standard end marker
 		ZipCentralDirectoryEnd end = dirEndBuilder.build();
 		end.write(bufferedOutputStream);
+		// the directory records were coalesced in the write buffer so write them out
+		bufferedOutputStream.flush();
 
 		zipFinished = true;
 		return bufferedOutputStream.getWriteCount();
@@ -458,10 +730,52 @@ public class ZipFileOutput implements Closeable {
 	 */
 	@Override
 	public void close() throws IOException {
-		if (!zipFinished) {
-			finishZip(null);
+		try {
+			if (!zipFinished) {
+				finishZip(null);
+			}
+			if (appendDirectoryBytes != null) {
+				// the appended Zip-file may be shorter than the original if the end records shrank
+				bufferedOutputStream.flush();
+				outputChannel.truncate(bufferedOutputStream.getWriteCount());
+			}
+			bufferedOutputStream.close();
+		} finally {
+			releaseResources();
+		}
+	}
+
+	/**
+	 * Close the associated output stream without finishing the Zip-file. This is used after an error so that a
+	 * central-directory is not written after partial file data which would make the Zip-file look valid.
+	 */
+	void closeWithoutFinishing() throws IOException {
+		zipFinished = true;
+		try {
+			bufferedOutputStream.close();
+		} finally {
+			releaseResources();
+		}
+	}
+
+	private void releaseResources() throws IOException {
+		dirFileEntries.close();
+		if (tmpBuffer != null) {
+			codecPool.returnBuffer(tmpBuffer);
+			tmpBuffer = null;
 		}
-		bufferedOutputStream.close();
+	}
+
+	/**
+	 * Set the pool that is used to get the deflaters and buffers used by this writer. By default the
+	 * {@link CodecPool#getDefaultPool()} is used. This should be called before any file data is written.
+	 */
+	public void setCodecPool(CodecPool codecPool) {
+		if (tmpBuffer != null) {
+			this.codecPool.returnBuffer(tmpBuffer);
+			tmpBuffer = null;
+		}
+		this.codecPool = codecPool;
 	}
 
 	/**
@@ -491,6 +805,76 @@ public class ZipFileOutput implements Closeable {
 		dirEndLocatorBuilder.build().write(bufferedOutputStream);
 	}
 
+	/**
+	 * Returns true if the file data of the current file can be transferred directly from a file.
+	 */
+	private boolean canTransferFileData() {
+		return (outputChannel != null && currentFileHeader != null && fileDataEncoder == null && !zipFinished
+				&& currentFileHeader.getCompressionMethod() == CompressionMethod.NONE.getValue());
+	}
+
+	private long transferFileData(File file) throws IOException {
+		try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = source.size();
+			long crc32;
+			if (currentFileHeader.getCrc32() != 0 && currentFileHeader.getUncompressedSize() != 0) {
+				crc32 = currentFileHeader.getCrc32();
+			} else {
+				crc32 = Crc32Utils.calculateCrc32(source, 0, size);
+			}
+			bufferedOutputStream.transferFileData(source, outputChannel, crc32, size);
+			// nothing else will be written but finishing needs the encoder
+			assignFileDataEncoder(CompressionMethod.NONE.getValue());
+			incomingFileDateInfo.assign(size, crc32);
+		}
+		return finishFileData();
+	}
+
+	/**
+	 * Return a builder of a copy of the central-directory entry whose file-header is now at a different offset.
+	 */
+	static ZipCentralDirectoryFileEntry.Builder relocatedEntryBuilder(ZipCentralDirectoryFileEntry entry,
+			long headerOffset) {
+		ZipCentralDirectoryFileEntry.Builder builder = ZipCentralDirectoryFileEntry.Builder.fromFileHeader(entry);
+		if (entry.getZip64ExtraField() != null) {
+			// the zip64 field has the old offset so it is removed and added back by the builder if still needed
+			builder.setCompressedSize(entry.getZip64CompressedSize());
+			builder.setUncompressedSize(entry.getZip64UncompressedSize());
+			builder.setDiskNumberStart(entry.getZip64ExtraField().getDiskNumber());
+			builder.setExtraFieldBytes(removeExtraField(entry.getExtraFieldBytes(), Zip64ExtraField.EXPECTED_ID));
+		}
+		builder.setRelativeOffsetOfLocalHeader(headerOffset);
+		return builder;
+	}
+
+	/**
+	 * Return the extra-field bytes without any fields with the id.
+	 */
+	private static byte[] removeExtraField(byte[] extraFieldBytes, int id) {
+		ByteBuffer buffer = ByteBuffer.wrap(extraFieldBytes).order(ByteOrder.LITTLE_ENDIAN);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(extraFieldBytes.length);
+		int offset = 0;
+		// each field is a short id and a short size followed by the field's bytes
+		while (offset + 4 <= extraFieldBytes.length) {
+			int fieldLength = 4 + (buffer.getShort(offset + 2) & 0xFFFF);
+			fieldLength = Math.min(fieldLength, extraFieldBytes.length - offset);
+			if ((buffer.getShort(offset) & 0xFFFF) != id) {
+				baos.write(extraFieldBytes, offset, fieldLength);
+			}
+			offset += fieldLength;
+		}
+		// copy any trailing partial field as is
+		baos.write(extraFieldBytes, offset, extraFieldBytes.length - offset);
+		return baos.toByteArray();
+	}
+
+	private byte[] getTmpBuffer() {
+		if (tmpBuffer == null) {
+			tmpBuffer = codecPool.borrowBuffer();
+		}
+		return tmpBuffer;
+	}
+
 	private void doWriteFileDataPart(byte[] buffer, int offset, int length, int compressionMethod) throws IOException {
 		if (zipFinished) {
 			// might not be able to get here but let's be careful out there
@@ -500,18 +884,35 @@ public class ZipFileOutput implements Closeable {
 			assignFileDataEncoder(compressionMethod);
 		}
 
-		incomingFileDateInfo.update(buffer, offset, length);
+		if (parallelEncoder == null) {
+			incomingFileDateInfo.update(buffer, offset, length);
+		}
 		fileDataEncoder.encode(buffer, offset, length);
 	}
 
 	private void assignFileDataEncoder(int compressionMethod) {
+		if (compressionMethod == CompressionMethod.DEFLATED.getValue() && parallelDeflateExecutor != null) {
+			this.parallelEncoder = new ParallelDeflatorFileDataEncoder(bufferedOutputStream,
+					currentFileHeader.getCompressionLevel(), codecPool, parallelDeflateExecutor,
+					parallelDeflateBlockSize, ParallelDeflatorFileDataEncoder.DEFAULT_MAX_PENDING_BLOCKS);
+			this.fileDataEncoder = parallelEncoder;
+		} else {
+			this.fileDataEncoder = createFileDataEncoder(compressionMethod, bufferedOutputStream,
+					currentFileHeader.getCompressionLevel(), codecPool);
+		}
+	}
+
+	/**
+	 * Create the encoder for a compression method that writes to an output-stream.
+	 */
+	static FileDataEncoder createFileDataEncoder(int compressionMethod, OutputStream outputStream, int level,
+			CodecPool codecPool) {
 		if (compressionMethod == CompressionMethod.NONE.getValue()) {
-			this.fileDataEncoder = new StoredFileDataEncoder(bufferedOutputStream);
+			return new StoredFileDataEncoder(outputStream);
 		} else if (compressionMethod == CompressionMethod.DEFLATED.getValue()) {
-			this.fileDataEncoder =
-					new DeflatorFileDataEncoder(bufferedOutputStream, currentFileHeader.getCompressionLevel());
+			return new DeflatorFileDataEncoder(outputStream, level, codecPool);
 		} else if (compressionMethod == CompressionMethod.SIMPLEZIP.getValue()) {
-			this.fileDataEncoder = new SimpleZipFileDataEncoder(bufferedOutputStream);
+			return new SimpleZipFileDataEncoder(outputStream);
 		} else {
 			throw new IllegalStateException("Unknown compression method: "
 					+ CompressionMethod.fromValue(compressionMethod) + " (" + compressionMethod + ")");
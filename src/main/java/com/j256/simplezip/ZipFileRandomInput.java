@@ -0,0 +1,762 @@
+package com.j256.simplezip;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.j256.simplezip.codec.ByteBufferCodecUtils;
+import com.j256.simplezip.codec.CodecPool;
+import com.j256.simplezip.codec.FileDataDecoder;
+import com.j256.simplezip.codec.InflatorFileDataDecoder;
+import com.j256.simplezip.codec.SimpleZipFileDataDecoder;
+import com.j256.simplezip.codec.StoredFileDataDecoder;
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.GeneralPurposeFlag;
+import com.j256.simplezip.format.Zip64CentralDirectoryEnd;
+import com.j256.simplezip.format.ZipCentralDirectoryEnd;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntryView;
+import com.j256.simplezip.format.ZipDataDescriptor;
+import com.j256.simplezip.format.ZipFileHeader;
+import com.j256.simplezip.format.ZipFileHeaderView;
+
+/**
+ * Read in a Zip-file with random access. The central-directory is located from the end of the Zip-file and then the
+ * file data of any entry can be read by seeking directly to its file-header. This is in contrast to
+ * {@link ZipFileInput} which has to stream through all of the data from the front of the Zip-file.
+ * 
+ * <p>
+ * If a file is opened with memory-mapping enabled, the Zip-file is mapped with a {@link SegmentedMappedBuffer} and
+ * the headers and central-directory entries are parsed directly from the mapped bytes.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ZipFileRandomInput implements Closeable {
+
+	private static final int END_SIGNATURE = 0x6054b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x7064b50;
+	/** size of the end record including its signature but not including the comment */
+	static final int END_FIXED_SIZE = 4 + ZipCentralDirectoryEnd.MINIMUM_READ_SIZE;
+	/** size of the standard Zip64 locator record */
+	private static final int ZIP64_LOCATOR_SIZE = 4 + 4 + 8 + 4;
+	/** size of the Zip64 locator as written by {@link ZipFileOutput} which includes the disk-number-start */
+	static final int ZIP64_LOCATOR_EXTENDED_SIZE = ZIP64_LOCATOR_SIZE + 4;
+	/** size of the file-header not including the signature, file-name, and extra bytes */
+	static final int FILE_HEADER_FIXED_SIZE = 4 + 5 * 2 + 3 * 4 + 2 * 2;
+	private static final int FILE_HEADER_NAME_LENGTH_OFFSET = FILE_HEADER_FIXED_SIZE - 2 * 2;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private final SeekableByteChannel channel;
+	private final SegmentedMappedBuffer mappedBuffer;
+	private final ZipCentralDirectoryEnd directoryEnd;
+	private final Zip64CentralDirectoryEnd zip64DirectoryEnd;
+	private final long directoryOffset;
+	private final long directoryLimit;
+
+	private List<ZipCentralDirectoryFileEntry> directoryFileEntries;
+	private ByteBuffer directoryBuffer;
+	private ZipCentralDirectoryNameIndex nameIndex;
+	private volatile CodecPool codecPool = CodecPool.getDefaultPool();
+
+	/**
+	 * Open a Zip-file from the file-path and read its central-directory end. You must call {@link #close()} to close
+	 * the file when you are done.
+	 */
+	public ZipFileRandomInput(String path) throws IOException {
+		this(new File(path));
+	}
+
+	/**
+	 * Open a Zip-file and read its central-directory end. You must call {@link #close()} to close the file when you are
+	 * done.
+	 */
+	public ZipFileRandomInput(File file) throws IOException {
+		this(file, false);
+	}
+
+	/**
+	 * Open a Zip-file and read its central-directory end. You must call {@link #close()} to close the file when you are
+	 * done.
+	 * 
+	 * @param memoryMapped
+	 *            Set to true to memory-map the file and parse the Zip structures directly from the mapped bytes.
+	 */
+	public ZipFileRandomInput(File file, boolean memoryMapped) throws IOException {
+		this(openChannel(file), memoryMapped, true);
+	}
+
+	/**
+	 * Read a Zip-file from a seekable channel. If the channel is a {@link java.nio.channels.FileChannel} then
+	 * positional reads are used so multiple file data streams can be read at the same time. You must call
+	 * {@link #close()} to close the channel when you are done.
+	 */
+	public ZipFileRandomInput(SeekableByteChannel channel) throws IOException {
+		this(channel, false, false);
+	}
+
+	/**
+	 * Read a Zip-file from a file channel. You must call {@link #close()} to close the channel when you are done.
+	 * 
+	 * @param memoryMapped
+	 *            Set to true to memory-map the file and parse the Zip structures directly from the mapped bytes.
+	 */
+	public ZipFileRandomInput(FileChannel channel, boolean memoryMapped) throws IOException {
+		this(channel, memoryMapped, false);
+	}
+
+	/**
+	 * Read the central-directory end of the Zip-file from the channel.
+	 * 
+	 * @param closeOnFailure
+	 *            Set to true to close the channel if the Zip-file can't be read because the caller never sees it.
+	 */
+	private ZipFileRandomInput(SeekableByteChannel channel, boolean memoryMapped, boolean closeOnFailure)
+			throws IOException {
+		this.channel = channel;
+		try {
+			if (memoryMapped) {
+				this.mappedBuffer = new SegmentedMappedBuffer((FileChannel) channel);
+			} else {
+				this.mappedBuffer = null;
+			}
+			long size = channel.size();
+
+			// read in the end of the file which should contain the directory end and its comment
+			int tailLength = (int) Math.min(size, END_FIXED_SIZE + IoUtils.MAX_UNSIGNED_SHORT_VALUE);
+			long tailOffset = size - tailLength;
+			byte[] tail = new byte[tailLength];
+			readFully(ByteBuffer.wrap(tail), tailOffset, "ZipCentralDirectoryEnd");
+			int endIndex = findDirectoryEnd(tail);
+			if (endIndex < 0) {
+				throw new IOException("Could not locate the Zip central-directory end in the last " + tailLength
+						+ " bytes of the Zip-file");
+			}
+			long endOffset = tailOffset + endIndex;
+			if (mappedBuffer == null) {
+				this.directoryEnd = ZipCentralDirectoryEnd.read(new RewindableInputStream(
+						new ByteArrayInputStream(tail, endIndex, tailLength - endIndex), END_FIXED_SIZE));
+			} else {
+				this.directoryEnd = ZipCentralDirectoryEnd.read(mappedBuffer.slice(endOffset));
+			}
+
+			// see if there is a zip64 locator right before the end
+			long zip64EndOffset = findZip64EndOffset(endOffset);
+			if (zip64EndOffset < 0) {
+				this.zip64DirectoryEnd = null;
+				this.directoryOffset = directoryEnd.getDirectoryOffset();
+				this.directoryLimit = endOffset;
+			} else {
+				if (mappedBuffer == null) {
+					this.zip64DirectoryEnd =
+							Zip64CentralDirectoryEnd.read(openRewindableStream(zip64EndOffset, endOffset));
+				} else {
+					this.zip64DirectoryEnd = Zip64CentralDirectoryEnd.read(mappedBuffer.slice(zip64EndOffset));
+				}
+				if (zip64DirectoryEnd == null) {
+					throw new IOException("Zip64 locator points to an invalid Zip64 end at offset " + zip64EndOffset);
+				}
+				this.directoryOffset = zip64DirectoryEnd.getDirectoryOffset();
+				this.directoryLimit = zip64EndOffset;
+			}
+			if (directoryOffset > directoryLimit) {
+				throw new IOException(
+						"Zip central-directory offset " + directoryOffset + " is after its end " + directoryLimit);
+			}
+		} catch (IOException | RuntimeException e) {
+			if (closeOnFailure) {
+				channel.close();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the central-directory end which was read from the end of the Zip-file.
+	 */
+	public ZipCentralDirectoryEnd getDirectoryEnd() {
+		return directoryEnd;
+	}
+
+	/**
+	 * Return the Zip64 central-directory end or null if the Zip-file is not in Zip64 format.
+	 */
+	public Zip64CentralDirectoryEnd getZip64DirectoryEnd() {
+		return zip64DirectoryEnd;
+	}
+
+	/**
+	 * Return the offset in the Zip-file of the first central-directory file-entry.
+	 */
+	public long getDirectoryOffset() {
+		return directoryOffset;
+	}
+
+	/**
+	 * Read in all of the central-directory file-entries. They are read once and then cached.
+	 */
+	public List<ZipCentralDirectoryFileEntry> readDirectoryFileEntries() throws IOException {
+		if (directoryFileEntries != null) {
+			return directoryFileEntries;
+		}
+		List<ZipCentralDirectoryFileEntry> entries = new ArrayList<>();
+		if (mappedBuffer == null) {
+			long directorySize = directoryLimit - directoryOffset;
+			RewindableInputStream inputStream = openRewindableStream(directoryOffset, directoryLimit);
+			while (inputStream.getByteCount() < directorySize) {
+				ZipCentralDirectoryFileEntry entry = ZipCentralDirectoryFileEntry.read(inputStream);
+				if (entry == null) {
+					break;
+				}
+				entries.add(entry);
+			}
+		} else {
+			long position = directoryOffset;
+			while (position < directoryLimit) {
+				// each entry is parsed from a slice of the segment that it starts in
+				ByteBuffer buffer = mappedBuffer.slice(position);
+				ZipCentralDirectoryFileEntry entry = ZipCentralDirectoryFileEntry.read(buffer);
+				if (entry == null) {
+					break;
+				}
+				entries.add(entry);
+				position += buffer.position();
+			}
+		}
+		directoryFileEntries = Collections.unmodifiableList(entries);
+		return directoryFileEntries;
+	}
+
+	/**
+	 * Find the central-directory file-entry associated with a file-name.
+	 *
+	 * @return The entry or null if none has the name.
+	 */
+	public ZipCentralDirectoryFileEntry findDirectoryFileEntry(String fileName) throws IOException {
+		return getNameIndex().findEntry(fileName);
+	}
+
+	/**
+	 * Return the index of the central-directory file-names which is built the first time this is called. If the file
+	 * is memory-mapped then the index works over the mapped central-directory bytes, otherwise they are read into
+	 * memory.
+	 */
+	public ZipCentralDirectoryNameIndex getNameIndex() throws IOException {
+		if (nameIndex == null) {
+			nameIndex = new ZipCentralDirectoryNameIndex(getDirectoryBuffer());
+		}
+		return nameIndex;
+	}
+
+	/**
+	 * Seek to and read the file-header associated with the central-directory entry.
+	 */
+	public ZipFileHeader readFileHeader(ZipCentralDirectoryFileEntry entry) throws IOException {
+		ZipFileHeader header;
+		if (mappedBuffer == null) {
+			byte[] headerBytes = readFileHeaderBytes(entry.getZip64RelativeOffsetOfLocalHeader());
+			header = ZipFileHeader.read(
+					new RewindableInputStream(new ByteArrayInputStream(headerBytes), FILE_HEADER_FIXED_SIZE));
+		} else {
+			header = ZipFileHeader.read(mappedBuffer.slice(entry.getZip64RelativeOffsetOfLocalHeader()));
+		}
+		if (header == null) {
+			throw new IOException("Invalid file-header signature at offset "
+					+ entry.getZip64RelativeOffsetOfLocalHeader() + " for " + entry.getFileName());
+		}
+		return header;
+	}
+
+	/**
+	 * Get an input stream suitable for reading the bytes of the file associated with the central-directory entry. Each
+	 * stream keeps its own position in the Zip-file so you can have multiple streams open at the same time.
+	 *
+	 * @param raw
+	 *            Set to true to read the raw (encoded) file bytes or false to have them decoded based on the
+	 *            compression method.
+	 * @return Stream that can be used to read the file bytes. It should be closed when you are done with it.
+	 */
+	public InputStream openFileDataInputStream(ZipCentralDirectoryFileEntry entry, boolean raw) throws IOException {
+		long dataOffset = findFileDataOffset(entry);
+		long compressedSize = entry.getZip64CompressedSize();
+		RewindableInputStream inputStream = openRewindableStream(dataOffset, dataOffset + compressedSize);
+		int compressionMethod = (raw ? CompressionMethod.NONE.getValue() : entry.getCompressionMethod());
+		return new FileDataDecoderInputStream(
+				createFileDataDecoder(compressionMethod, inputStream, compressedSize, codecPool));
+	}
+
+	/**
+	 * Read all of file data associated with the central-directory entry into a byte array and decode it.
+	 */
+	public byte[] readFileDataAll(ZipCentralDirectoryFileEntry entry) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		readFileData(entry, baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Read all of raw file data associated with the central-directory entry into a byte array without decoding.
+	 */
+	public byte[] readRawFileDataAll(ZipCentralDirectoryFileEntry entry) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (InputStream inputStream = openFileDataInputStream(entry, true)) {
+			IoUtils.copyStream(inputStream, baos);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Read the file data associated with the central-directory entry, decode it, and write it to the output-stream.
+	 *
+	 * @return The number of bytes written into the output-stream.
+	 */
+	public long readFileData(ZipCentralDirectoryFileEntry entry, OutputStream outputStream) throws IOException {
+		long byteCount = 0;
+		CodecPool pool = codecPool;
+		byte[] buffer = pool.borrowBuffer();
+		try (InputStream inputStream = openFileDataInputStream(entry, false)) {
+			while (true) {
+				int numRead = inputStream.read(buffer);
+				if (numRead < 0) {
+					break;
+				}
+				outputStream.write(buffer, 0, numRead);
+				byteCount += numRead;
+			}
+		} finally {
+			pool.returnBuffer(buffer);
+		}
+		return byteCount;
+	}
+
+	/**
+	 * Read the file data associated with the central-directory entry, decode it, and write it to the channel. Stored
+	 * and deflated data is read and inflated with {@link ByteBuffer}s so, when the Zip-file is memory-mapped, the
+	 * compressed bytes are passed straight from the mapped file to the inflater. With Java 11+ the inflater reads from
+	 * and writes to the direct buffers without copying them through byte arrays. See {@link ByteBufferCodecUtils}.
+	 *
+	 * @return The number of bytes written into the channel.
+	 */
+	public long readFileData(ZipCentralDirectoryFileEntry entry, WritableByteChannel outputChannel)
+			throws IOException {
+		int compressionMethod = entry.getCompressionMethod();
+		if (compressionMethod != CompressionMethod.NONE.getValue()
+				&& compressionMethod != CompressionMethod.DEFLATED.getValue()) {
+			return readFileData(entry, Channels.newOutputStream(outputChannel));
+		}
+		long dataOffset = findFileDataOffset(entry);
+		long compressedSize = entry.getZip64CompressedSize();
+		ByteBuffer readBuffer = null;
+		if (mappedBuffer == null) {
+			readBuffer = ByteBuffer.allocateDirect((int) Math.min(READ_BUFFER_SIZE, compressedSize));
+		}
+
+		if (compressionMethod == CompressionMethod.NONE.getValue()) {
+			for (long offset = 0; offset < compressedSize;) {
+				ByteBuffer input = readChunk(dataOffset + offset, compressedSize - offset, readBuffer);
+				offset += input.remaining();
+				writeFully(outputChannel, input);
+			}
+			return compressedSize;
+		}
+
+		CodecPool pool = codecPool;
+		Inflater inflater = pool.borrowInflater();
+		try {
+			ByteBuffer output = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+			ByteBuffer input = ByteBuffer.allocate(0);
+			long offset = 0;
+			long byteCount = 0;
+			while (!inflater.finished()) {
+				if (!input.hasRemaining() && offset < compressedSize) {
+					input = readChunk(dataOffset + offset, compressedSize - offset, readBuffer);
+					offset += input.remaining();
+				}
+				output.clear();
+				int num = ByteBufferCodecUtils.inflate(inflater, input, output);
+				if (num == 0 && !input.hasRemaining() && offset >= compressedSize && !inflater.finished()) {
+					throw new EOFException("Reached the end of the compressed data for " + entry.getFileName()
+							+ " before the inflater finished");
+				}
+				output.flip();
+				byteCount += output.remaining();
+				writeFully(outputChannel, output);
+			}
+			return byteCount;
+		} catch (DataFormatException dfe) {
+			throw new IOException("Could not inflate the data for " + entry.getFileName(), dfe);
+		} finally {
+			pool.returnInflater(inflater);
+		}
+	}
+
+	/**
+	 * Read the file data associated with the central-directory entry, decode it, and write it to the file argument.
+	 *
+	 * @return The number of bytes written into the file.
+	 */
+	public long readFileDataToFile(ZipCentralDirectoryFileEntry entry, File outputFile) throws IOException {
+		try (OutputStream outputStream = new FileOutputStream(outputFile)) {
+			return readFileData(entry, outputStream);
+		}
+	}
+
+	/**
+	 * Close the underlying channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Set the pool that is used to get the inflaters and buffers used when reading file data. By default the
+	 * {@link CodecPool#getDefaultPool()} is used.
+	 */
+	public void setCodecPool(CodecPool codecPool) {
+		this.codecPool = codecPool;
+	}
+
+	/**
+	 * Find the offset of the file data associated with the central-directory entry by reading the lengths from its
+	 * file-header.
+	 */
+	private long findFileDataOffset(ZipCentralDirectoryFileEntry entry) throws IOException {
+		return entry.getZip64RelativeOffsetOfLocalHeader() + readFileHeaderView(entry).getRecordSize();
+	}
+
+	/**
+	 * Find the number of bytes of the entry in the Zip-file starting at its file-header, including the file data and
+	 * any data-descriptor after it.
+	 */
+	long findRawEntryLength(ZipCentralDirectoryFileEntry entry) throws IOException {
+		ZipFileHeaderView headerView = readFullFileHeaderView(entry);
+		long length = headerView.getRecordSize() + entry.getZip64CompressedSize();
+		if (!headerView.hasFlag(GeneralPurposeFlag.DATA_DESCRIPTOR)) {
+			return length;
+		}
+		// the data-descriptor may or may not start with a signature
+		ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(buffer, entry.getZip64RelativeOffsetOfLocalHeader() + length, "ZipDataDescriptor");
+		if (buffer.getInt(0) == ZipDataDescriptor.OPTIONAL_EXPECTED_SIGNATURE) {
+			length += 4;
+		}
+		/*
+		 * crc32 followed by the sizes which are 8 bytes each if the file-header has a Zip64 extra-field, even if they
+		 * are small, see APPNOTE 4.3.9.2. Falls back to checking if they overflowed like ZipDataDescriptor.read(...).
+		 */
+		if (headerView.hasZip64ExtraField() || entry.getZip64CompressedSize() >= IoUtils.MAX_UNSIGNED_INT_VALUE
+				|| entry.getZip64UncompressedSize() >= IoUtils.MAX_UNSIGNED_INT_VALUE) {
+			length += 4 + 8 + 8;
+		} else {
+			length += 4 + 4 + 4;
+		}
+		return length;
+	}
+
+	/**
+	 * Return the underlying file channel or null if we are reading from some other type of channel.
+	 */
+	FileChannel getFileChannel() {
+		if (channel instanceof FileChannel) {
+			return (FileChannel) channel;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Copy a range of bytes of the Zip-file to the output-stream.
+	 */
+	void copyRange(long position, long length, OutputStream outputStream) throws IOException {
+		try (InputStream inputStream = openRewindableStream(position, position + length)) {
+			IoUtils.copyStream(inputStream, outputStream);
+		}
+	}
+
+	/**
+	 * Read the fixed portion of the file-header associated with the central-directory entry.
+	 */
+	private ZipFileHeaderView readFileHeaderView(ZipCentralDirectoryFileEntry entry) throws IOException {
+		long headerOffset = entry.getZip64RelativeOffsetOfLocalHeader();
+		ByteBuffer buffer;
+		if (mappedBuffer == null) {
+			buffer = ByteBuffer.allocate(FILE_HEADER_FIXED_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			IoUtils.readFully(channel, buffer, headerOffset, "ZipFileHeader");
+		} else {
+			buffer = mappedBuffer.slice(headerOffset);
+		}
+		ZipFileHeaderView headerView = new ZipFileHeaderView();
+		if (!headerView.wrap(buffer, 0)) {
+			throw new IOException(
+					"Invalid file-header signature at offset " + headerOffset + " for " + entry.getFileName());
+		}
+		return headerView;
+	}
+
+	/**
+	 * Read the file-header associated with the central-directory entry including its file-name and extra bytes.
+	 */
+	private ZipFileHeaderView readFullFileHeaderView(ZipCentralDirectoryFileEntry entry) throws IOException {
+		if (mappedBuffer != null) {
+			// the mapped slice has the whole record
+			return readFileHeaderView(entry);
+		}
+		byte[] headerBytes = readFileHeaderBytes(entry.getZip64RelativeOffsetOfLocalHeader());
+		ZipFileHeaderView headerView = new ZipFileHeaderView();
+		if (!headerView.wrap(ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN), 0)) {
+			throw new IOException("Invalid file-header signature at offset "
+					+ entry.getZip64RelativeOffsetOfLocalHeader() + " for " + entry.getFileName());
+		}
+		return headerView;
+	}
+
+	private byte[] readFileHeaderBytes(long headerOffset) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_FIXED_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		IoUtils.readFully(channel, buffer, headerOffset, "ZipFileHeader");
+		int fileNameLength = (buffer.getShort(FILE_HEADER_NAME_LENGTH_OFFSET) & 0xFFFF);
+		int extraLength = (buffer.getShort(FILE_HEADER_NAME_LENGTH_OFFSET + 2) & 0xFFFF);
+		byte[] headerBytes = new byte[FILE_HEADER_FIXED_SIZE + fileNameLength + extraLength];
+		System.arraycopy(buffer.array(), 0, headerBytes, 0, FILE_HEADER_FIXED_SIZE);
+		IoUtils.readFully(channel, ByteBuffer.wrap(headerBytes, FILE_HEADER_FIXED_SIZE, fileNameLength + extraLength),
+				headerOffset + FILE_HEADER_FIXED_SIZE, "ZipFileHeader");
+		return headerBytes;
+	}
+
+	/**
+	 * Look for the zip64 locator right before the directory end.
+	 *
+	 * @return The offset of the Zip64 end or -1 if there is no locator.
+	 */
+	private long findZip64EndOffset(long endOffset) throws IOException {
+		if (endOffset < ZIP64_LOCATOR_SIZE) {
+			return -1;
+		}
+		int length = (int) Math.min(endOffset, ZIP64_LOCATOR_EXTENDED_SIZE);
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(buffer, endOffset - length, "Zip64CentralDirectoryEndLocator");
+		return findZip64EndOffset(buffer, length);
+	}
+
+	/**
+	 * Look for the zip64 locator in the little-endian buffer whose first length bytes are the bytes right before the
+	 * directory end.
+	 *
+	 * @return The offset of the zip64 end or -1 if there is no locator.
+	 */
+	static long findZip64EndOffset(ByteBuffer buffer, int length) {
+		if (length < ZIP64_LOCATOR_SIZE) {
+			return -1;
+		}
+		// the standard locator has: signature, disk-number, end-offset, number-disks
+		int standardIndex = length - ZIP64_LOCATOR_SIZE;
+		if (buffer.getInt(standardIndex) == ZIP64_LOCATOR_SIGNATURE) {
+			return buffer.getLong(standardIndex + 4 + 4);
+		}
+		// our locator also has the disk-number-start after the disk-number
+		if (length == ZIP64_LOCATOR_EXTENDED_SIZE && buffer.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+			return buffer.getLong(4 + 4 + 4);
+		}
+		return -1;
+	}
+
+	private RewindableInputStream openRewindableStream(long start, long limit) {
+		InputStream inputStream;
+		if (mappedBuffer == null) {
+			inputStream = new BufferedInputStream(new ChannelInputStream(channel, start, limit), READ_BUFFER_SIZE);
+		} else {
+			// no need to buffer since the bytes are copied straight from the mapped segments
+			inputStream = mappedBuffer.openInputStream(start, limit);
+		}
+		return new RewindableInputStream(inputStream, IoUtils.STANDARD_BUFFER_SIZE);
+	}
+
+	/**
+	 * Return an iterator over views of the central-directory entries. Unlike {@link #readDirectoryFileEntries()} this
+	 * does not create an object for each entry. The same view instance is returned from each call to
+	 * {@link Iterator#next()} so it must not be held onto between calls.
+	 */
+	public Iterator<ZipCentralDirectoryFileEntryView> iterateDirectoryFileEntryViews() throws IOException {
+		return ZipCentralDirectoryFileEntryView.iterator(getDirectoryBuffer());
+	}
+
+	/**
+	 * Return a buffer with the bytes of the central-directory entries which is read the first time this is called.
+	 */
+	ByteBuffer getDirectoryBuffer() throws IOException {
+		if (directoryBuffer != null) {
+			return directoryBuffer;
+		}
+		long directorySize = directoryLimit - directoryOffset;
+		if (directorySize > Integer.MAX_VALUE) {
+			throw new IOException("Zip central-directory size " + directorySize + " is too large to be indexed");
+		}
+		if (mappedBuffer == null) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) directorySize);
+			IoUtils.readFully(channel, buffer, directoryOffset, "ZipCentralDirectoryFileEntry");
+			buffer.flip();
+			directoryBuffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		} else {
+			directoryBuffer = ((FileChannel) channel).map(MapMode.READ_ONLY, directoryOffset, directorySize)
+					.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return directoryBuffer;
+	}
+
+	/**
+	 * Read from the file position until the buffer is full either from the channel or from the mapped segments.
+	 */
+	private void readFully(ByteBuffer buffer, long position, String label) throws IOException {
+		if (mappedBuffer == null) {
+			IoUtils.readFully(channel, buffer, position, label);
+			return;
+		}
+		while (buffer.hasRemaining()) {
+			int numRead = mappedBuffer.read(position, buffer.array(), buffer.arrayOffset() + buffer.position(),
+					buffer.remaining());
+			if (numRead < 0) {
+				throw new EOFException("reached unexpected EOF while reading " + buffer.remaining() + " bytes for "
+						+ label + " at position " + position);
+			}
+			buffer.position(buffer.position() + numRead);
+			position += numRead;
+		}
+	}
+
+	/**
+	 * Return a buffer with the next chunk of file bytes starting at the position. If the file is memory-mapped then
+	 * this is a slice of the mapped bytes otherwise the bytes are read from the channel into the read buffer.
+	 */
+	private ByteBuffer readChunk(long position, long maxLength, ByteBuffer readBuffer) throws IOException {
+		ByteBuffer buffer;
+		if (mappedBuffer == null) {
+			buffer = readBuffer;
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), maxLength));
+			IoUtils.readFully(channel, buffer, position, "file-data");
+			buffer.flip();
+		} else {
+			buffer = mappedBuffer.slice(position);
+			buffer.limit((int) Math.min(buffer.limit(), maxLength));
+		}
+		return buffer;
+	}
+
+	private static void writeFully(WritableByteChannel outputChannel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			outputChannel.write(buffer);
+		}
+	}
+
+	/**
+	 * Search backwards through the tail bytes looking for the directory end signature.
+	 *
+	 * @return The index of the end in the tail or -1 if not found.
+	 */
+	static int findDirectoryEnd(byte[] tail) {
+		ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+		for (int index = tail.length - END_FIXED_SIZE; index >= 0; index--) {
+			if (buffer.getInt(index) != END_SIGNATURE) {
+				continue;
+			}
+			// make sure that the comment fits into the rest of the file
+			int commentLength = (buffer.getShort(index + END_FIXED_SIZE - 2) & 0xFFFF);
+			if (index + END_FIXED_SIZE + commentLength <= tail.length) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Create the decoder for a compression method that reads the encoded bytes from the input-stream.
+	 */
+	static FileDataDecoder createFileDataDecoder(int compressionMethod, RewindableInputStream inputStream,
+			long compressedSize, CodecPool codecPool) throws IOException {
+		if (compressionMethod == CompressionMethod.NONE.getValue()) {
+			return new StoredFileDataDecoder(inputStream, compressedSize);
+		} else if (compressionMethod == CompressionMethod.DEFLATED.getValue()) {
+			return new InflatorFileDataDecoder(inputStream, compressedSize, codecPool);
+		} else if (compressionMethod == CompressionMethod.SIMPLEZIP.getValue()) {
+			return new SimpleZipFileDataDecoder(inputStream);
+		} else {
+			throw new IllegalStateException("Unknown compression method: "
+					+ CompressionMethod.fromValue(compressionMethod) + " (" + compressionMethod + ")");
+		}
+	}
+
+	private static FileChannel openChannel(File file) throws FileNotFoundException {
+		@SuppressWarnings("resource")
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		return randomAccessFile.getChannel();
+	}
+
+	/**
+	 * Input stream which reads the file data through a decoder.
+	 */
+	static class FileDataDecoderInputStream extends InputStream {
+
+		private final FileDataDecoder decoder;
+		private final byte[] singleByteBuffer = new byte[1];
+		private boolean closed;
+
+		public FileDataDecoderInputStream(FileDataDecoder decoder) {
+			this.decoder = decoder;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int num = read(singleByteBuffer, 0, 1);
+			if (num < 0) {
+				return -1;
+			} else {
+				return (singleByteBuffer[0] & 0xFF);
+			}
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (closed) {
+				return -1;
+			}
+			if (length == 0) {
+				return 0;
+			}
+			int result = decoder.decode(buffer, offset, length);
+			if (result < 0) {
+				close();
+			}
+			return result;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				decoder.close();
+				closed = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.j256.simplezip.codec;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Inflate and deflate methods that work on {@link ByteBuffer}s so the data can come from or go to NIO channels and
+ * memory-mapped files.
+ *
+ * <p>
+ * This is the Java 8 version which has to copy direct buffers through byte arrays because the {@link ByteBuffer}
+ * methods on {@link Inflater} and {@link Deflater} were added in Java 11. The multi-release jar contains a Java 11
+ * version of this class under META-INF/versions/11 which calls them directly without copying.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ByteBufferCodecUtils {
+
+	/** maximum number of bytes copied from or to a direct buffer at a time */
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<byte[]> INPUT_COPY_BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[COPY_BUFFER_SIZE];
+		}
+	};
+	private static final ThreadLocal<byte[]> OUTPUT_COPY_BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[COPY_BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * Return true if the buffers are passed directly to the inflater and deflater without being copied through byte
+	 * arrays.
+	 */
+	public static boolean isCopyFree() {
+		return false;
+	}
+
+	/**
+	 * Inflate bytes from the input buffer into the output buffer. The position of the input buffer is advanced by the
+	 * number of bytes consumed by the inflater and the position of the output buffer by the number of bytes inflated.
+	 * Any bytes in the input buffer that are not consumed need to be passed in again with the next call.
+	 *
+	 * @return The number of bytes inflated into the output buffer.
+	 */
+	public static int inflate(Inflater inflater, ByteBuffer input, ByteBuffer output) throws DataFormatException {
+		int inputLength;
+		if (input.hasArray()) {
+			inputLength = input.remaining();
+			inflater.setInput(input.array(), input.arrayOffset() + input.position(), inputLength);
+		} else {
+			byte[] bytes = INPUT_COPY_BUFFER.get();
+			inputLength = Math.min(input.remaining(), bytes.length);
+			input.duplicate().get(bytes, 0, inputLength);
+			inflater.setInput(bytes, 0, inputLength);
+		}
+		int num;
+		if (output.hasArray()) {
+			num = inflater.inflate(output.array(), output.arrayOffset() + output.position(), output.remaining());
+			output.position(output.position() + num);
+		} else {
+			byte[] bytes = OUTPUT_COPY_BUFFER.get();
+			num = inflater.inflate(bytes, 0, Math.min(output.remaining(), bytes.length));
+			output.put(bytes, 0, num);
+		}
+		input.position(input.position() + inputLength - inflater.getRemaining());
+		return num;
+	}
+
+	/**
+	 * Deflate bytes from the input buffer into the output buffer. The position of the input buffer is advanced by the
+	 * number of bytes consumed by the deflater and the position of the output buffer by the number of bytes deflated.
+	 * Any bytes in the input buffer that are not consumed need to be passed in again with the next call.
+	 *
+	 * @param flush
+	 *            Flush mode such as {@link Deflater#NO_FLUSH}.
+	 * @return The number of bytes deflated into the output buffer.
+	 */
+	public static int deflate(Deflater deflater, ByteBuffer input, ByteBuffer output, int flush) {
+		// deflater doesn't have a getRemaining() so we use the read count
+		long bytesReadBefore = deflater.getBytesRead();
+		int inputLength;
+		if (input.hasArray()) {
+			inputLength = input.remaining();
+			deflater.setInput(input.array(), input.arrayOffset() + input.position(), inputLength);
+		} else {
+			byte[] bytes = INPUT_COPY_BUFFER.get();
+			inputLength = Math.min(input.remaining(), bytes.length);
+			input.duplicate().get(bytes, 0, inputLength);
+			deflater.setInput(bytes, 0, inputLength);
+		}
+		int num;
+		if (output.hasArray()) {
+			num = deflater.deflate(output.array(), output.arrayOffset() + output.position(), output.remaining(),
+					flush);
+			output.position(output.position() + num);
+		} else {
+			byte[] bytes = OUTPUT_COPY_BUFFER.get();
+			num = deflater.deflate(bytes, 0, Math.min(output.remaining(), bytes.length), flush);
+			output.put(bytes, 0, num);
+		}
+		input.position(input.position() + (int) (deflater.getBytesRead() - bytesReadBefore));
+		return num;
+	}
+}
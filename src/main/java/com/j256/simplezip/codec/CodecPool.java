@@ -0,0 +1,257 @@
+package com.j256.simplezip.codec;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.j256.simplezip.IoUtils;
+
+/**
+ * Bounded, thread-safe pool of {@link Inflater}s, {@link Deflater}s, and byte buffers that are used by the readers,
+ * writers, and codecs. Creating and ending the native inflaters and deflaters and zeroing new buffers for every entry
+ * can be a large part of the time spent on Zip-files with a lot of small entries. Objects are reset when they are
+ * returned and if the pool is full they are thrown away (and the inflater or deflater is ended).
+ *
+ * <p>
+ * By default the readers and writers use the {@link #getDefaultPool()} which is shared by all threads.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class CodecPool {
+
+	/** size of the buffers in the default pool */
+	public static final int DEFAULT_BUFFER_SIZE = IoUtils.STANDARD_BUFFER_SIZE * 16;
+	/** default maximum number of idle objects of each type kept in the pool */
+	public static final int DEFAULT_MAX_IDLE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	private static final CodecPool DEFAULT_POOL = new CodecPool(DEFAULT_MAX_IDLE, DEFAULT_BUFFER_SIZE);
+
+	private final int bufferSize;
+	private final Pool<Inflater> inflaterPool;
+	private final Pool<Deflater> deflaterPool;
+	private final Pool<byte[]> bufferPool;
+
+	/**
+	 * Create a pool.
+	 *
+	 * @param maxIdle
+	 *            Maximum number of idle objects of each type kept in the pool. Must be at least 1.
+	 * @param bufferSize
+	 *            Size of the buffers returned by {@link #borrowBuffer()}.
+	 */
+	public CodecPool(int maxIdle, int bufferSize) {
+		if (maxIdle <= 0) {
+			throw new IllegalArgumentException("Max idle must be positive: " + maxIdle);
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		this.inflaterPool = new Pool<Inflater>(maxIdle);
+		this.deflaterPool = new Pool<Deflater>(maxIdle);
+		this.bufferPool = new Pool<byte[]>(maxIdle);
+	}
+
+	/**
+	 * Return the default pool which is shared by all of the readers and writers unless they are given another one.
+	 */
+	public static CodecPool getDefaultPool() {
+		return DEFAULT_POOL;
+	}
+
+	/**
+	 * Borrow an inflater which has no Zlib wrapping. It must be returned with {@link #returnInflater(Inflater)} and
+	 * not ended.
+	 */
+	public Inflater borrowInflater() {
+		Inflater inflater = inflaterPool.poll();
+		if (inflater == null) {
+			inflater = new Inflater(true /* no wrap */);
+		}
+		return inflater;
+	}
+
+	/**
+	 * Return an inflater to the pool. It should not be used after it has been returned.
+	 */
+	public void returnInflater(Inflater inflater) {
+		inflater.reset();
+		if (!inflaterPool.offer(inflater)) {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Borrow a deflater which has no Zlib wrapping set to a compression level. It must be returned with
+	 * {@link #returnDeflater(Deflater)} and not ended.
+	 */
+	public Deflater borrowDeflater(int level) {
+		Deflater deflater = deflaterPool.poll();
+		if (deflater == null) {
+			deflater = new Deflater(level, true /* no wrap */);
+		} else {
+			deflater.setLevel(level);
+		}
+		return deflater;
+	}
+
+	/**
+	 * Return a deflater to the pool. It should not be used after it has been returned.
+	 */
+	public void returnDeflater(Deflater deflater) {
+		deflater.reset();
+		deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+		if (!deflaterPool.offer(deflater)) {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Borrow a buffer that is {@link #getBufferSize()} bytes long. It is not zeroed and may have the contents from
+	 * its previous use. It should be returned with {@link #returnBuffer(byte[])}.
+	 */
+	public byte[] borrowBuffer() {
+		byte[] buffer = bufferPool.poll();
+		if (buffer == null) {
+			buffer = new byte[bufferSize];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Return a buffer to the pool. It should not be used after it has been returned. Buffers that are not the pool's
+	 * buffer size are ignored.
+	 */
+	public void returnBuffer(byte[] buffer) {
+		if (buffer.length == bufferSize) {
+			bufferPool.offer(buffer);
+		}
+	}
+
+	/**
+	 * Return the size of the buffers returned by {@link #borrowBuffer()}.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Return the statistics for the inflaters.
+	 */
+	public Stats getInflaterStats() {
+		return inflaterPool.getStats();
+	}
+
+	/**
+	 * Return the statistics for the deflaters.
+	 */
+	public Stats getDeflaterStats() {
+		return deflaterPool.getStats();
+	}
+
+	/**
+	 * Return the statistics for the buffers.
+	 */
+	public Stats getBufferStats() {
+		return bufferPool.getStats();
+	}
+
+	@Override
+	public String toString() {
+		return "CodecPool [inflaters=" + getInflaterStats() + ", deflaters=" + getDeflaterStats() + ", buffers="
+				+ getBufferStats() + "]";
+	}
+
+	/**
+	 * Snapshot of the statistics about one of the types of objects in the pool.
+	 */
+	public static class Stats {
+
+		private final long numCreated;
+		private final long numReused;
+		private final long numDiscarded;
+		private final int numIdle;
+
+		public Stats(long numCreated, long numReused, long numDiscarded, int numIdle) {
+			this.numCreated = numCreated;
+			this.numReused = numReused;
+			this.numDiscarded = numDiscarded;
+			this.numIdle = numIdle;
+		}
+
+		/**
+		 * Number of objects that were created because the pool was empty.
+		 */
+		public long getNumCreated() {
+			return numCreated;
+		}
+
+		/**
+		 * Number of objects that were borrowed from the pool instead of being created.
+		 */
+		public long getNumReused() {
+			return numReused;
+		}
+
+		/**
+		 * Number of objects that were returned but thrown away because the pool was full.
+		 */
+		public long getNumDiscarded() {
+			return numDiscarded;
+		}
+
+		/**
+		 * Number of objects that are currently idle in the pool.
+		 */
+		public int getNumIdle() {
+			return numIdle;
+		}
+
+		@Override
+		public String toString() {
+			return "[created=" + numCreated + ", reused=" + numReused + ", discarded=" + numDiscarded + ", idle="
+					+ numIdle + "]";
+		}
+	}
+
+	/**
+	 * Bounded queue of idle objects with some counters.
+	 */
+	private static class Pool<T> {
+
+		private final BlockingQueue<T> idle;
+		private final AtomicLong numPolled = new AtomicLong();
+		private final AtomicLong numReused = new AtomicLong();
+		private final AtomicLong numDiscarded = new AtomicLong();
+
+		public Pool(int maxIdle) {
+			this.idle = new ArrayBlockingQueue<T>(maxIdle);
+		}
+
+		public T poll() {
+			numPolled.incrementAndGet();
+			T obj = idle.poll();
+			if (obj != null) {
+				numReused.incrementAndGet();
+			}
+			return obj;
+		}
+
+		public boolean offer(T obj) {
+			if (idle.offer(obj)) {
+				return true;
+			} else {
+				numDiscarded.incrementAndGet();
+				return false;
+			}
+		}
+
+		public Stats getStats() {
+			long reused = numReused.get();
+			return new Stats(numPolled.get() - reused, reused, numDiscarded.get(), idle.size());
+		}
+	}
+}
@@ -2,10 +2,9 @@ package com.j256.simplezip.codec;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.Deflater;
 
-import com.j256.simplezip.IoUtils;
-
 /**
  * Encoder for the DEFLATED Zip file format.
  * 
@@ -13,51 +12,95 @@ import com.j256.simplezip.IoUtils;
  */
 public class DeflatorFileDataEncoder implements FileDataEncoder {
 
-	private final Deflater deflater;
+	private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+	private final CodecPool codecPool;
 	private final OutputStream outputStream;
-	private byte[] encodeBuffer = new byte[IoUtils.STANDARD_BUFFER_SIZE];
-	private byte[] tmpBuffer = new byte[IoUtils.STANDARD_BUFFER_SIZE];
+	private final boolean pooledBuffer;
+	private Deflater deflater;
+	private byte[] outputBuffer;
+	private ByteBuffer outputByteBuffer;
 
 	public DeflatorFileDataEncoder(OutputStream outputStream, int level) {
+		this(outputStream, level, CodecPool.getDefaultPool());
+	}
+
+	/**
+	 * Create an encoder which gets its deflater and output buffer from a pool. They are returned to the pool when the
+	 * encoder is closed.
+	 */
+	public DeflatorFileDataEncoder(OutputStream outputStream, int level, CodecPool codecPool) {
+		this(outputStream, level, codecPool, codecPool.getBufferSize());
+	}
+
+	/**
+	 * Create an encoder which gets its deflater from a pool and uses an output buffer of a specific size. The deflated
+	 * bytes are written to the output-stream in chunks of up to this size. If the size is the same as the pool's
+	 * buffer size then the buffer is also taken from the pool.
+	 */
+	public DeflatorFileDataEncoder(OutputStream outputStream, int level, CodecPool codecPool, int outputBufferSize) {
+		if (outputBufferSize <= 0) {
+			throw new IllegalArgumentException("Output buffer size must be positive: " + outputBufferSize);
+		}
 		this.outputStream = outputStream;
-		this.deflater = new Deflater(level, true /* no wrap */);
+		this.codecPool = codecPool;
+		this.deflater = codecPool.borrowDeflater(level);
+		this.pooledBuffer = (outputBufferSize == codecPool.getBufferSize());
+		if (pooledBuffer) {
+			this.outputBuffer = codecPool.borrowBuffer();
+		} else {
+			this.outputBuffer = new byte[outputBufferSize];
+		}
+		this.outputByteBuffer = ByteBuffer.wrap(outputBuffer);
 	}
 
+	/**
+	 * Encode the bytes. The deflater reads directly from the input buffer without copying it so it must not be changed
+	 * until this method returns. By then the deflater has taken all of the bytes and no longer references the buffer.
+	 */
 	@Override
-	public void encode(byte[] outputBuffer, int offset, int length) throws IOException {
+	public void encode(byte[] inputBuffer, int offset, int length) throws IOException {
 		if (length == 0) {
 			return;
 		}
-		// deflater is using our buffer
-		if (length > encodeBuffer.length) {
-			encodeBuffer = new byte[length];
+		ByteBuffer input = ByteBuffer.wrap(inputBuffer, offset, length);
+		// keep going until the deflater has taken all of the input
+		while (input.hasRemaining()) {
+			writeDeflatedBytes(input);
 		}
-		System.arraycopy(outputBuffer, offset, encodeBuffer, 0, length);
-		deflater.setInput(encodeBuffer, 0, length);
-		emptyDeflaterBuffer();
 	}
 
 	@Override
 	public void close() throws IOException {
-		// finish must be called first here
-		deflater.finish();
-		while (!deflater.finished()) {
-			emptyDeflaterBuffer();
+		if (deflater == null) {
+			return;
+		}
+		try {
+			// finish must be called first here
+			deflater.finish();
+			while (!deflater.finished()) {
+				writeDeflatedBytes(EMPTY_BUFFER);
+			}
+		} finally {
+			// the deflater must be returned after the close
+			codecPool.returnDeflater(deflater);
+			if (pooledBuffer) {
+				codecPool.returnBuffer(outputBuffer);
+			}
+			deflater = null;
+			outputBuffer = null;
+			outputByteBuffer = null;
 		}
-		// deflater end must be called after the close
-		deflater.end();
 	}
 
 	/**
-	 * Read data from the input stream and write to the inflater to fill its buffer.
+	 * Deflate into our output buffer and write any bytes to the output-stream.
 	 */
-	private void emptyDeflaterBuffer() throws IOException {
-		while (true) {
-			int num = deflater.deflate(tmpBuffer, 0, tmpBuffer.length, Deflater.NO_FLUSH);
-			if (num == 0) {
-				break;
-			}
-			outputStream.write(tmpBuffer, 0, num);
+	private void writeDeflatedBytes(ByteBuffer input) throws IOException {
+		outputByteBuffer.clear();
+		int num = ByteBufferCodecUtils.deflate(deflater, input, outputByteBuffer, Deflater.NO_FLUSH);
+		if (num > 0) {
+			outputStream.write(outputBuffer, 0, num);
 		}
 	}
 }
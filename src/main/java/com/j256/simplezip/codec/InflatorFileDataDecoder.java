@@ -1,6 +1,8 @@
 package com.j256.simplezip.codec;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -15,29 +17,78 @@ import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
  */
 public class InflatorFileDataDecoder implements FileDataDecoder {
 
-	private final Inflater inflater = new Inflater(true /* no wrap */);
-	private final RewindableInputStream delegate;
 	/**
-	 * We need to not read too much ahead because otherwise we run the risk of reading off the end of an inner zip file
-	 * and not be able to rewind back enough. So we need to use a temporary buffer which is reading the deflated bytes
-	 * that is a maximum of a CentralDirectoryFileHeader and a CentralDirectoryEnd.
+	 * If we don't know the compressed size, we need to not read too much ahead because otherwise we run the risk of
+	 * reading off the end of an inner zip file and not be able to rewind back enough. So we need to use a temporary
+	 * buffer which is reading the deflated bytes that is a maximum of a CentralDirectoryFileHeader and a
+	 * CentralDirectoryEnd.
 	 */
-	private final byte[] tmpBuffer =
-			new byte[ZipCentralDirectoryFileEntry.MINIMUM_READ_SIZE + ZipCentralDirectoryEnd.MINIMUM_READ_SIZE];
+	private static final int UNKNOWN_SIZE_BUFFER_SIZE =
+			ZipCentralDirectoryFileEntry.MINIMUM_READ_SIZE + ZipCentralDirectoryEnd.MINIMUM_READ_SIZE;
+
+	private final CodecPool codecPool;
+	private final RewindableInputStream delegate;
+	private final long compressedSize;
+	private Inflater inflater;
+	private byte[] tmpBuffer;
+	/** wraps the tmp-buffer and tracks the deflated bytes that have not been consumed by the inflater */
+	private ByteBuffer inputBuffer;
 	private long bytesRead;
 	private long bytesWritten;
 
+	/**
+	 * Create a decoder for deflated data of an unknown size. The input-stream is read in small chunks and rewound at
+	 * the end of the data.
+	 */
 	public InflatorFileDataDecoder(RewindableInputStream inputStream) throws IOException {
+		this(inputStream, -1);
+	}
+
+	/**
+	 * Create a decoder for deflated data.
+	 * 
+	 * @param compressedSize
+	 *            Size of the compressed (encoded) data if known, such as from the file-header or central-directory
+	 *            entry, or -1 if not. If it is known then the input-stream is read in large chunks that never go past
+	 *            the end of the data so it never needs to be rewound.
+	 */
+	public InflatorFileDataDecoder(RewindableInputStream inputStream, long compressedSize) throws IOException {
+		this(inputStream, compressedSize, CodecPool.getDefaultPool());
+	}
+
+	/**
+	 * Create a decoder for deflated data which gets its inflater and buffer from a pool. They are returned to the pool
+	 * when the decoder is closed. See {@link #InflatorFileDataDecoder(RewindableInputStream, long)}.
+	 */
+	public InflatorFileDataDecoder(RewindableInputStream inputStream, long compressedSize, CodecPool codecPool)
+			throws IOException {
 		this.delegate = inputStream;
-		// might as well do this
-		fillInflaterBuffer();
+		this.compressedSize = compressedSize;
+		this.codecPool = codecPool;
+		this.inflater = codecPool.borrowInflater();
+		if (compressedSize < 0) {
+			this.tmpBuffer = new byte[UNKNOWN_SIZE_BUFFER_SIZE];
+		} else {
+			// we can read in large chunks since we never read past the end
+			this.tmpBuffer = codecPool.borrowBuffer();
+		}
+		this.inputBuffer = ByteBuffer.wrap(tmpBuffer);
+		inputBuffer.limit(0);
+		try {
+			// might as well do this
+			fillInflaterBuffer();
+		} catch (IOException ioe) {
+			close();
+			throw ioe;
+		}
 	}
 
 	@Override
 	public int decode(byte[] outputFuffer, int offset, int length) throws IOException {
 		while (true) {
 			try {
-				int num = inflater.inflate(outputFuffer, offset, length);
+				int num = ByteBufferCodecUtils.inflate(inflater, inputBuffer,
+						ByteBuffer.wrap(outputFuffer, offset, length));
 				if (num > 0) {
 					bytesWritten += num;
 					return num;
@@ -54,9 +105,14 @@ public class InflatorFileDataDecoder implements FileDataDecoder {
 				 * might have read more bytes than it needed and we need to rewind to the start of the data-descriptor
 				 * or the next record.
 				 */
-				int numRemaining = inflater.getRemaining();
-				delegate.rewind(numRemaining);
-				bytesRead -= numRemaining;
+				if (compressedSize < 0) {
+					int numRemaining = inputBuffer.remaining();
+					delegate.rewind(numRemaining);
+					bytesRead -= numRemaining;
+				} else {
+					// we read up to the compressed size so make sure we are at the end of it
+					skipToCompressedSize();
+				}
 				return -1;
 			} else if (inflater.needsInput()) {
 				fillInflaterBuffer();
@@ -66,7 +122,16 @@ public class InflatorFileDataDecoder implements FileDataDecoder {
 
 	@Override
 	public void close() {
-		inflater.end();
+		if (inflater == null) {
+			return;
+		}
+		codecPool.returnInflater(inflater);
+		inflater = null;
+		if (compressedSize >= 0) {
+			codecPool.returnBuffer(tmpBuffer);
+		}
+		tmpBuffer = null;
+		inputBuffer = null;
 	}
 
 	@Override
@@ -83,10 +148,44 @@ public class InflatorFileDataDecoder implements FileDataDecoder {
 	 * Read data from the input stream and write to the inflater to fill its buffer.
 	 */
 	private void fillInflaterBuffer() throws IOException {
-		int num = delegate.read(tmpBuffer);
-		if (num > 0) {
+		int length = tmpBuffer.length;
+		if (compressedSize >= 0) {
+			long left = compressedSize - bytesRead;
+			if (left <= 0) {
+				throw new EOFException("Reached the end of the compressed size " + compressedSize
+						+ " before the end of the deflated data");
+			}
+			// we do this instead of Math.min() because one is long but never > than MAXINT
+			if (left < length) {
+				length = (int) left;
+			}
+		}
+		int num = delegate.read(tmpBuffer, 0, length);
+		if (num < 0) {
+			throw new EOFException("Reached the end of the stream before the end of the deflated data");
+		} else if (num > 0) {
+			bytesRead += num;
+			inputBuffer.clear();
+			inputBuffer.limit(num);
+		}
+	}
+
+	/**
+	 * Read past any bytes that are left before the end of the compressed size. This should only happen if there are
+	 * extra bytes after the end of the deflated data.
+	 */
+	private void skipToCompressedSize() throws IOException {
+		while (bytesRead < compressedSize) {
+			int length = tmpBuffer.length;
+			// we do this instead of Math.min() because one is long but never > than MAXINT
+			if (compressedSize - bytesRead < length) {
+				length = (int) (compressedSize - bytesRead);
+			}
+			int num = delegate.read(tmpBuffer, 0, length);
+			if (num < 0) {
+				throw new EOFException("Reached the end of the stream before the end of the compressed size");
+			}
 			bytesRead += num;
-			inflater.setInput(tmpBuffer, 0, num);
 		}
 	}
 }
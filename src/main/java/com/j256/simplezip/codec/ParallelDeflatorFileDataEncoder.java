@@ -0,0 +1,324 @@
+package com.j256.simplezip.codec;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.j256.simplezip.Crc32Utils;
+
+/**
+ * Encoder for the DEFLATED Zip file format which compresses blocks of the file data concurrently using an executor,
+ * similar to how pigz works. Each block is compressed with the tail of the previous block as its preset dictionary and
+ * all but the last block end with a sync-flush so the compressed blocks can be concatenated into a single valid
+ * deflate stream. The compressed blocks are written out in order.
+ *
+ * <p>
+ * The CRC32 of each block is also calculated by the executor and then combined so the caller doesn't have to calculate
+ * it sequentially. See {@link #getCrc32()} and {@link #getByteCount()}.
+ * </p>
+ *
+ * <p>
+ * If the oldest block has to be written but the executor has not started compressing it yet, for example because all
+ * of its threads are busy writing other Zip-files, then the calling thread compresses it itself instead of waiting.
+ * The block and output buffers are reused once their blocks have been written.
+ * </p>
+ *
+ * <p>
+ * NOTE: the output is a bit larger than the output from {@link DeflatorFileDataEncoder} because of the flush markers
+ * between the blocks.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ParallelDeflatorFileDataEncoder implements FileDataEncoder {
+
+	/** default number of uncompressed bytes in each of the blocks compressed concurrently */
+	public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+	/** default maximum number of blocks waiting to be compressed or written */
+	public static final int DEFAULT_MAX_PENDING_BLOCKS = Runtime.getRuntime().availableProcessors() * 2;
+	/** size of the deflate window which is how much of the previous block is used as the dictionary */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private final OutputStream outputStream;
+	private final int level;
+	private final CodecPool codecPool;
+	private final ExecutorService executor;
+	private final int blockSize;
+	private final int maxPendingBlocks;
+	private final ArrayDeque<FutureTask<CompressedBlock>> pendingBlocks =
+			new ArrayDeque<FutureTask<CompressedBlock>>();
+	/** blocks and output buffers of written blocks, only used by the calling thread */
+	private final ArrayDeque<byte[]> freeBlocks = new ArrayDeque<byte[]>();
+	private final ArrayDeque<byte[]> freeOutputs = new ArrayDeque<byte[]>();
+
+	private byte[] block;
+	private int blockLength;
+	private byte[] previousBlock;
+	private long byteCount;
+	private long crc32;
+	private boolean closed;
+
+	public ParallelDeflatorFileDataEncoder(OutputStream outputStream, int level, ExecutorService executor) {
+		this(outputStream, level, CodecPool.getDefaultPool(), executor, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_PENDING_BLOCKS);
+	}
+
+	/**
+	 * Create the encoder.
+	 *
+	 * @param outputStream
+	 *            Where the compressed blocks are written in order.
+	 * @param level
+	 *            Deflate compression level.
+	 * @param codecPool
+	 *            Pool where the deflaters are borrowed from by the compressing threads.
+	 * @param executor
+	 *            Executor that runs the compression of the blocks. It is not shut down by the encoder.
+	 * @param blockSize
+	 *            Number of uncompressed bytes in each block. Should be a good bit larger than the 32k deflate window.
+	 * @param maxPendingBlocks
+	 *            Maximum number of blocks being compressed or waiting to be written after which encode will wait for
+	 *            the oldest to finish. This limits the memory used if the executor can't keep up.
+	 */
+	public ParallelDeflatorFileDataEncoder(OutputStream outputStream, int level, CodecPool codecPool,
+			ExecutorService executor, int blockSize, int maxPendingBlocks) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		if (maxPendingBlocks <= 0) {
+			throw new IllegalArgumentException("Max pending blocks must be positive: " + maxPendingBlocks);
+		}
+		this.outputStream = outputStream;
+		this.level = level;
+		this.codecPool = codecPool;
+		this.executor = executor;
+		this.blockSize = blockSize;
+		this.maxPendingBlocks = maxPendingBlocks;
+		this.block = new byte[blockSize];
+	}
+
+	/**
+	 * Encode the bytes. The bytes are copied into the current block so the input buffer can be reused once this method
+	 * returns.
+	 */
+	@Override
+	public void encode(byte[] inputBuffer, int offset, int length) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Cannot encode after the encoder has been closed");
+		}
+		while (length > 0) {
+			if (blockLength == block.length) {
+				submitBlock(false);
+			}
+			int num = Math.min(length, block.length - blockLength);
+			System.arraycopy(inputBuffer, offset, block, blockLength, num);
+			blockLength += num;
+			offset += num;
+			length -= num;
+		}
+	}
+
+	/**
+	 * Compress the final block and write out all of the pending blocks. This does not close the output-stream or shut
+	 * down the executor.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			// the last block is always sent even if it is empty because it has the final deflate marker
+			submitBlock(true);
+			while (!pendingBlocks.isEmpty()) {
+				writeBlock(pendingBlocks.removeFirst());
+			}
+		} finally {
+			// if there was an error then we don't care about the results
+			for (Future<CompressedBlock> future : pendingBlocks) {
+				future.cancel(false);
+			}
+			pendingBlocks.clear();
+			freeBlocks.clear();
+			freeOutputs.clear();
+			block = null;
+			previousBlock = null;
+		}
+	}
+
+	/**
+	 * Return the number of uncompressed bytes that were encoded.
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Return the CRC32 of the uncompressed bytes combined from the CRCs of the blocks. This is only valid after the
+	 * encoder has been closed.
+	 */
+	public long getCrc32() {
+		return crc32;
+	}
+
+	private void submitBlock(boolean last) throws IOException {
+		// a bit more than the input size should hold the output in most cases
+		int outputSize = blockLength + (blockLength >> 8) + 64;
+		byte[] output = freeOutputs.pollFirst();
+		if (output == null || output.length < outputSize) {
+			output = new byte[outputSize];
+		}
+		BlockCompressor compressor = new BlockCompressor(block, blockLength, previousBlock, output, last);
+		if (last && pendingBlocks.isEmpty()) {
+			// no reason to use another thread for a single block file
+			writeBlock(compressor.call());
+			return;
+		}
+		FutureTask<CompressedBlock> task = new FutureTask<CompressedBlock>(compressor);
+		executor.execute(task);
+		pendingBlocks.addLast(task);
+		previousBlock = block;
+		block = freeBlocks.pollFirst();
+		if (block == null) {
+			block = new byte[blockSize];
+		}
+		blockLength = 0;
+		// limit the blocks in memory and write out the ones that are done in the meantime
+		while (!pendingBlocks.isEmpty()
+				&& (pendingBlocks.size() >= maxPendingBlocks || pendingBlocks.peekFirst().isDone())) {
+			writeBlock(pendingBlocks.removeFirst());
+		}
+	}
+
+	private void writeBlock(FutureTask<CompressedBlock> task) throws IOException {
+		/*
+		 * If the executor hasn't started the block then we compress it ourselves so we don't wait on an executor whose
+		 * threads may all be waiting on us. This does nothing if the block has already been started.
+		 */
+		task.run();
+		CompressedBlock compressed;
+		try {
+			compressed = task.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for compressed block");
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else {
+				throw new IOException("Compressing block failed", cause);
+			}
+		}
+		writeBlock(compressed);
+	}
+
+	private void writeBlock(CompressedBlock compressed) throws IOException {
+		outputStream.write(compressed.buffer, 0, compressed.length);
+		crc32 = Crc32Utils.combine(crc32, compressed.crc32, compressed.uncompressedLength);
+		byteCount += compressed.uncompressedLength;
+		// the dictionary was the previous block which is no longer needed now that both blocks have been written
+		if (compressed.dictionary != null && freeBlocks.size() < maxPendingBlocks) {
+			freeBlocks.addLast(compressed.dictionary);
+		}
+		if (freeOutputs.size() < maxPendingBlocks) {
+			freeOutputs.addLast(compressed.buffer);
+		}
+	}
+
+	/**
+	 * Compresses a single block in one of the executor threads.
+	 */
+	private class BlockCompressor implements Callable<CompressedBlock> {
+
+		private final byte[] input;
+		private final int inputLength;
+		private final byte[] dictionary;
+		private final byte[] output;
+		private final boolean last;
+
+		public BlockCompressor(byte[] input, int inputLength, byte[] dictionary, byte[] output, boolean last) {
+			this.input = input;
+			this.inputLength = inputLength;
+			this.dictionary = dictionary;
+			this.output = output;
+			this.last = last;
+		}
+
+		@Override
+		public CompressedBlock call() {
+			CRC32 crc = new CRC32();
+			crc.update(input, 0, inputLength);
+
+			Deflater deflater = codecPool.borrowDeflater(level);
+			try {
+				if (dictionary != null) {
+					// the dictionary is always a full block
+					int dictLength = Math.min(DICTIONARY_SIZE, dictionary.length);
+					deflater.setDictionary(dictionary, dictionary.length - dictLength, dictLength);
+				}
+				deflater.setInput(input, 0, inputLength);
+				byte[] output = this.output;
+				int outputLength = 0;
+				if (last) {
+					deflater.finish();
+					while (!deflater.finished()) {
+						if (outputLength == output.length) {
+							output = Arrays.copyOf(output, output.length * 2);
+						}
+						outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+					}
+				} else {
+					/*
+					 * Sync-flush is done when the deflater has taken all of the input and doesn't fill the output
+					 * buffer. A pooled deflater whose level was changed returns 0 from the first call without taking
+					 * any input because it is only applying the new level.
+					 */
+					while (true) {
+						if (outputLength == output.length) {
+							output = Arrays.copyOf(output, output.length * 2);
+						}
+						int space = output.length - outputLength;
+						int num = deflater.deflate(output, outputLength, space, Deflater.SYNC_FLUSH);
+						outputLength += num;
+						if (num < space && deflater.needsInput()) {
+							break;
+						}
+					}
+				}
+				return new CompressedBlock(output, outputLength, crc.getValue(), inputLength, dictionary);
+			} finally {
+				codecPool.returnDeflater(deflater);
+			}
+		}
+	}
+
+	/**
+	 * Result of compressing a block.
+	 */
+	private static class CompressedBlock {
+
+		final byte[] buffer;
+		final int length;
+		final long crc32;
+		final int uncompressedLength;
+		final byte[] dictionary;
+
+		public CompressedBlock(byte[] buffer, int length, long crc32, int uncompressedLength, byte[] dictionary) {
+			this.buffer = buffer;
+			this.length = length;
+			this.crc32 = crc32;
+			this.uncompressedLength = uncompressedLength;
+			this.dictionary = dictionary;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.j256.simplezip.format;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import com.j256.simplezip.IoUtils;
 import com.j256.simplezip.RewindableInputStream;
@@ -82,6 +83,41 @@ public class Zip64CentralDirectoryEnd {
 		return builder.build();
 	}
 
+	/**
+	 * Read one from a little-endian buffer starting at its current position. This is used when the bytes of the
+	 * Zip-file have been memory-mapped.
+	 * 
+	 * @return The end or null if the signature did not match in which case the position is not changed.
+	 */
+	public static Zip64CentralDirectoryEnd read(ByteBuffer buffer) throws IOException {
+
+		int start = buffer.position();
+		int signature = IoUtils.readInt(buffer, "Zip64CentralDirectoryEnd.signature");
+		if (signature != EXPECTED_SIGNATURE) {
+			buffer.position(start);
+			return null;
+		}
+
+		Builder builder = new Zip64CentralDirectoryEnd.Builder();
+		long size = IoUtils.readLong(buffer, "ZipCentralDirectoryFileEnd.dirEndSize");
+		builder.versionMade = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEnd.versionMade");
+		builder.versionNeeded = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEnd.versionNeeded");
+		builder.diskNumber = IoUtils.readInt(buffer, "ZipCentralDirectoryFileEnd.diskNumber");
+		builder.diskNumberStart = IoUtils.readInt(buffer, "ZipCentralDirectoryFileEnd.diskNumberStart");
+		builder.numRecordsOnDisk = IoUtils.readLong(buffer, "ZipCentralDirectoryFileEnd.numRecordsOnDisk");
+		builder.numRecordsTotal = IoUtils.readLong(buffer, "ZipCentralDirectoryFileEnd.numRecordsTotal");
+		builder.directorySize = IoUtils.readLong(buffer, "ZipCentralDirectoryFileEnd.sizeDirectory");
+		builder.directoryOffset = IoUtils.readLong(buffer, "ZipCentralDirectoryFileEnd.directoryOffset");
+		long extensibleDataLength = size - FIXED_FIELDS_SIZE;
+		if (extensibleDataLength > Integer.MAX_VALUE) {
+			// may never get here but let's be careful out there
+			throw new IllegalArgumentException("Zip64 extensibleData length " + extensibleDataLength + "is too large");
+		}
+		builder.extensibleData =
+				IoUtils.readBytes(buffer, (int) extensibleDataLength, "ZipCentralDirectoryFileEnd.comment");
+		return builder.build();
+	}
+
 	/**
 	 * Write to the output-stream.
 	 */
@@ -99,7 +135,7 @@ public class Zip64CentralDirectoryEnd {
 		IoUtils.writeLong(outputStream, numRecordsOnDisk);
 		IoUtils.writeLong(outputStream, numRecordsTotal);
 		IoUtils.writeLong(outputStream, directorySize);
-		IoUtils.writeLong(outputStream, (int) directoryOffset);
+		IoUtils.writeLong(outputStream, directoryOffset);
 		IoUtils.writeBytes(outputStream, extensibleData);
 	}
 
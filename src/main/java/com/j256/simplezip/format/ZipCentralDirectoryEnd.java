@@ -2,6 +2,7 @@ package com.j256.simplezip.format;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import com.j256.simplezip.IoUtils;
 import com.j256.simplezip.RewindableInputStream;
@@ -17,6 +18,8 @@ public class ZipCentralDirectoryEnd {
 	private static final int EXPECTED_SIGNATURE = 0x6054b50;
 	/** This is the minimum size that this header will take on disk. */
 	public static final int MINIMUM_READ_SIZE = 4 * 2 + 2 * 4 + 2;
+	/** offset of the comment length in the record */
+	private static final int COMMENT_LENGTH_OFFSET = 20;
 
 	private final boolean needsZip64;
 	private final int diskNumber;
@@ -51,21 +54,45 @@ public class ZipCentralDirectoryEnd {
 	 */
 	public static ZipCentralDirectoryEnd read(RewindableInputStream inputStream) throws IOException {
 
-		int signature = IoUtils.readInt(inputStream, "ZipCentralDirectoryEnd.signature");
-		if (signature != EXPECTED_SIGNATURE) {
+		ByteBuffer buffer =
+				IoUtils.readFully(inputStream, IoUtils.getRecordBuffer(), 4, "ZipCentralDirectoryEnd.signature");
+		if (buffer.getInt(0) != EXPECTED_SIGNATURE) {
 			inputStream.rewind(4);
 			return null;
 		}
 
+		// read the rest of the record in bulk and then decode it from the buffer
+		buffer = IoUtils.readFully(inputStream, buffer, MINIMUM_READ_SIZE, "ZipCentralDirectoryEnd.fixed");
+		int commentLength = (buffer.getShort(COMMENT_LENGTH_OFFSET) & 0xFFFF);
+		buffer = IoUtils.readFully(inputStream, buffer, commentLength, "ZipCentralDirectoryEnd.comment");
+		buffer.flip();
+		return read(buffer);
+	}
+
+	/**
+	 * Read one from a little-endian buffer starting at its current position. This is used when the bytes of the
+	 * Zip-file have been memory-mapped.
+	 * 
+	 * @return The end or null if the signature did not match in which case the position is not changed.
+	 */
+	public static ZipCentralDirectoryEnd read(ByteBuffer buffer) throws IOException {
+
+		int start = buffer.position();
+		int signature = IoUtils.readInt(buffer, "ZipCentralDirectoryEnd.signature");
+		if (signature != EXPECTED_SIGNATURE) {
+			buffer.position(start);
+			return null;
+		}
+
 		Builder builder = new ZipCentralDirectoryEnd.Builder();
-		builder.diskNumber = IoUtils.readShort(inputStream, "ZipCentralDirectoryEnd.diskNumber");
-		builder.diskNumberStart = IoUtils.readShort(inputStream, "ZipCentralDirectoryEnd.diskNumberStart");
-		builder.numRecordsOnDisk = IoUtils.readShort(inputStream, "ZipCentralDirectoryEnd.numRecordsOnDisk");
-		builder.numRecordsTotal = IoUtils.readShort(inputStream, "ZipCentralDirectoryEnd.numRecordsTotal");
-		builder.directorySize = IoUtils.readInt(inputStream, "ZipCentralDirectoryEnd.sizeDirectory");
-		builder.directoryOffset = IoUtils.readInt(inputStream, "ZipCentralDirectoryEnd.directoryOffset");
-		int commentLength = IoUtils.readShort(inputStream, "ZipCentralDirectoryEnd.commentLength");
-		builder.commentBytes = IoUtils.readBytes(inputStream, commentLength, "ZipCentralDirectoryEnd.comment");
+		builder.diskNumber = IoUtils.readShort(buffer, "ZipCentralDirectoryEnd.diskNumber");
+		builder.diskNumberStart = IoUtils.readShort(buffer, "ZipCentralDirectoryEnd.diskNumberStart");
+		builder.numRecordsOnDisk = IoUtils.readShort(buffer, "ZipCentralDirectoryEnd.numRecordsOnDisk");
+		builder.numRecordsTotal = IoUtils.readShort(buffer, "ZipCentralDirectoryEnd.numRecordsTotal");
+		builder.directorySize = IoUtils.readIntAsLong(buffer, "ZipCentralDirectoryEnd.sizeDirectory");
+		builder.directoryOffset = IoUtils.readIntAsLong(buffer, "ZipCentralDirectoryEnd.directoryOffset");
+		int commentLength = IoUtils.readShort(buffer, "ZipCentralDirectoryEnd.commentLength");
+		builder.commentBytes = IoUtils.readBytes(buffer, commentLength, "ZipCentralDirectoryEnd.comment");
 
 		return builder.build();
 	}
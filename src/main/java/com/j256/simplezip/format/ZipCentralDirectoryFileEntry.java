@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.Set;
 
@@ -26,6 +27,8 @@ public class ZipCentralDirectoryFileEntry {
 	public static final int DEFAULT_DISK_NUMBER = 0;
 	/** This is the minimum size that this header will take on disk. */
 	public static final int MINIMUM_READ_SIZE = 6 * 2 + 3 * 4 + 5 * 2 + 2 * 4;
+	/** offset of the file-name length in the record which is followed by the extra and comment lengths */
+	private static final int FILE_NAME_LENGTH_OFFSET = 28;
 
 	private final int versionMade;
 	private final int versionNeeded;
@@ -81,38 +84,63 @@ public class ZipCentralDirectoryFileEntry {
 	 */
 	public static ZipCentralDirectoryFileEntry read(RewindableInputStream inputStream) throws IOException {
 
-		int signature = IoUtils.readInt(inputStream, "ZipCentralDirectoryFileEntry.signature");
-		if (signature != EXPECTED_SIGNATURE) {
+		ByteBuffer buffer =
+				IoUtils.readFully(inputStream, IoUtils.getRecordBuffer(), 4, "ZipCentralDirectoryFileEntry.signature");
+		if (buffer.getInt(0) != EXPECTED_SIGNATURE) {
 			inputStream.rewind(4);
 			return null;
 		}
 
+		// read the rest of the record in bulk and then decode it from the buffer
+		buffer = IoUtils.readFully(inputStream, buffer, MINIMUM_READ_SIZE, "ZipCentralDirectoryFileEntry.fixed");
+		int variableLength = (buffer.getShort(FILE_NAME_LENGTH_OFFSET) & 0xFFFF)
+				+ (buffer.getShort(FILE_NAME_LENGTH_OFFSET + 2) & 0xFFFF)
+				+ (buffer.getShort(FILE_NAME_LENGTH_OFFSET + 4) & 0xFFFF);
+		buffer = IoUtils.readFully(inputStream, buffer, variableLength, "ZipCentralDirectoryFileEntry.variable");
+		buffer.flip();
+		return read(buffer);
+	}
+
+	/**
+	 * Read one from a little-endian buffer starting at its current position. This is used when the bytes of the
+	 * Zip-file have been memory-mapped.
+	 * 
+	 * @return The entry or null if the signature did not match in which case the position is not changed.
+	 */
+	public static ZipCentralDirectoryFileEntry read(ByteBuffer buffer) throws IOException {
+
+		int start = buffer.position();
+		int signature = IoUtils.readInt(buffer, "ZipCentralDirectoryFileEntry.signature");
+		if (signature != EXPECTED_SIGNATURE) {
+			buffer.position(start);
+			return null;
+		}
+
 		Builder builder = new ZipCentralDirectoryFileEntry.Builder();
-		builder.versionMade = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.versionMade");
-		builder.versionNeeded = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.versionNeeded");
-		builder.generalPurposeFlags =
-				IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.generalPurposeFlags");
-		builder.compressionMethod = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.compressionMethod");
-		builder.lastModifiedTime = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.lastModifiedTime");
-		builder.lastModifiedDate = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.lastModifiedDate");
-		builder.crc32 = IoUtils.readIntAsLong(inputStream, "ZipCentralDirectoryFileEntry.crc32");
-		builder.compressedSize = IoUtils.readInt(inputStream, "ZipCentralDirectoryFileEntry.compressedSize");
-		builder.uncompressedSize = IoUtils.readInt(inputStream, "ZipCentralDirectoryFileEntry.uncompressedSize");
-		int fileNameLength = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.fileNameLength");
-		int extraFieldLength = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.extraFieldLength");
-		int commentLength = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.commentLength");
-		builder.diskNumberStart = IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.diskNumberStart");
+		builder.versionMade = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.versionMade");
+		builder.versionNeeded = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.versionNeeded");
+		builder.generalPurposeFlags = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.generalPurposeFlags");
+		builder.compressionMethod = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.compressionMethod");
+		builder.lastModifiedTime = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.lastModifiedTime");
+		builder.lastModifiedDate = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.lastModifiedDate");
+		builder.crc32 = IoUtils.readIntAsLong(buffer, "ZipCentralDirectoryFileEntry.crc32");
+		builder.compressedSize = IoUtils.readIntAsLong(buffer, "ZipCentralDirectoryFileEntry.compressedSize");
+		builder.uncompressedSize = IoUtils.readIntAsLong(buffer, "ZipCentralDirectoryFileEntry.uncompressedSize");
+		int fileNameLength = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.fileNameLength");
+		int extraFieldLength = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.extraFieldLength");
+		int commentLength = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.commentLength");
+		builder.diskNumberStart = IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.diskNumberStart");
 		builder.internalFileAttributes =
-				IoUtils.readShort(inputStream, "ZipCentralDirectoryFileEntry.internalFileAttributes");
-		builder.externalFileAttributes =
-				IoUtils.readInt(inputStream, "ZipCentralDirectoryFileEntry.externalFileAttributes");
+				IoUtils.readShort(buffer, "ZipCentralDirectoryFileEntry.internalFileAttributes");
+		builder.externalFileAttributes = IoUtils.readInt(buffer, "ZipCentralDirectoryFileEntry.externalFileAttributes");
 		builder.relativeOffsetOfLocalHeader =
-				IoUtils.readInt(inputStream, "ZipCentralDirectoryFileEntry.relativeOffsetOfLocalHeader");
+				IoUtils.readIntAsLong(buffer, "ZipCentralDirectoryFileEntry.relativeOffsetOfLocalHeader");
 
-		builder.fileNameBytes = IoUtils.readBytes(inputStream, fileNameLength, "ZipCentralDirectoryFileEntry.fileName");
-		builder.extraFieldBytes =
-				IoUtils.readBytes(inputStream, extraFieldLength, "ZipCentralDirectoryFileEntry.extraField");
-		builder.commentBytes = IoUtils.readBytes(inputStream, commentLength, "ZipCentralDirectoryFileEntry.comment");
+		builder.fileNameBytes = IoUtils.readBytes(buffer, fileNameLength, "ZipCentralDirectoryFileEntry.fileName");
+		// this will also extract any zip64 extra field so the real sizes and offset are available
+		builder.setExtraFieldBytes(
+				IoUtils.readBytes(buffer, extraFieldLength, "ZipCentralDirectoryFileEntry.extraField"));
+		builder.commentBytes = IoUtils.readBytes(buffer, commentLength, "ZipCentralDirectoryFileEntry.comment");
 
 		return builder.build();
 	}
@@ -304,10 +332,28 @@ public class ZipCentralDirectoryFileEntry {
 		return externalFileAttributes;
 	}
 
+	/**
+	 * Get the 32-bit relative offset of the local file-header. This may return 0xFFFFFFFF to indicate that there is a
+	 * {@link Zip64ExtraField} in the {@link #getExtraFieldBytes()} that has the real offset. See
+	 * {@link #getZip64RelativeOffsetOfLocalHeader()}.
+	 */
 	public long getRelativeOffsetOfLocalHeader() {
 		return relativeOffsetOfLocalHeader;
 	}
 
+	/**
+	 * Get the relative offset of the local file-header as encoded in the {@link Zip64ExtraField} if the 32-bit offset
+	 * is 0xFFFFFFFF. If there is no extra field then the value of the {@link #getRelativeOffsetOfLocalHeader()} is
+	 * returned.
+	 */
+	public long getZip64RelativeOffsetOfLocalHeader() {
+		if (zip64ExtraField == null || relativeOffsetOfLocalHeader < IoUtils.MAX_UNSIGNED_INT_VALUE) {
+			return relativeOffsetOfLocalHeader;
+		} else {
+			return zip64ExtraField.getOffset();
+		}
+	}
+
 	public byte[] getFileNameBytes() {
 		return fileNameBytes;
 	}
@@ -448,6 +494,9 @@ public class ZipCentralDirectoryFileEntry {
 							diskNumberStart);
 					uncompressedSize = IoUtils.MAX_UNSIGNED_INT_VALUE;
 					compressedSize = IoUtils.MAX_UNSIGNED_INT_VALUE;
+					if (relativeOffsetOfLocalHeader >= IoUtils.MAX_UNSIGNED_INT_VALUE) {
+						relativeOffsetOfLocalHeader = IoUtils.MAX_UNSIGNED_INT_VALUE;
+					}
 				}
 			}
 
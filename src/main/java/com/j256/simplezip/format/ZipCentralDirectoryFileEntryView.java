@@ -0,0 +1,367 @@
+package com.j256.simplezip.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.j256.simplezip.IoUtils;
+import com.j256.simplezip.format.extra.Zip64ExtraField;
+
+/**
+ * Flyweight view of a central-directory file-entry which reads the fields directly from a buffer without copying them.
+ * This is an alternative to {@link ZipCentralDirectoryFileEntry} which allocates a builder and copies the file-name,
+ * extra, and comment bytes for every record. A view can be pointed at another record with
+ * {@link #wrap(ByteBuffer, int)} so one instance can be used to walk a whole central-directory.
+ *
+ * <p>
+ * NOTE: The buffer must be in little-endian order and must not be changed while the view is pointing at it.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ZipCentralDirectoryFileEntryView {
+
+	private static final int EXPECTED_SIGNATURE = 0x2014b50;
+	/** size of the entry including the signature but not including the file-name, extra, and comment */
+	public static final int FIXED_SIZE = 4 + ZipCentralDirectoryFileEntry.MINIMUM_READ_SIZE;
+
+	private ByteBuffer buffer;
+	private int offset;
+	private Zip64ExtraField zip64ExtraField;
+	private boolean zip64ExtraFieldChecked;
+
+	/**
+	 * Create a view that needs to be pointed at a record with {@link #wrap(ByteBuffer, int)}.
+	 */
+	public ZipCentralDirectoryFileEntryView() {
+		// for wrap later
+	}
+
+	/**
+	 * Create a view of the record at the offset in the buffer.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If there is not a complete record at the offset.
+	 */
+	public ZipCentralDirectoryFileEntryView(ByteBuffer buffer, int offset) {
+		if (!wrap(buffer, offset)) {
+			throw new IllegalArgumentException("No central-directory file-entry at offset " + offset);
+		}
+	}
+
+	/**
+	 * Return an iterator over the central-directory entries in the buffer which starts at index 0. The same view
+	 * instance is returned from each call to {@link Iterator#next()} so it must not be held onto between calls.
+	 */
+	public static Iterator<ZipCentralDirectoryFileEntryView> iterator(ByteBuffer directoryBuffer) {
+		return new ViewIterator(directoryBuffer);
+	}
+
+	/**
+	 * Point this view at the record at the offset in the buffer.
+	 *
+	 * @return True if there is a complete record at the offset otherwise false.
+	 */
+	public boolean wrap(ByteBuffer buffer, int offset) {
+		if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+			throw new IllegalArgumentException("Buffer must be in little-endian order");
+		}
+		this.zip64ExtraField = null;
+		this.zip64ExtraFieldChecked = false;
+		if (offset < 0 || buffer.limit() - offset < FIXED_SIZE || buffer.getInt(offset) != EXPECTED_SIGNATURE) {
+			this.buffer = null;
+			return false;
+		}
+		this.buffer = buffer;
+		this.offset = offset;
+		if (buffer.limit() - offset < getRecordSize()) {
+			this.buffer = null;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the size of the record in the buffer including the file-name, extra, and comment bytes.
+	 */
+	public int getRecordSize() {
+		return FIXED_SIZE + getFileNameLength() + getExtraFieldLength() + getCommentLength();
+	}
+
+	/**
+	 * Return the offset of the record in the buffer.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getVersionMade() {
+		return readShort(4);
+	}
+
+	public int getVersionNeeded() {
+		return readShort(6);
+	}
+
+	public int getGeneralPurposeFlags() {
+		return readShort(8);
+	}
+
+	/**
+	 * Return whether the entry has this flag.
+	 */
+	public boolean hasFlag(GeneralPurposeFlag flag) {
+		return ((getGeneralPurposeFlags() & flag.getValue()) == flag.getValue());
+	}
+
+	public int getCompressionMethod() {
+		return readShort(10);
+	}
+
+	public int getLastModifiedTime() {
+		return readShort(12);
+	}
+
+	public int getLastModifiedDate() {
+		return readShort(14);
+	}
+
+	public long getCrc32() {
+		return readIntAsLong(16);
+	}
+
+	/**
+	 * Get the 32-bit size of the compressed (encoded) bytes. See
+	 * {@link ZipCentralDirectoryFileEntry#getCompressedSize()}.
+	 */
+	public long getCompressedSize() {
+		return readIntAsLong(20);
+	}
+
+	/**
+	 * Get the size of the compressed (encoded) bytes from the {@link Zip64ExtraField} if there is one otherwise the
+	 * value of the {@link #getCompressedSize()}.
+	 */
+	public long getZip64CompressedSize() {
+		Zip64ExtraField zip64 = getZip64ExtraField();
+		if (zip64 == null) {
+			return getCompressedSize();
+		} else {
+			return zip64.getCompressedSize();
+		}
+	}
+
+	/**
+	 * Get the 32-bit size of the uncompressed bytes. See {@link ZipCentralDirectoryFileEntry#getUncompressedSize()}.
+	 */
+	public long getUncompressedSize() {
+		return readIntAsLong(24);
+	}
+
+	/**
+	 * Get the size of the uncompressed bytes from the {@link Zip64ExtraField} if there is one otherwise the value of
+	 * the {@link #getUncompressedSize()}.
+	 */
+	public long getZip64UncompressedSize() {
+		Zip64ExtraField zip64 = getZip64ExtraField();
+		if (zip64 == null) {
+			return getUncompressedSize();
+		} else {
+			return zip64.getUncompressedSize();
+		}
+	}
+
+	public int getFileNameLength() {
+		return readShort(28);
+	}
+
+	public int getExtraFieldLength() {
+		return readShort(30);
+	}
+
+	public int getCommentLength() {
+		return readShort(32);
+	}
+
+	public int getDiskNumberStart() {
+		return readShort(34);
+	}
+
+	public int getInternalFileAttributes() {
+		return readShort(36);
+	}
+
+	public int getExternalFileAttributes() {
+		return buffer.getInt(offset + 38);
+	}
+
+	/**
+	 * Get the 32-bit relative offset of the local file-header. See
+	 * {@link ZipCentralDirectoryFileEntry#getRelativeOffsetOfLocalHeader()}.
+	 */
+	public long getRelativeOffsetOfLocalHeader() {
+		return readIntAsLong(42);
+	}
+
+	/**
+	 * Get the relative offset of the local file-header from the {@link Zip64ExtraField} if the 32-bit offset is
+	 * 0xFFFFFFFF otherwise the value of the {@link #getRelativeOffsetOfLocalHeader()}.
+	 */
+	public long getZip64RelativeOffsetOfLocalHeader() {
+		long relativeOffset = getRelativeOffsetOfLocalHeader();
+		if (relativeOffset < IoUtils.MAX_UNSIGNED_INT_VALUE) {
+			return relativeOffset;
+		}
+		Zip64ExtraField zip64 = getZip64ExtraField();
+		if (zip64 == null) {
+			return relativeOffset;
+		} else {
+			return zip64.getOffset();
+		}
+	}
+
+	/**
+	 * Return a slice of the buffer with the file-name bytes.
+	 */
+	public ByteBuffer getFileNameBytes() {
+		return slice(FIXED_SIZE, getFileNameLength());
+	}
+
+	/**
+	 * Return the file-name as a string. This allocates a new string.
+	 */
+	public String getFileName() {
+		byte[] bytes = new byte[getFileNameLength()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + FIXED_SIZE + i);
+		}
+		return new String(bytes);
+	}
+
+	/**
+	 * Return true if the file-name bytes are equal to the argument without making a copy.
+	 */
+	public boolean fileNameEquals(byte[] fileNameBytes) {
+		int length = getFileNameLength();
+		if (length != fileNameBytes.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(offset + FIXED_SIZE + i) != fileNameBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return a slice of the buffer with the extra-field bytes.
+	 */
+	public ByteBuffer getExtraFieldBytes() {
+		return slice(FIXED_SIZE + getFileNameLength(), getExtraFieldLength());
+	}
+
+	/**
+	 * Return a slice of the buffer with the comment bytes.
+	 */
+	public ByteBuffer getCommentBytes() {
+		return slice(FIXED_SIZE + getFileNameLength() + getExtraFieldLength(), getCommentLength());
+	}
+
+	/**
+	 * Return the Zip64 extra-field from the extra bytes or null if none. This is only parsed the first time it is
+	 * called after the view is pointed at a record.
+	 */
+	public Zip64ExtraField getZip64ExtraField() {
+		if (!zip64ExtraFieldChecked) {
+			zip64ExtraField = findZip64ExtraField(buffer, offset + FIXED_SIZE + getFileNameLength(),
+					getExtraFieldLength());
+			zip64ExtraFieldChecked = true;
+		}
+		return zip64ExtraField;
+	}
+
+	/**
+	 * Copy the record into a new {@link ZipCentralDirectoryFileEntry}.
+	 */
+	public ZipCentralDirectoryFileEntry toEntry() throws IOException {
+		ByteBuffer entryBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		entryBuffer.position(offset);
+		return ZipCentralDirectoryFileEntry.read(entryBuffer);
+	}
+
+	@Override
+	public String toString() {
+		return "ZipCentralDirectoryFileEntryView [fileName=" + getFileName() + ", method=" + getCompressionMethod()
+				+ ", compSize=" + getZip64CompressedSize() + ", uncompSize=" + getZip64UncompressedSize() + "]";
+	}
+
+	/**
+	 * Look in the extra bytes in the buffer for a Zip64 extra-field.
+	 */
+	static Zip64ExtraField findZip64ExtraField(ByteBuffer buffer, int extraOffset, int extraLength) {
+		int index = extraOffset;
+		int end = extraOffset + extraLength;
+		while (end - index >= 4) {
+			int id = (buffer.getShort(index) & 0xFFFF);
+			int size = (buffer.getShort(index + 2) & 0xFFFF);
+			index += 4;
+			if (id == Zip64ExtraField.EXPECTED_ID && size == Zip64ExtraField.EXTRA_SIZE && end - index >= size) {
+				return new Zip64ExtraField(buffer.getLong(index), buffer.getLong(index + 8),
+						buffer.getLong(index + 16), buffer.getInt(index + 24));
+			}
+			index += size;
+		}
+		return null;
+	}
+
+	private int readShort(int fieldOffset) {
+		return (buffer.getShort(offset + fieldOffset) & 0xFFFF);
+	}
+
+	private long readIntAsLong(int fieldOffset) {
+		return (buffer.getInt(offset + fieldOffset) & 0xFFFFFFFFL);
+	}
+
+	private ByteBuffer slice(int fieldOffset, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(offset + fieldOffset + length);
+		slice.position(offset + fieldOffset);
+		return slice.slice();
+	}
+
+	/**
+	 * Iterator which walks the entries in a central-directory buffer reusing a single view.
+	 */
+	private static class ViewIterator implements Iterator<ZipCentralDirectoryFileEntryView> {
+
+		private final ByteBuffer directoryBuffer;
+		private final ZipCentralDirectoryFileEntryView view = new ZipCentralDirectoryFileEntryView();
+		private int nextOffset;
+		private boolean nextValid;
+
+		public ViewIterator(ByteBuffer directoryBuffer) {
+			this.directoryBuffer = directoryBuffer;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!nextValid) {
+				nextValid = view.wrap(directoryBuffer, nextOffset);
+			}
+			return nextValid;
+		}
+
+		@Override
+		public ZipCentralDirectoryFileEntryView next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			nextOffset += view.getRecordSize();
+			nextValid = false;
+			return view;
+		}
+	}
+}
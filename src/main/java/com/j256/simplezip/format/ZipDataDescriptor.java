@@ -2,6 +2,7 @@ package com.j256.simplezip.format;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import com.j256.simplezip.IoUtils;
 import com.j256.simplezip.RewindableInputStream;
@@ -55,20 +56,27 @@ public class ZipDataDescriptor {
 		 * next 4 bytes to see if that is also the same CRC value if not then we sort of throw up our hands and assume
 		 * that the first 4 bytes is the CRC without a signature and pray.
 		 */
-		int first = IoUtils.readInt(inputStream, "ZipDataDescriptor.signature-or-crc32");
+		ByteBuffer buffer =
+				IoUtils.readFully(inputStream, IoUtils.getRecordBuffer(), 4, "ZipDataDescriptor.signature-or-crc32");
+		int first = buffer.getInt(0);
 		if (first == OPTIONAL_EXPECTED_SIGNATURE) {
-			builder.crc32 = IoUtils.readIntAsLong(inputStream, "ZipDataDescriptor.crc32");
+			buffer = IoUtils.readFully(inputStream, buffer, 4, "ZipDataDescriptor.crc32");
+			builder.crc32 = (buffer.getInt(4) & 0xFFFFFFFFL);
 		} else {
 			// guess that we have crc, compressed-size, uncompressed-size with the crc matching the signature
-			builder.crc32 = first;
+			builder.crc32 = (first & 0xFFFFFFFFL);
 		}
 
+		// read the sizes in bulk and then decode them from the buffer
+		int sizesStart = buffer.position();
 		if (compressedSize >= IoUtils.MAX_UNSIGNED_INT_VALUE || uncompressedSize >= IoUtils.MAX_UNSIGNED_INT_VALUE) {
-			builder.compressedSize = IoUtils.readLong(inputStream, "ZipDataDescriptor.compressedSize");
-			builder.uncompressedSize = IoUtils.readLong(inputStream, "ZipDataDescriptor.uncompressedSize");
+			buffer = IoUtils.readFully(inputStream, buffer, 16, "ZipDataDescriptor.sizes");
+			builder.compressedSize = buffer.getLong(sizesStart);
+			builder.uncompressedSize = buffer.getLong(sizesStart + 8);
 		} else {
-			builder.compressedSize = IoUtils.readInt(inputStream, "ZipDataDescriptor.compressedSize");
-			builder.uncompressedSize = IoUtils.readInt(inputStream, "ZipDataDescriptor.uncompressedSize");
+			buffer = IoUtils.readFully(inputStream, buffer, 8, "ZipDataDescriptor.sizes");
+			builder.compressedSize = (buffer.getInt(sizesStart) & 0xFFFFFFFFL);
+			builder.uncompressedSize = (buffer.getInt(sizesStart + 4) & 0xFFFFFFFFL);
 		}
 
 		return builder.build();
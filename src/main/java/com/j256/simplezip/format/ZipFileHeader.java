@@ -5,6 +5,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -28,6 +29,8 @@ import com.j256.simplezip.format.extra.Zip64ExtraField;
 public class ZipFileHeader {
 
 	private static int EXPECTED_SIGNATURE = 0x4034b50;
+	/** offset of the file-name length in the record which is followed by the extra length */
+	private static final int FILE_NAME_LENGTH_OFFSET = 26;
 
 	private final int versionNeeded;
 	private final int generalPurposeFlags;
@@ -71,25 +74,49 @@ public class ZipFileHeader {
 		/*
 		 * When reading a file-header we aren't sure if this is a file-header or the start of the central directory.
 		 */
-		int first = IoUtils.readInt(inputStream, "ZipFileHeader.signature");
-		if (first != EXPECTED_SIGNATURE) {
+		ByteBuffer buffer = IoUtils.readFully(inputStream, IoUtils.getRecordBuffer(), 4, "ZipFileHeader.signature");
+		if (buffer.getInt(0) != EXPECTED_SIGNATURE) {
 			inputStream.rewind(4);
 			return null;
 		}
 
+		// read the rest of the record in bulk and then decode it from the buffer
+		buffer = IoUtils.readFully(inputStream, buffer, ZipFileHeaderView.FIXED_SIZE - 4, "ZipFileHeader.fixed");
+		int variableLength = (buffer.getShort(FILE_NAME_LENGTH_OFFSET) & 0xFFFF)
+				+ (buffer.getShort(FILE_NAME_LENGTH_OFFSET + 2) & 0xFFFF);
+		buffer = IoUtils.readFully(inputStream, buffer, variableLength, "ZipFileHeader.fileNameAndExtra");
+		buffer.flip();
+		return read(buffer);
+	}
+
+	/**
+	 * Read from a little-endian buffer starting at its current position. This is used when the bytes of the Zip-file
+	 * have been memory-mapped.
+	 * 
+	 * @return The header or null if the signature did not match in which case the position is not changed.
+	 */
+	public static ZipFileHeader read(ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		int first = IoUtils.readInt(buffer, "ZipFileHeader.signature");
+		if (first != EXPECTED_SIGNATURE) {
+			buffer.position(start);
+			return null;
+		}
+
 		Builder builder = new ZipFileHeader.Builder();
-		builder.versionNeeded = IoUtils.readShort(inputStream, "ZipFileHeader.versionNeeded");
-		builder.generalPurposeFlags = IoUtils.readShort(inputStream, "ZipFileHeader.generalPurposeFlags");
-		builder.compressionMethod = IoUtils.readShort(inputStream, "ZipFileHeader.compressionMethod");
-		builder.lastModifiedTime = IoUtils.readShort(inputStream, "ZipFileHeader.lastModifiedTime");
-		builder.lastModifiedDate = IoUtils.readShort(inputStream, "ZipFileHeader.lastModifiedDate");
-		builder.crc32 = IoUtils.readIntAsLong(inputStream, "ZipFileHeader.crc32");
-		builder.compressedSize = IoUtils.readInt(inputStream, "ZipFileHeader.compressedSize");
-		builder.uncompressedSize = IoUtils.readInt(inputStream, "ZipFileHeader.uncompressedSize");
-		int fileNameLength = IoUtils.readShort(inputStream, "ZipFileHeader.fileNameLength");
-		int extraLength = IoUtils.readShort(inputStream, "ZipFileHeader.extraLength");
-		builder.fileNameBytes = IoUtils.readBytes(inputStream, fileNameLength, "ZipFileHeader.fileName");
-		builder.extraFieldBytes = IoUtils.readBytes(inputStream, extraLength, "ZipFileHeader.extra");
+		builder.versionNeeded = IoUtils.readShort(buffer, "ZipFileHeader.versionNeeded");
+		builder.generalPurposeFlags = IoUtils.readShort(buffer, "ZipFileHeader.generalPurposeFlags");
+		builder.compressionMethod = IoUtils.readShort(buffer, "ZipFileHeader.compressionMethod");
+		builder.lastModifiedTime = IoUtils.readShort(buffer, "ZipFileHeader.lastModifiedTime");
+		builder.lastModifiedDate = IoUtils.readShort(buffer, "ZipFileHeader.lastModifiedDate");
+		builder.crc32 = IoUtils.readIntAsLong(buffer, "ZipFileHeader.crc32");
+		builder.compressedSize = IoUtils.readIntAsLong(buffer, "ZipFileHeader.compressedSize");
+		builder.uncompressedSize = IoUtils.readIntAsLong(buffer, "ZipFileHeader.uncompressedSize");
+		int fileNameLength = IoUtils.readShort(buffer, "ZipFileHeader.fileNameLength");
+		int extraLength = IoUtils.readShort(buffer, "ZipFileHeader.extraLength");
+		builder.fileNameBytes = IoUtils.readBytes(buffer, fileNameLength, "ZipFileHeader.fileName");
+		// this will also extract any zip64 extra field so the real sizes are available
+		builder.setExtraFieldBytes(IoUtils.readBytes(buffer, extraLength, "ZipFileHeader.extra"));
 		return builder.build();
 	}
 
@@ -0,0 +1,209 @@
+package com.j256.simplezip.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.j256.simplezip.format.extra.Zip64ExtraField;
+
+/**
+ * Flyweight view of a file-header which reads the fields directly from a buffer without copying them. This is an
+ * alternative to {@link ZipFileHeader} which allocates a builder and copies the file-name and extra bytes for every
+ * record. A view can be pointed at another record with {@link #wrap(ByteBuffer, int)}.
+ *
+ * <p>
+ * NOTE: The buffer must be in little-endian order and must not be changed while the view is pointing at it. Only the
+ * fixed portion of the header needs to be in the buffer to use the fixed field getters.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ZipFileHeaderView {
+
+	private static final int EXPECTED_SIGNATURE = 0x4034b50;
+	/** size of the header including the signature but not including the file-name and extra bytes */
+	public static final int FIXED_SIZE = 4 + 5 * 2 + 3 * 4 + 2 * 2;
+
+	private ByteBuffer buffer;
+	private int offset;
+	private Zip64ExtraField zip64ExtraField;
+	private boolean zip64ExtraFieldChecked;
+
+	/**
+	 * Create a view that needs to be pointed at a record with {@link #wrap(ByteBuffer, int)}.
+	 */
+	public ZipFileHeaderView() {
+		// for wrap later
+	}
+
+	/**
+	 * Create a view of the record at the offset in the buffer.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If there is not a file-header at the offset.
+	 */
+	public ZipFileHeaderView(ByteBuffer buffer, int offset) {
+		if (!wrap(buffer, offset)) {
+			throw new IllegalArgumentException("No file-header at offset " + offset);
+		}
+	}
+
+	/**
+	 * Point this view at the record at the offset in the buffer.
+	 *
+	 * @return True if there is the fixed portion of a file-header at the offset otherwise false.
+	 */
+	public boolean wrap(ByteBuffer buffer, int offset) {
+		if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+			throw new IllegalArgumentException("Buffer must be in little-endian order");
+		}
+		this.zip64ExtraField = null;
+		this.zip64ExtraFieldChecked = false;
+		if (offset < 0 || buffer.limit() - offset < FIXED_SIZE || buffer.getInt(offset) != EXPECTED_SIGNATURE) {
+			this.buffer = null;
+			return false;
+		}
+		this.buffer = buffer;
+		this.offset = offset;
+		return true;
+	}
+
+	/**
+	 * Return the size of the record including the file-name and extra bytes. The file data starts right after this.
+	 */
+	public int getRecordSize() {
+		return FIXED_SIZE + getFileNameLength() + getExtraFieldLength();
+	}
+
+	public int getVersionNeeded() {
+		return readShort(4);
+	}
+
+	public int getGeneralPurposeFlags() {
+		return readShort(6);
+	}
+
+	/**
+	 * Return whether the header has this flag.
+	 */
+	public boolean hasFlag(GeneralPurposeFlag flag) {
+		return ((getGeneralPurposeFlags() & flag.getValue()) == flag.getValue());
+	}
+
+	public int getCompressionMethod() {
+		return readShort(8);
+	}
+
+	public int getLastModifiedTime() {
+		return readShort(10);
+	}
+
+	public int getLastModifiedDate() {
+		return readShort(12);
+	}
+
+	public long getCrc32() {
+		return readIntAsLong(14);
+	}
+
+	public long getCompressedSize() {
+		return readIntAsLong(18);
+	}
+
+	public long getUncompressedSize() {
+		return readIntAsLong(22);
+	}
+
+	public int getFileNameLength() {
+		return readShort(26);
+	}
+
+	public int getExtraFieldLength() {
+		return readShort(28);
+	}
+
+	/**
+	 * Return a slice of the buffer with the file-name bytes.
+	 */
+	public ByteBuffer getFileNameBytes() {
+		return slice(FIXED_SIZE, getFileNameLength());
+	}
+
+	/**
+	 * Return the file-name as a string. This allocates a new string.
+	 */
+	public String getFileName() {
+		byte[] bytes = new byte[getFileNameLength()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + FIXED_SIZE + i);
+		}
+		return new String(bytes);
+	}
+
+	/**
+	 * Return a slice of the buffer with the extra-field bytes.
+	 */
+	public ByteBuffer getExtraFieldBytes() {
+		return slice(FIXED_SIZE + getFileNameLength(), getExtraFieldLength());
+	}
+
+	/**
+	 * Return the Zip64 extra-field from the extra bytes or null if none. This is only parsed the first time it is
+	 * called after the view is pointed at a record.
+	 */
+	public Zip64ExtraField getZip64ExtraField() {
+		if (!zip64ExtraFieldChecked) {
+			zip64ExtraField = ZipCentralDirectoryFileEntryView.findZip64ExtraField(buffer,
+					offset + FIXED_SIZE + getFileNameLength(), getExtraFieldLength());
+			zip64ExtraFieldChecked = true;
+		}
+		return zip64ExtraField;
+	}
+
+	/**
+	 * Return true if the extra bytes contain a Zip64 extra-field of any size. Unlike {@link #getZip64ExtraField()},
+	 * this also finds the shorter fields that only have the sizes which some writers put in the file-header. If there
+	 * is one then the sizes in the data-descriptor are 8 bytes each, see APPNOTE 4.3.9.2.
+	 */
+	public boolean hasZip64ExtraField() {
+		int index = offset + FIXED_SIZE + getFileNameLength();
+		int end = index + getExtraFieldLength();
+		while (end - index >= 4) {
+			if ((buffer.getShort(index) & 0xFFFF) == Zip64ExtraField.EXPECTED_ID) {
+				return true;
+			}
+			index += 4 + (buffer.getShort(index + 2) & 0xFFFF);
+		}
+		return false;
+	}
+
+	/**
+	 * Copy the record into a new {@link ZipFileHeader}.
+	 */
+	public ZipFileHeader toHeader() throws IOException {
+		ByteBuffer headerBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		headerBuffer.position(offset);
+		return ZipFileHeader.read(headerBuffer);
+	}
+
+	@Override
+	public String toString() {
+		return "ZipFileHeaderView [fileName=" + getFileName() + ", method=" + getCompressionMethod() + ", compSize="
+				+ getCompressedSize() + ", uncompSize=" + getUncompressedSize() + "]";
+	}
+
+	private int readShort(int fieldOffset) {
+		return (buffer.getShort(offset + fieldOffset) & 0xFFFF);
+	}
+
+	private long readIntAsLong(int fieldOffset) {
+		return (buffer.getInt(offset + fieldOffset) & 0xFFFFFFFFL);
+	}
+
+	private ByteBuffer slice(int fieldOffset, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(offset + fieldOffset + length);
+		slice.position(offset + fieldOffset);
+		return slice.slice();
+	}
+}
@@ -0,0 +1,54 @@
+package com.j256.simplezip.codec;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Inflate and deflate methods that work on {@link ByteBuffer}s so the data can come from or go to NIO channels and
+ * memory-mapped files.
+ *
+ * <p>
+ * This is the Java 11 version from the multi-release jar which passes the buffers directly to the {@link ByteBuffer}
+ * methods on {@link Inflater} and {@link Deflater} so direct buffers are not copied.
+ * </p>
+ *
+ * @author graywatson
+ */
+public class ByteBufferCodecUtils {
+
+	/**
+	 * Return true if the buffers are passed directly to the inflater and deflater without being copied through byte
+	 * arrays.
+	 */
+	public static boolean isCopyFree() {
+		return true;
+	}
+
+	/**
+	 * Inflate bytes from the input buffer into the output buffer. The position of the input buffer is advanced by the
+	 * number of bytes consumed by the inflater and the position of the output buffer by the number of bytes inflated.
+	 * Any bytes in the input buffer that are not consumed need to be passed in again with the next call.
+	 *
+	 * @return The number of bytes inflated into the output buffer.
+	 */
+	public static int inflate(Inflater inflater, ByteBuffer input, ByteBuffer output) throws DataFormatException {
+		inflater.setInput(input);
+		return inflater.inflate(output);
+	}
+
+	/**
+	 * Deflate bytes from the input buffer into the output buffer. The position of the input buffer is advanced by the
+	 * number of bytes consumed by the deflater and the position of the output buffer by the number of bytes deflated.
+	 * Any bytes in the input buffer that are not consumed need to be passed in again with the next call.
+	 *
+	 * @param flush
+	 *            Flush mode such as {@link Deflater#NO_FLUSH}.
+	 * @return The number of bytes deflated into the output buffer.
+	 */
+	public static int deflate(Deflater deflater, ByteBuffer input, ByteBuffer output, int flush) {
+		deflater.setInput(input);
+		return deflater.deflate(output, flush);
+	}
+}
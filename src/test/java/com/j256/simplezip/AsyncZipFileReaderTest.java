@@ -0,0 +1,173 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class AsyncZipFileReaderTest {
+
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void beforeClass() {
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testStuff() throws Exception {
+		byte[] bytes1 = new byte[] { 1, 2, 3 };
+		byte[] bytes2 = createBytes(10000);
+		File file = writeZip(bytes1, bytes2, ZipCentralDirectoryEndInfo.builder().withComment("a comment").build());
+
+		try (AsyncZipFileReader reader = AsyncZipFileReader.open(file.toPath(), executor).get()) {
+			assertNull(reader.getZip64DirectoryEnd());
+			assertEquals("a comment", reader.getDirectoryEnd().getComment());
+			List<ZipCentralDirectoryFileEntry> entries = reader.getDirectoryFileEntries();
+			assertEquals(2, entries.size());
+
+			ZipCentralDirectoryFileEntry entry = reader.findDirectoryFileEntry("deflated.txt");
+			assertNotNull(entry);
+			assertEquals("deflated.txt", reader.readFileHeader(entry).get().getFileName());
+			assertArrayEquals(bytes2, reader.readFileDataAll(entry).get());
+			assertEquals(entry.getCompressedSize(), reader.readRawFileDataAll(entry).get().length);
+
+			entry = reader.findDirectoryFileEntry("stored.txt");
+			assertNotNull(entry);
+			assertArrayEquals(bytes1, reader.readFileDataAll(entry).get());
+			assertArrayEquals(bytes1, reader.readRawFileDataAll(entry).get());
+
+			assertNull(reader.findDirectoryFileEntry("unknown"));
+		}
+	}
+
+	@Test
+	public void testZip64() throws Exception {
+		byte[] bytes1 = new byte[] { 1, 2, 3 };
+		byte[] bytes2 = createBytes(1000);
+		File file = writeZip(bytes1, bytes2, ZipCentralDirectoryEndInfo.builder().withVersionMade(1221).build());
+
+		try (AsyncZipFileReader reader = AsyncZipFileReader.open(file.toPath(), executor).get()) {
+			assertNotNull(reader.getZip64DirectoryEnd());
+			assertEquals(2, reader.getDirectoryFileEntries().size());
+			assertArrayEquals(bytes2, reader.readFileDataAll(reader.findDirectoryFileEntry("deflated.txt")).get());
+			assertArrayEquals(bytes1, reader.readFileDataAll(reader.findDirectoryFileEntry("stored.txt")).get());
+		}
+	}
+
+	@Test
+	public void testManyArchives() throws Exception {
+		int numArchives = 50;
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < numArchives; i++) {
+			files.add(writeZip(new byte[] { (byte) i }, createBytes(1000 + i), null));
+		}
+
+		// start all of the reads at the same time on the small pool
+		List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+		for (File file : files) {
+			futures.add(AsyncZipFileReader.open(file.toPath(), executor)
+					.thenCompose(new Function<AsyncZipFileReader, CompletableFuture<byte[]>>() {
+						@Override
+						public CompletableFuture<byte[]> apply(final AsyncZipFileReader reader) {
+							try {
+								return reader.readFileDataAll(reader.findDirectoryFileEntry("deflated.txt"))
+										.thenApply(new Function<byte[], byte[]>() {
+											@Override
+											public byte[] apply(byte[] bytes) {
+												try {
+													reader.close();
+												} catch (IOException ioe) {
+													throw new RuntimeException(ioe);
+												}
+												return bytes;
+											}
+										});
+							} catch (IOException ioe) {
+								throw new RuntimeException(ioe);
+							}
+						}
+					}));
+		}
+		for (int i = 0; i < numArchives; i++) {
+			assertArrayEquals(createBytes(1000 + i), futures.get(i).get());
+		}
+	}
+
+	@Test
+	public void testNotZip() throws Exception {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		try (FileOutputStream fos = new FileOutputStream(file)) {
+			fos.write(createBytes(100));
+		}
+		try {
+			AsyncZipFileReader.open(file.toPath(), executor).get();
+			fail("should have thrown");
+		} catch (ExecutionException ee) {
+			assertTrue(ee.getCause() instanceof IOException);
+		}
+	}
+
+	@Test
+	public void testMissingFile() throws Exception {
+		File file = new File(System.getProperty("java.io.tmpdir"), "doesnotexist/doesnotexist.zip");
+		try {
+			AsyncZipFileReader.open(file.toPath(), executor).get();
+			fail("should have thrown");
+		} catch (ExecutionException ee) {
+			assertTrue(ee.getCause() instanceof IOException);
+		}
+	}
+
+	private File writeZip(byte[] bytes1, byte[] bytes2, ZipCentralDirectoryEndInfo endInfo) throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(file)) {
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("stored.txt")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			output.writeFileDataAll(bytes1);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("deflated.txt").build());
+			output.writeFileDataAll(bytes2);
+			output.finishZip(endInfo);
+		}
+		return file;
+	}
+
+	private byte[] createBytes(int size) {
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i % (size % 13 + 3));
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,152 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class AsyncZipFileWriterTest {
+
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void beforeClass() {
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testStuff() throws Exception {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		byte[] bytes1 = new byte[] { 1, 2, 3 };
+		byte[] bytes2 = createBytes(10000);
+		long size;
+		try (AsyncZipFileWriter writer = new AsyncZipFileWriter(file.toPath(), executor)) {
+			CompletableFuture<Long> future1 = writer.writeFileData(ZipFileHeader.builder()
+					.withFileName("stored.txt")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build(), bytes1);
+			CompletableFuture<Long> future2 =
+					writer.writeFileData(ZipFileHeader.builder().withFileName("deflated.txt").build(), bytes2);
+			CompletableFuture<Long> finishFuture =
+					writer.finishZip(ZipCentralDirectoryEndInfo.builder().withComment("a comment").build());
+			// the operations are written in order
+			assertTrue(future1.get() < future2.get());
+			size = finishFuture.get();
+			assertTrue(future2.get() < size);
+			// calling it again does nothing
+			assertEquals(size, (long) writer.finishZip().get());
+		}
+		assertEquals(file.length(), size);
+
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file)) {
+			assertEquals("a comment", input.getDirectoryEnd().getComment());
+			assertEquals(2, input.readDirectoryFileEntries().size());
+			assertArrayEquals(bytes1, input.readFileDataAll(input.findDirectoryFileEntry("stored.txt")));
+			assertArrayEquals(bytes2, input.readFileDataAll(input.findDirectoryFileEntry("deflated.txt")));
+		}
+	}
+
+	@Test
+	public void testManyArchives() throws Exception {
+		int numArchives = 50;
+		int numEntries = 10;
+		List<File> files = new ArrayList<>();
+		List<AsyncZipFileWriter> writers = new ArrayList<>();
+		for (int i = 0; i < numArchives; i++) {
+			File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+			file.deleteOnExit();
+			files.add(file);
+			writers.add(new AsyncZipFileWriter(file.toPath(), executor));
+		}
+		// interleave the writes to all of the archives on the small pool
+		for (int j = 0; j < numEntries; j++) {
+			for (int i = 0; i < numArchives; i++) {
+				writers.get(i).writeFileData(ZipFileHeader.builder().withFileName("file" + j).build(),
+						createBytes(100 * i + j));
+			}
+		}
+		List<CompletableFuture<Long>> futures = new ArrayList<>();
+		for (AsyncZipFileWriter writer : writers) {
+			futures.add(writer.finishZip());
+		}
+		for (int i = 0; i < numArchives; i++) {
+			futures.get(i).get();
+			writers.get(i).close();
+		}
+
+		for (int i = 0; i < numArchives; i++) {
+			try (ZipFileRandomInput input = new ZipFileRandomInput(files.get(i))) {
+				assertEquals(numEntries, input.readDirectoryFileEntries().size());
+				for (int j = 0; j < numEntries; j++) {
+					assertArrayEquals(createBytes(100 * i + j),
+							input.readFileDataAll(input.findDirectoryFileEntry("file" + j)));
+				}
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testWriteAfterFinish() throws Exception {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		try (AsyncZipFileWriter writer = new AsyncZipFileWriter(file.toPath(), executor)) {
+			writer.finishZip().get();
+			writer.writeFileData(ZipFileHeader.builder().withFileName("foo").build(), new byte[1]);
+		}
+	}
+
+	@Test
+	public void testFailurePropagates() throws Exception {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		try (AsyncZipFileWriter writer = new AsyncZipFileWriter(file.toPath(), executor)) {
+			// unknown compression method so the encoding fails
+			CompletableFuture<Long> future = writer.writeFileData(
+					ZipFileHeader.builder().withFileName("foo").withCompressionMethod(1234).build(), new byte[1]);
+			CompletableFuture<Long> finishFuture = writer.finishZip();
+			try {
+				future.get();
+				fail("should have thrown");
+			} catch (ExecutionException ee) {
+				// expected
+			}
+			try {
+				finishFuture.get();
+				fail("should have thrown");
+			} catch (ExecutionException ee) {
+				// expected
+			}
+		}
+	}
+
+	private byte[] createBytes(int size) {
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i % (size % 13 + 3));
+		}
+		return bytes;
+	}
+}
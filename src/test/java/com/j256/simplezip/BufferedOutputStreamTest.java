@@ -6,9 +6,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.junit.Test;
@@ -68,4 +71,97 @@ public class BufferedOutputStreamTest {
 		assertArrayEquals(expected.toByteArray(), baos.toByteArray());
 		bos.close();
 	}
+
+	@Test
+	public void testSmallerBufferedFileAfterLarger() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BufferedOutputStream bos = new BufferedOutputStream(baos);
+		bos.enableBuffer(Long.MAX_VALUE, 100);
+		byte[] buf1 = new byte[150];
+		new Random().nextBytes(buf1);
+		Builder headerBuilder = ZipFileHeader.builder();
+		bos.setFileHeader(headerBuilder.build());
+		// part goes to memory and the rest to the tmp file
+		bos.write(buf1, 0, 50);
+		bos.write(buf1, 50, 100);
+		bos.finishFileData(0, 0);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		headerBuilder.setCompressedSize(buf1.length);
+		headerBuilder.build().write(expected);
+		expected.write(buf1);
+		assertArrayEquals(expected.toByteArray(), baos.toByteArray());
+
+		// the memory buffer is bigger than this file's data
+		baos.reset();
+		headerBuilder = ZipFileHeader.builder();
+		bos.setFileHeader(headerBuilder.build());
+		byte[] buf2 = new byte[] { 1, 2, 3 };
+		bos.write(buf2, 0, buf2.length);
+		bos.finishFileData(0, 0);
+		expected.reset();
+		headerBuilder.setCompressedSize(buf2.length);
+		headerBuilder.build().write(expected);
+		expected.write(buf2);
+		assertArrayEquals(expected.toByteArray(), baos.toByteArray());
+		bos.close();
+	}
+
+	@Test
+	public void testCoalescedWrites() throws IOException {
+		WriteCountingOutputStream countingStream = new WriteCountingOutputStream();
+		int numFiles = 100;
+		try (ZipFileOutput output = new ZipFileOutput(countingStream)) {
+			for (int i = 0; i < numFiles; i++) {
+				output.writeFileHeader(ZipFileHeader.builder().withFileName("file" + i).build());
+				output.writeFileDataAll(new byte[] { (byte) i, 2, 3 });
+			}
+			output.finishZip();
+			// each file is written out at once and the central-directory is written in bulk
+			assertEquals(numFiles + 1, countingStream.numWrites);
+		}
+		assertEquals(numFiles + 1, countingStream.numWrites);
+		ZipFileInput input = new ZipFileInput(new ByteArrayInputStream(countingStream.baos.toByteArray()));
+		for (int i = 0; i < numFiles; i++) {
+			assertEquals("file" + i, input.readFileHeader().getFileName());
+			assertArrayEquals(new byte[] { (byte) i, 2, 3 }, input.readFileDataAll());
+		}
+		input.close();
+	}
+
+	@Test
+	public void testLargeWriteNotCopied() throws IOException {
+		WriteCountingOutputStream countingStream = new WriteCountingOutputStream();
+		BufferedOutputStream bos = new BufferedOutputStream(countingStream);
+		byte[] small = new byte[] { 1, 2, 3 };
+		bos.write(small);
+		byte[] large = new byte[1024 * 1024];
+		new Random().nextBytes(large);
+		bos.write(large);
+		assertEquals(large.length + small.length, bos.getWriteCount());
+		assertEquals(2, countingStream.numWrites);
+		bos.close();
+		byte[] bytes = countingStream.baos.toByteArray();
+		assertArrayEquals(small, Arrays.copyOf(bytes, small.length));
+		assertArrayEquals(large, Arrays.copyOfRange(bytes, small.length, bytes.length));
+	}
+
+	/**
+	 * Output stream which counts the number of writes to it.
+	 */
+	private static class WriteCountingOutputStream extends OutputStream {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		int numWrites;
+
+		@Override
+		public void write(int b) {
+			baos.write(b);
+			numWrites++;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			baos.write(buffer, offset, length);
+			numWrites++;
+		}
+	}
 }
@@ -0,0 +1,146 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.GeneralPurposeFlag;
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class Crc32UtilsTest {
+
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void beforeClass() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testCombine() {
+		byte[] bytes = randomBytes(10000);
+		long crc = 0;
+		int offset = 0;
+		for (int length : new int[] { 0, 1, 1000, 17, 8982 }) {
+			crc = Crc32Utils.combine(crc, crc(bytes, offset, length), length);
+			offset += length;
+		}
+		assertEquals(crc(bytes, 0, bytes.length), crc);
+		// combining with an empty run doesn't change anything
+		assertEquals(crc, Crc32Utils.combine(crc, 0, 0));
+	}
+
+	@Test
+	public void testBuffer() throws IOException {
+		byte[] bytes = randomBytes(100000);
+		assertEquals(crc(bytes, 0, bytes.length), Crc32Utils.calculateCrc32(bytes, 0, bytes.length, executor, 7777));
+		assertEquals(crc(bytes, 10, 1000), Crc32Utils.calculateCrc32(bytes, 10, 1000, executor, 100000));
+		assertEquals(0, Crc32Utils.calculateCrc32(bytes, 0, 0, executor, 100));
+	}
+
+	@Test
+	public void testFile() throws IOException {
+		byte[] bytes = randomBytes(300000);
+		File file = writeTmpFile(bytes);
+		try {
+			assertEquals(crc(bytes, 0, bytes.length), Crc32Utils.calculateCrc32(file, executor, 65536));
+			assertEquals(crc(bytes, 0, bytes.length), Crc32Utils.calculateCrc32(file, executor));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFileChannelMapped() throws IOException {
+		byte[] bytes = randomBytes(200000);
+		File file = writeTmpFile(bytes);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			assertEquals(crc(bytes, 0, bytes.length), Crc32Utils.calculateCrc32(channel, 0, bytes.length));
+			assertEquals(crc(bytes, 123, 4567), Crc32Utils.calculateCrc32(channel, 123, 4567));
+			assertEquals(0, Crc32Utils.calculateCrc32(channel, 0, 0));
+			// the channel position is not changed
+			assertEquals(0, channel.position());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadChunkSize() throws IOException {
+		Crc32Utils.calculateCrc32(new byte[1], 0, 1, executor, 0);
+	}
+
+	@Test
+	public void testStoredHeaderUpFront() throws IOException {
+		byte[] bytes = randomBytes(200000);
+		File file = writeTmpFile(bytes);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			// we can put the crc and size in the header before writing the data
+			ZipFileHeader header = ZipFileHeader.builder()
+					.withFileName("stored")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.withCrc32(Crc32Utils.calculateCrc32(file, executor, 50000))
+					.withCompressedSize(file.length())
+					.withUncompressedSize(file.length())
+					.build();
+			ZipFileOutput output = new ZipFileOutput(baos);
+			output.writeFileHeader(header);
+			output.writeFileData(file);
+			output.close();
+		} finally {
+			file.delete();
+		}
+
+		ZipFileInput input = new ZipFileInput(new ByteArrayInputStream(baos.toByteArray()));
+		ZipFileHeader header = input.readFileHeader();
+		assertFalse(header.hasFlag(GeneralPurposeFlag.DATA_DESCRIPTOR));
+		assertEquals(crc(bytes, 0, bytes.length), header.getCrc32());
+		assertArrayEquals(bytes, input.readFileDataAll());
+		input.close();
+	}
+
+	private File writeTmpFile(byte[] bytes) throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".t");
+		file.deleteOnExit();
+		try (FileOutputStream fos = new FileOutputStream(file);) {
+			fos.write(bytes);
+		}
+		return file;
+	}
+
+	private long crc(byte[] bytes, int offset, int length) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(bytes, offset, length);
+		return crc32.getValue();
+	}
+
+	private byte[] randomBytes(int size) {
+		Random random = new Random(size);
+		byte[] bytes = new byte[size];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+}
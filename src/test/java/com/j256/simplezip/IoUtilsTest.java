@@ -2,11 +2,15 @@ package com.j256.simplezip;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.junit.Test;
 
@@ -73,4 +77,39 @@ public class IoUtilsTest {
 		ByteArrayInputStream bais = new ByteArrayInputStream(new byte[0]);
 		assertArrayEquals(new byte[0], IoUtils.readBytes(bais, 10, "stuff"));
 	}
+
+	@Test
+	public void testReadFullyRecordBuffer() throws IOException {
+		byte[] bytes = new byte[5000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+		ByteBuffer buffer = IoUtils.getRecordBuffer();
+		assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+		buffer = IoUtils.readFully(bais, buffer, 10, "stuff");
+		assertEquals(10, buffer.position());
+		// make it grow
+		buffer = IoUtils.readFully(bais, buffer, bytes.length - 10, "stuff");
+		assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+		assertEquals(bytes.length, buffer.position());
+		for (int i = 0; i < bytes.length; i++) {
+			assertEquals(bytes[i], buffer.get(i));
+		}
+		// the grown buffer is reused by the thread
+		assertSame(buffer, IoUtils.getRecordBuffer());
+		assertEquals(0, buffer.position());
+
+		// but a huge one is not kept
+		bais = new ByteArrayInputStream(new byte[100000]);
+		ByteBuffer huge = IoUtils.readFully(bais, IoUtils.getRecordBuffer(), 100000, "stuff");
+		assertNotSame(huge, IoUtils.getRecordBuffer());
+		assertSame(buffer, IoUtils.getRecordBuffer());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testReadFullyRecordBufferEof() throws IOException {
+		ByteArrayInputStream bais = new ByteArrayInputStream(new byte[3]);
+		IoUtils.readFully(bais, IoUtils.getRecordBuffer(), 4, "stuff");
+	}
 }
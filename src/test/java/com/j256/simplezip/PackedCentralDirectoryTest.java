@@ -0,0 +1,261 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.j256.simplezip.format.Zip64CentralDirectoryEnd;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileInfo;
+
+public class PackedCentralDirectoryTest {
+
+	@Test
+	public void testWrite() throws IOException {
+		PackedCentralDirectory directory = new PackedCentralDirectory();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		for (int i = 0; i < 10; i++) {
+			ZipCentralDirectoryFileEntry entry = createEntry("file" + i, i * 100);
+			entry.write(expected);
+			directory.add(entry);
+		}
+		assertEquals(10, directory.getNumEntries());
+		assertEquals(expected.size(), directory.getSize());
+		assertArrayEquals(expected.toByteArray(), writeBytes(directory));
+	}
+
+	@Test
+	public void testAddFileInfo() throws IOException {
+		PackedCentralDirectory directory = new PackedCentralDirectory();
+		directory.add(createEntry("one", 0));
+		long address = directory.add(createEntry("two", 100));
+		directory.add(createEntry("three", 200));
+
+		// same comment length so it is patched in place
+		ZipCentralDirectoryFileInfo twoInfo = ZipCentralDirectoryFileInfo.builder()
+				.withExternalFileAttributes(0100755 << 16)
+				.withComment("")
+				.build();
+		directory.addFileInfo(address, twoInfo);
+		// comment changes the size of the entry
+		ZipCentralDirectoryFileInfo threeInfo =
+				ZipCentralDirectoryFileInfo.builder().withVersionMade(20).withComment("a comment").build();
+		assertTrue(directory.addFileInfo("three", threeInfo));
+		assertFalse(directory.addFileInfo("unknown", ZipCentralDirectoryFileInfo.builder().build()));
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		createEntry("one", 0).write(expected);
+		ZipCentralDirectoryFileEntry.Builder builder = createBuilder("two", 100);
+		builder.addFileInfo(twoInfo);
+		builder.build().write(expected);
+		builder = createBuilder("three", 200);
+		builder.addFileInfo(threeInfo);
+		builder.build().write(expected);
+		assertEquals(expected.size(), directory.getSize());
+		assertArrayEquals(expected.toByteArray(), writeBytes(directory));
+
+		// update the replaced entry again
+		assertTrue(directory.addFileInfo("three",
+				ZipCentralDirectoryFileInfo.builder().withVersionMade(20).withComment("other one").build()));
+		ByteBuffer buffer = ByteBuffer.wrap(writeBytes(directory)).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(expected.size(), buffer.limit());
+		byte[] commentBytes = new byte[9];
+		buffer.position(buffer.limit() - commentBytes.length);
+		buffer.get(commentBytes);
+		assertArrayEquals("other one".getBytes(), commentBytes);
+	}
+
+	@Test
+	public void testAddFileInfoLikeBuilder() throws IOException {
+		PackedCentralDirectory directory = new PackedCentralDirectory();
+		long bigOffset = IoUtils.MAX_UNSIGNED_INT_VALUE + 100;
+		ZipCentralDirectoryFileEntry.Builder smallBuilder = createBuilder("small", 0);
+		smallBuilder.setVersionNeeded(20);
+		directory.add(smallBuilder.build());
+		directory.add(createEntry("big", bigOffset));
+		directory.add(createEntry("disk", 100));
+
+		// version-needed of 0 is written as is unless the entry has a zip64 field
+		ZipCentralDirectoryFileInfo zeroInfo = ZipCentralDirectoryFileInfo.builder().withVersionNeeded(0).build();
+		assertTrue(directory.addFileInfo("small", zeroInfo));
+		assertTrue(directory.addFileInfo("big", zeroInfo));
+		// disk-number that needs a zip64 field
+		ZipCentralDirectoryFileInfo diskInfo =
+				ZipCentralDirectoryFileInfo.builder().withDiskNumberStart(0x12345).withComment("disk").build();
+		assertTrue(directory.addFileInfo("disk", diskInfo));
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		smallBuilder.addFileInfo(zeroInfo);
+		ZipCentralDirectoryFileEntry smallEntry = smallBuilder.build();
+		assertEquals(0, smallEntry.getVersionNeeded());
+		smallEntry.write(expected);
+		ZipCentralDirectoryFileEntry.Builder builder = createBuilder("big", bigOffset);
+		builder.addFileInfo(zeroInfo);
+		ZipCentralDirectoryFileEntry bigEntry = builder.build();
+		assertEquals(Zip64CentralDirectoryEnd.DEFAULT_VERSION_NEEDED, bigEntry.getVersionNeeded());
+		bigEntry.write(expected);
+		builder = createBuilder("disk", 100);
+		builder.addFileInfo(diskInfo);
+		ZipCentralDirectoryFileEntry diskEntry = builder.build();
+		assertEquals(0x12345, diskEntry.getZip64ExtraField().getDiskNumber());
+		diskEntry.write(expected);
+		assertEquals(expected.size(), directory.getSize());
+		assertArrayEquals(expected.toByteArray(), writeBytes(directory));
+	}
+
+	@Test
+	public void testDuplicateNames() throws IOException {
+		PackedCentralDirectory directory = new PackedCentralDirectory();
+		directory.add(createEntry("dup", 0));
+		// build the index
+		assertFalse(directory.addFileInfo("unknown", ZipCentralDirectoryFileInfo.builder().build()));
+		directory.add(createEntry("dup", 100));
+		ZipCentralDirectoryFileInfo fileInfo = ZipCentralDirectoryFileInfo.builder().withComment("last").build();
+		assertTrue(directory.addFileInfo("dup", fileInfo));
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		createEntry("dup", 0).write(expected);
+		ZipCentralDirectoryFileEntry.Builder builder = createBuilder("dup", 100);
+		builder.addFileInfo(fileInfo);
+		builder.build().write(expected);
+		assertArrayEquals(expected.toByteArray(), writeBytes(directory));
+	}
+
+	@Test
+	public void testManyEntries() throws IOException {
+		PackedCentralDirectory directory = new PackedCentralDirectory();
+		// enough entries to span multiple chunks
+		int numEntries = 30000;
+		for (int i = 0; i < numEntries; i++) {
+			directory.add(createEntry("directory/file" + i, i));
+		}
+		assertFalse(directory.addFileInfo("directory/unknown", ZipCentralDirectoryFileInfo.builder().build()));
+		// add more after the index was built so it has to grow
+		for (int i = numEntries; i < numEntries * 2; i++) {
+			directory.add(createEntry("directory/file" + i, i));
+		}
+		for (int i = 0; i < numEntries * 2; i += 997) {
+			assertTrue(directory.addFileInfo("directory/file" + i,
+					ZipCentralDirectoryFileInfo.builder().withInternalFileAttributes(i & 0xFFFF).build()));
+		}
+		assertEquals(numEntries * 2, directory.getNumEntries());
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		for (int i = 0; i < numEntries * 2; i++) {
+			ZipCentralDirectoryFileEntry.Builder builder = createBuilder("directory/file" + i, i);
+			if (i % 997 == 0) {
+				builder.addFileInfo(
+						ZipCentralDirectoryFileInfo.builder().withInternalFileAttributes(i & 0xFFFF).build());
+			}
+			builder.build().write(expected);
+		}
+		assertEquals(expected.size(), directory.getSize());
+		assertArrayEquals(expected.toByteArray(), writeBytes(directory));
+	}
+
+	@Test
+	public void testSpilling() throws IOException {
+		try (PackedCentralDirectory spilled = new PackedCentralDirectory()) {
+			spilled.enableSpilling();
+			PackedCentralDirectory inMemory = new PackedCentralDirectory();
+			// enough entries to spill multiple chunks
+			int numEntries = 40000;
+			for (int i = 0; i < numEntries; i++) {
+				ZipCentralDirectoryFileEntry entry = createEntry("directory/file" + i, i);
+				spilled.add(entry);
+				inMemory.add(entry);
+			}
+			assertTrue(spilled.getSpillSize() > 0);
+			assertTrue(spilled.getSpillSize() < spilled.getSize());
+			assertEquals(0, inMemory.getSpillSize());
+			assertArrayEquals(writeBytes(inMemory), writeBytes(spilled));
+
+			// patch spilled entries in place and with a comment that changes their size
+			for (int i = 0; i < numEntries; i += 1999) {
+				ZipCentralDirectoryFileInfo fileInfo = ZipCentralDirectoryFileInfo.builder()
+						.withInternalFileAttributes(i & 0xFFFF)
+						.withComment(i % 2 == 0 ? "" : "comment" + i)
+						.build();
+				assertTrue(spilled.addFileInfo("directory/file" + i, fileInfo));
+				assertTrue(inMemory.addFileInfo("directory/file" + i, fileInfo));
+			}
+			// patch a replaced spilled entry again
+			ZipCentralDirectoryFileInfo fileInfo =
+					ZipCentralDirectoryFileInfo.builder().withExternalFileAttributes(0100600 << 16).build();
+			assertTrue(spilled.addFileInfo("directory/file1999", fileInfo));
+			assertTrue(inMemory.addFileInfo("directory/file1999", fileInfo));
+			assertFalse(spilled.addFileInfo("directory/unknown", fileInfo));
+			assertEquals(inMemory.getSize(), spilled.getSize());
+			assertArrayEquals(writeBytes(inMemory), writeBytes(spilled));
+		}
+	}
+
+	@Test
+	public void testSpillingToChannel() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".t");
+		file.deleteOnExit();
+		try (PackedCentralDirectory spilled = new PackedCentralDirectory()) {
+			spilled.enableSpilling();
+			PackedCentralDirectory inMemory = new PackedCentralDirectory();
+			for (int i = 0; i < 40000; i++) {
+				ZipCentralDirectoryFileEntry entry = createEntry("directory/file" + i, i);
+				spilled.add(entry);
+				inMemory.add(entry);
+			}
+			assertTrue(spilled.getSpillSize() > 0);
+			byte[] prefix = "bytes before the directory".getBytes();
+			try (FileOutputStream fos = new FileOutputStream(file);
+					BufferedOutputStream bos = new BufferedOutputStream(fos);) {
+				// still in the buffer when the spill file is transferred
+				bos.write(prefix);
+				spilled.write(bos, fos.getChannel());
+				assertEquals(prefix.length + spilled.getSize(), bos.getWriteCount());
+			}
+			byte[] expected = writeBytes(inMemory);
+			byte[] fileBytes = Files.readAllBytes(file.toPath());
+			assertEquals(prefix.length + expected.length, fileBytes.length);
+			assertArrayEquals(prefix, Arrays.copyOf(fileBytes, prefix.length));
+			assertArrayEquals(expected, Arrays.copyOfRange(fileBytes, prefix.length, fileBytes.length));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSpillingAfterAdd() throws IOException {
+		try (PackedCentralDirectory directory = new PackedCentralDirectory()) {
+			directory.add(createEntry("file", 0));
+			directory.enableSpilling();
+		}
+	}
+
+	private ZipCentralDirectoryFileEntry createEntry(String fileName, long offset) {
+		return createBuilder(fileName, offset).build();
+	}
+
+	private ZipCentralDirectoryFileEntry.Builder createBuilder(String fileName, long offset) {
+		ZipCentralDirectoryFileEntry.Builder builder = ZipCentralDirectoryFileEntry.builder();
+		builder.setFileName(fileName);
+		builder.setCompressedSize(offset + 10);
+		builder.setUncompressedSize(offset + 20);
+		builder.setCrc32(offset * 31);
+		builder.setRelativeOffsetOfLocalHeader(offset);
+		return builder;
+	}
+
+	private byte[] writeBytes(PackedCentralDirectory directory) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		directory.write(baos);
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,178 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class ParallelZipFileOutputTest {
+
+	@Test
+	public void testManyEntries() throws IOException {
+		Random random = new Random(1);
+		int numEntries = 200;
+		byte[][] entryBytes = new byte[numEntries][];
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		// small max-pending and in-memory sizes to make sure we wait for entries and spill to disk
+		ParallelZipFileOutput output = new ParallelZipFileOutput(new ZipFileOutput(baos), 4, 10, 1000);
+		for (int i = 0; i < numEntries; i++) {
+			// some are big, some are small, and some are empty
+			entryBytes[i] = new byte[i % 7 == 0 ? random.nextInt(100000) : random.nextInt(100)];
+			for (int j = 0; j < entryBytes[i].length; j++) {
+				entryBytes[i][j] = (byte) random.nextInt(10);
+			}
+			ZipFileHeader.Builder builder = ZipFileHeader.builder().withFileName("file" + i);
+			if (i % 3 == 0) {
+				builder.setCompressionMethod(CompressionMethod.NONE);
+			}
+			output.submitFileData(builder.build(), entryBytes[i]);
+		}
+		output.close();
+
+		// read it back in with the jdk which checks the crc and sizes
+		ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		for (int i = 0; i < numEntries; i++) {
+			ZipEntry zipEntry = zis.getNextEntry();
+			assertNotNull(zipEntry);
+			// should be in submission order
+			assertEquals("file" + i, zipEntry.getName());
+			assertArrayEquals(entryBytes[i], readFully(zis));
+		}
+		assertNull(zis.getNextEntry());
+		zis.close();
+
+		// and with our reader which checks the central-directory
+		ZipFileInput input = new ZipFileInput(new ByteArrayInputStream(baos.toByteArray()));
+		for (int i = 0; i < numEntries; i++) {
+			ZipFileHeader header = input.readFileHeader();
+			assertEquals("file" + i, header.getFileName());
+			assertArrayEquals(entryBytes[i], input.readFileDataAll());
+		}
+		assertNull(input.readFileHeader());
+		for (int i = 0; i < numEntries; i++) {
+			ZipCentralDirectoryFileEntry entry = input.readDirectoryFileEntry();
+			assertEquals("file" + i, entry.getFileName());
+			assertEquals(entryBytes[i].length, entry.getUncompressedSize());
+		}
+		input.close();
+	}
+
+	@Test
+	public void testSubmitFile() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".t");
+		file.deleteOnExit();
+		byte[] fileBytes = new byte[] { 3, 4, 2, 1 };
+		try (FileOutputStream fos = new FileOutputStream(file);) {
+			fos.write(fileBytes);
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ParallelZipFileOutput output = new ParallelZipFileOutput(new ZipFileOutput(baos), 2);
+		output.submitFile(ZipFileHeader.builder().withFileName("file1").build(), file);
+		output.submitFile(ZipFileHeader.builder().withFileName("file2").build(), file.getPath());
+		output.close();
+		file.delete();
+
+		ZipFileInput input = new ZipFileInput(new ByteArrayInputStream(baos.toByteArray()));
+		assertEquals("file1", input.readFileHeader().getFileName());
+		assertArrayEquals(fileBytes, input.readFileDataAll());
+		assertEquals("file2", input.readFileHeader().getFileName());
+		assertArrayEquals(fileBytes, input.readFileDataAll());
+		assertNull(input.readFileHeader());
+		input.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingFile() throws IOException {
+		ParallelZipFileOutput output = new ParallelZipFileOutput(new ZipFileOutput(new ByteArrayOutputStream()), 1);
+		try {
+			File file = new File(new File(System.getProperty("java.io.tmpdir"), "doesnotexist"), "doesnotexist");
+			output.submitFile(ZipFileHeader.builder().withFileName("file").build(), file);
+			output.finishZip();
+		} finally {
+			output.close();
+		}
+	}
+
+	@Test
+	public void testCloseAfterError() throws IOException {
+		final AtomicBoolean closed = new AtomicBoolean();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+		};
+		ParallelZipFileOutput output = new ParallelZipFileOutput(new ZipFileOutput(baos), 2, 2,
+				ParallelZipFileOutput.DEFAULT_MAX_SIZE_IN_MEMORY);
+		output.submitFileData(ZipFileHeader.builder().withFileName("good").build(), new byte[] { 1, 2, 3 });
+		File file = new File(new File(System.getProperty("java.io.tmpdir"), "doesnotexist"), "doesnotexist");
+		try {
+			output.submitFile(ZipFileHeader.builder().withFileName("file").build(), file);
+			// with 2 pending the failed entry has to be written before this returns
+			output.submitFileData(ZipFileHeader.builder().withFileName("after").build(), new byte[] { 4, 5, 6 });
+			fail("Should have thrown");
+		} catch (FileNotFoundException fnfe) {
+			// expected
+		}
+		try {
+			output.close();
+			fail("Should have thrown");
+		} catch (IOException ioe) {
+			// the zip can't be finished without the failed entry
+			assertTrue(ioe.getCause() instanceof FileNotFoundException);
+		}
+		// the underlying output is closed even though finishing the zip failed
+		assertTrue(closed.get());
+		// but the zip was not finished so it doesn't look like a good zip with the entry missing
+		assertTrue(baos.size() > 0);
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		Files.write(zipFile.toPath(), baos.toByteArray());
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			fail("Should not be a readable zip");
+		} catch (ZipException ze) {
+			// expected
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSubmitAfterClose() throws IOException {
+		ParallelZipFileOutput output = new ParallelZipFileOutput(new ZipFileOutput(new ByteArrayOutputStream()), 1);
+		output.close();
+		output.submitFileData(ZipFileHeader.builder().build(), new byte[0]);
+	}
+
+	private byte[] readFully(ZipInputStream zis) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (true) {
+			int num = zis.read(buffer);
+			if (num < 0) {
+				return baos.toByteArray();
+			}
+			baos.write(buffer, 0, num);
+		}
+	}
+}
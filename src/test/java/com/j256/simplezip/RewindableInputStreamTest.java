@@ -2,10 +2,13 @@ package com.j256.simplezip;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -134,4 +137,192 @@ public class RewindableInputStreamTest {
 
 		ris.close();
 	}
+
+	@Test
+	public void testLargeReadsWrapRing() throws IOException {
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		RewindableInputStream ris = new RewindableInputStream(new ByteArrayInputStream(bytes), 10);
+
+		// read more than the ring so it is passed straight through
+		byte[] readBytes = new byte[97];
+		assertEquals(readBytes.length, ris.read(readBytes));
+		assertArrayEquals(Arrays.copyOf(bytes, readBytes.length), readBytes);
+		assertEquals(97, ris.getByteCount());
+
+		// now we can rewind the whole ring but no more
+		ris.rewind(10);
+		assertEquals(87, ris.getByteCount());
+		readBytes = new byte[7];
+		assertEquals(readBytes.length, ris.read(readBytes));
+		assertArrayEquals(Arrays.copyOfRange(bytes, 87, 94), readBytes);
+
+		// read across the rewound bytes which will stop at the end of them
+		assertEquals(3, ris.read(readBytes));
+		assertEquals(bytes[94], readBytes[0]);
+		assertEquals(bytes[96], readBytes[2]);
+
+		// small reads that wrap around the end of the ring
+		int offset = 97;
+		for (int i = 0; i < 20; i++) {
+			assertEquals(readBytes.length, ris.read(readBytes));
+			assertArrayEquals(Arrays.copyOfRange(bytes, offset, offset + readBytes.length), readBytes);
+			offset += readBytes.length;
+			ris.rewind(3);
+			offset -= 3;
+			for (int j = 0; j < 3; j++) {
+				assertEquals(bytes[offset++], (byte) ris.read());
+			}
+		}
+		assertEquals(offset, ris.getByteCount());
+		ris.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testRewindMoreThanRing() throws IOException {
+		RewindableInputStream ris = new RewindableInputStream(new ByteArrayInputStream(new byte[100]), 10);
+		assertEquals(50, ris.read(new byte[50]));
+		ris.rewind(11);
+		ris.close();
+	}
+
+	@Test
+	public void testSkip() throws IOException {
+		byte[] bytes = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+		RewindableInputStream ris = new RewindableInputStream(new ByteArrayInputStream(bytes), 10);
+		assertEquals(bytes[0], ris.read());
+		assertEquals(bytes[1], ris.read());
+		ris.rewind(1);
+		// skip the rewound byte and then one from the delegate
+		assertEquals(1, ris.skip(3));
+		assertEquals(2, ris.skip(2));
+		assertEquals(4, ris.getByteCount());
+		assertEquals(bytes[4], ris.read());
+		ris.rewind(1);
+		assertEquals(bytes[4], ris.read());
+		try {
+			// can't rewind over the skipped bytes
+			ris.rewind(2);
+			fail("should have thrown");
+		} catch (IOException ioe) {
+			// expected
+		}
+		ris.close();
+	}
+
+	@Test
+	public void testReadAhead() throws IOException {
+		byte[] bytes = new byte[1000];
+		new Random(1).nextBytes(bytes);
+		ReadCountingInputStream countingStream = new ReadCountingInputStream(bytes);
+		RewindableInputStream ris = new RewindableInputStream(countingStream, 10, 100);
+		assertEquals(bytes[0], (byte) ris.read());
+		byte[] readBytes = new byte[4];
+		assertEquals(readBytes.length, ris.read(readBytes));
+		assertArrayEquals(Arrays.copyOfRange(bytes, 1, 5), readBytes);
+		// the small reads were satisfied by a single read-ahead
+		assertEquals(1, countingStream.numReads);
+		assertEquals(5, ris.getByteCount());
+		ris.rewind(5);
+		assertEquals(bytes[0], (byte) ris.read());
+
+		// read up to the end of the read-ahead and then the full rewind is still available
+		readBytes = new byte[99];
+		assertEquals(99, ris.read(readBytes));
+		assertArrayEquals(Arrays.copyOfRange(bytes, 1, 100), readBytes);
+		assertEquals(bytes[100], (byte) ris.read());
+		assertEquals(2, countingStream.numReads);
+		ris.rewind(10);
+		assertEquals(bytes[91], (byte) ris.read());
+
+		ris.close();
+
+		// large reads are passed through
+		countingStream = new ReadCountingInputStream(bytes);
+		ris = new RewindableInputStream(countingStream, 10, 100);
+		readBytes = new byte[200];
+		assertEquals(200, ris.read(readBytes));
+		assertArrayEquals(Arrays.copyOf(bytes, 200), readBytes);
+		assertEquals(1, countingStream.numReads);
+		ris.rewind(10);
+		assertEquals(bytes[190], (byte) ris.read());
+		ris.close();
+	}
+
+	@Test
+	public void testReadAheadMatchesNoReadAhead() throws IOException {
+		byte[] bytes = new byte[100000];
+		Random random = new Random(2);
+		random.nextBytes(bytes);
+		RewindableInputStream plain = new RewindableInputStream(new ByteArrayInputStream(bytes), 64);
+		RewindableInputStream readAhead = new RewindableInputStream(new ByteArrayInputStream(bytes), 64, 1000);
+		byte[] plainBytes = new byte[2000];
+		byte[] readAheadBytes = new byte[2000];
+		long highWater = 0;
+		while (true) {
+			int action = random.nextInt(10);
+			if (action == 0) {
+				// we can only rewind back to 64 bytes before the furthest position read
+				int num = random.nextInt((int) (plain.getByteCount() - Math.max(0, highWater - 64)) + 1);
+				plain.rewind(num);
+				readAhead.rewind(num);
+			} else if (action == 1) {
+				assertEquals(plain.read(), readAhead.read());
+			} else {
+				int length = (action == 2 ? 1 + random.nextInt(plainBytes.length) : 1 + random.nextInt(20));
+				int numRead = readFully(plain, plainBytes, length);
+				assertEquals(numRead, readFully(readAhead, readAheadBytes, length));
+				if (numRead < 0) {
+					break;
+				}
+				assertArrayEquals(Arrays.copyOf(plainBytes, numRead), Arrays.copyOf(readAheadBytes, numRead));
+			}
+			assertEquals(plain.getByteCount(), readAhead.getByteCount());
+			highWater = Math.max(highWater, plain.getByteCount());
+		}
+		plain.close();
+		readAhead.close();
+	}
+
+	/**
+	 * Read until the length is read or EOF is reached.
+	 * 
+	 * @return The number of bytes read or -1 if none were read before EOF.
+	 */
+	private int readFully(InputStream inputStream, byte[] buffer, int length) throws IOException {
+		int offset = 0;
+		while (offset < length) {
+			int numRead = inputStream.read(buffer, offset, length - offset);
+			if (numRead < 0) {
+				break;
+			}
+			offset += numRead;
+		}
+		return (offset == 0 ? -1 : offset);
+	}
+
+	/**
+	 * Input stream which counts the number of reads from it.
+	 */
+	private static class ReadCountingInputStream extends ByteArrayInputStream {
+		int numReads;
+
+		public ReadCountingInputStream(byte[] bytes) {
+			super(bytes);
+		}
+
+		@Override
+		public synchronized int read() {
+			numReads++;
+			return super.read();
+		}
+
+		@Override
+		public synchronized int read(byte[] buffer, int offset, int length) {
+			numReads++;
+			return super.read(buffer, offset, length);
+		}
+	}
 }
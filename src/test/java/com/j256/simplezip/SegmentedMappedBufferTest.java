@@ -0,0 +1,80 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SegmentedMappedBufferTest {
+
+	@Test
+	public void testStuff() throws IOException {
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		File file = File.createTempFile(getClass().getSimpleName(), ".bin");
+		file.deleteOnExit();
+		Files.write(file.toPath(), bytes);
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel();) {
+			SegmentedMappedBuffer mapped = new SegmentedMappedBuffer(channel, 100, 10);
+			assertEquals(bytes.length, mapped.size());
+
+			// slice that extends into the overlap of the segment
+			ByteBuffer buffer = mapped.slice(195);
+			assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+			assertEquals(15, buffer.remaining());
+			assertEquals(bytes[195], buffer.get(0));
+			assertEquals(((bytes[199] & 0xFF) << 8) | (bytes[198] & 0xFF), buffer.getShort(3) & 0xFFFF);
+
+			// slice at the end of the file
+			buffer = mapped.slice(995);
+			assertEquals(5, buffer.remaining());
+
+			// reads cross segments in pieces
+			byte[] readBytes = new byte[50];
+			int num = mapped.read(80, readBytes, 0, readBytes.length);
+			assertEquals(30, num);
+			assertArrayEquals(Arrays.copyOfRange(bytes, 80, 110), Arrays.copyOf(readBytes, num));
+			assertEquals(-1, mapped.read(bytes.length, readBytes, 0, readBytes.length));
+
+			// streams go through all of the segments
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try (InputStream inputStream = mapped.openInputStream(50, 950)) {
+				IoUtils.copyStream(inputStream, baos);
+			}
+			assertArrayEquals(Arrays.copyOfRange(bytes, 50, 950), baos.toByteArray());
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSlicePastEnd() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".bin");
+		file.deleteOnExit();
+		Files.write(file.toPath(), new byte[10]);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel();) {
+			new SegmentedMappedBuffer(channel).slice(10);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSegmentSize() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".bin");
+		file.deleteOnExit();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel();) {
+			new SegmentedMappedBuffer(channel, 0, 10);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+
+public class ZipCentralDirectoryNameIndexTest {
+
+	@Test
+	public void testStuff() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		int numEntries = 1000;
+		for (int i = 0; i < numEntries; i++) {
+			writeEntry(baos, "dir/file" + i, i);
+		}
+		// duplicate name should not be found
+		writeEntry(baos, "dir/file10", 1234567);
+
+		ZipCentralDirectoryNameIndex index = new ZipCentralDirectoryNameIndex(ByteBuffer.wrap(baos.toByteArray()));
+		assertEquals(numEntries + 1, index.getNumEntries());
+		for (int i = 0; i < numEntries; i++) {
+			ZipCentralDirectoryFileEntry entry = index.findEntry("dir/file" + i);
+			assertNotNull(entry);
+			assertEquals("dir/file" + i, entry.getFileName());
+			assertEquals(i, entry.getRelativeOffsetOfLocalHeader());
+		}
+		assertEquals(0, index.findEntryOffset("dir/file0"));
+		assertEquals(-1, index.findEntryOffset("dir/file" + numEntries));
+		assertNull(index.findEntry("unknown"));
+		assertNull(index.findEntry(""));
+	}
+
+	@Test
+	public void testEmpty() {
+		ZipCentralDirectoryNameIndex index = new ZipCentralDirectoryNameIndex(ByteBuffer.allocate(0));
+		assertEquals(0, index.getNumEntries());
+		assertEquals(-1, index.findEntryOffset("foo"));
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		writeEntry(baos, "foo", 0);
+		writeEntry(baos, "bar", 0);
+		byte[] bytes = baos.toByteArray();
+		ZipCentralDirectoryNameIndex index =
+				new ZipCentralDirectoryNameIndex(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+		assertEquals(1, index.getNumEntries());
+		assertNotNull(index.findEntry("foo"));
+		assertNull(index.findEntry("bar"));
+	}
+
+	private void writeEntry(ByteArrayOutputStream baos, String fileName, long offset) throws IOException {
+		ZipCentralDirectoryFileEntry.Builder builder = ZipCentralDirectoryFileEntry.builder();
+		builder.setFileName(fileName);
+		builder.setRelativeOffsetOfLocalHeader(offset);
+		builder.build().write(baos);
+	}
+}
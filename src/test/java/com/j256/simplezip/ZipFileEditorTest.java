@@ -0,0 +1,289 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileInfo;
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class ZipFileEditorTest {
+
+	@Test
+	public void testRemoveAndReplace() throws IOException {
+		File zipFile = createZipFile();
+		long originalSize = zipFile.length();
+		byte[] originalBytes = Files.readAllBytes(zipFile.toPath());
+		long twoOffset;
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			twoOffset = input.findDirectoryFileEntry("two").getRelativeOffsetOfLocalHeader();
+		}
+
+		byte[] newBytes = "replaced contents".getBytes();
+		try (ZipFileEditor editor = new ZipFileEditor(zipFile)) {
+			assertEquals(4, editor.getDirectoryFileEntries().size());
+			assertTrue(editor.removeEntry("two"));
+			assertFalse(editor.removeEntry("two"));
+			assertFalse(editor.removeEntry("unknown"));
+			assertTrue(editor.replaceEntry(ZipFileHeader.builder().withFileName("three").build(), newBytes));
+			assertEquals(2, editor.getDirectoryFileEntries().size());
+			editor.finish();
+			try {
+				editor.removeEntry("one");
+				fail("Should have thrown");
+			} catch (IllegalStateException ise) {
+				// expected
+			}
+		}
+
+		assertTrue(zipFile.length() < originalSize);
+		byte[] zipBytes = Files.readAllBytes(zipFile.toPath());
+		// the entries before the removed entry were not touched
+		assertArrayEquals(Arrays.copyOf(originalBytes, (int) twoOffset), Arrays.copyOf(zipBytes, (int) twoOffset));
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(3, zip.size());
+			assertEquals("end comment", zip.getComment());
+			assertNull(zip.getEntry("two"));
+			assertArrayEquals(fileBytes("one"), readAll(zip.getInputStream(zip.getEntry("one"))));
+			assertArrayEquals(fileBytes("four"), readAll(zip.getInputStream(zip.getEntry("four"))));
+			ZipEntry threeEntry = zip.getEntry("three");
+			assertArrayEquals(newBytes, readAll(zip.getInputStream(threeEntry)));
+			// the comment of the replaced entry was carried over
+			assertEquals("comment three", threeEntry.getComment());
+		}
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
+			assertEquals("one", zis.getNextEntry().getName());
+			assertEquals("four", zis.getNextEntry().getName());
+			assertEquals("three", zis.getNextEntry().getName());
+			assertArrayEquals(newBytes, readAll(zis));
+			assertNull(zis.getNextEntry());
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			List<ZipCentralDirectoryFileEntry> entries = input.readDirectoryFileEntries();
+			assertEquals(3, entries.size());
+			assertEquals("one", entries.get(0).getFileName());
+			assertEquals("four", entries.get(1).getFileName());
+			assertEquals(twoOffset, entries.get(1).getRelativeOffsetOfLocalHeader());
+			assertEquals("comment four", entries.get(1).getComment());
+			assertEquals(0644, entries.get(1).getExternalFileAttributes() >> 16 & 0777);
+			assertArrayEquals(fileBytes("four"), input.readFileDataAll(entries.get(1)));
+		}
+	}
+
+	@Test
+	public void testRemoveLast() throws IOException {
+		File zipFile = createZipFile();
+		long fourOffset;
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			fourOffset = input.findDirectoryFileEntry("four").getRelativeOffsetOfLocalHeader();
+		}
+		long size;
+		try (ZipFileEditor editor = new ZipFileEditor(zipFile)) {
+			assertTrue(editor.removeEntry("four"));
+			size = editor.finish();
+		}
+		assertEquals(zipFile.length(), size);
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			// the directory is written where the last entry was
+			assertEquals(fourOffset, input.getDirectoryOffset());
+			assertEquals(3, input.readDirectoryFileEntries().size());
+			assertNull(input.findDirectoryFileEntry("four"));
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(3, zip.size());
+			assertArrayEquals(fileBytes("two"), readAll(zip.getInputStream(zip.getEntry("two"))));
+		}
+	}
+
+	@Test
+	public void testReplaceAgain() throws IOException {
+		File zipFile = createZipFile();
+		byte[] newBytes = "second contents".getBytes();
+		try (ZipFileEditor editor = new ZipFileEditor(zipFile)) {
+			assertTrue(editor.replaceEntry(ZipFileHeader.builder().withFileName("three").build(), "first".getBytes()));
+			// replaces the pending replacement
+			assertTrue(editor.replaceEntry(ZipFileHeader.builder().withFileName("three").build(), newBytes));
+			assertTrue(editor.removeEntry("one"));
+			assertTrue(editor.replaceEntry(ZipFileHeader.builder().withFileName("one").build(), newBytes));
+			assertFalse(editor.replaceEntry(ZipFileHeader.builder().withFileName("five").build(), newBytes));
+			// drops the pending addition
+			assertTrue(editor.removeEntry("five"));
+			assertFalse(editor.removeEntry("five"));
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(4, zip.size());
+			assertNull(zip.getEntry("five"));
+			assertArrayEquals(fileBytes("two"), readAll(zip.getInputStream(zip.getEntry("two"))));
+			for (String name : new String[] { "one", "three" }) {
+				ZipEntry entry = zip.getEntry(name);
+				assertArrayEquals(newBytes, readAll(zip.getInputStream(entry)));
+				assertEquals("comment " + name, entry.getComment());
+			}
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			List<ZipCentralDirectoryFileEntry> entries = input.readDirectoryFileEntries();
+			assertEquals(4, entries.size());
+			assertEquals("two", entries.get(0).getFileName());
+			assertEquals("four", entries.get(1).getFileName());
+			assertEquals("three", entries.get(2).getFileName());
+			assertEquals("one", entries.get(3).getFileName());
+			assertEquals(0644, entries.get(3).getExternalFileAttributes() >> 16 & 0777);
+		}
+	}
+
+	@Test
+	public void testDuplicateNames() throws IOException {
+		File zipFile = createDuplicateZipFile();
+		try (ZipFileEditor editor = new ZipFileEditor(zipFile)) {
+			assertTrue(editor.removeEntry("dup"));
+			assertFalse(editor.removeEntry("dup"));
+			assertEquals(1, editor.getDirectoryFileEntries().size());
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			List<ZipCentralDirectoryFileEntry> entries = input.readDirectoryFileEntries();
+			assertEquals(1, entries.size());
+			assertEquals("other", entries.get(0).getFileName());
+			assertArrayEquals(fileBytes("other"), input.readFileDataAll(entries.get(0)));
+		}
+
+		zipFile = createDuplicateZipFile();
+		byte[] newBytes = "replaced contents".getBytes();
+		try (ZipFileEditor editor = new ZipFileEditor(zipFile)) {
+			assertTrue(editor.replaceEntry(ZipFileHeader.builder().withFileName("dup").build(), newBytes));
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			List<ZipCentralDirectoryFileEntry> entries = input.readDirectoryFileEntries();
+			assertEquals(2, entries.size());
+			assertEquals("other", entries.get(0).getFileName());
+			assertEquals("dup", entries.get(1).getFileName());
+			assertArrayEquals(newBytes, input.readFileDataAll(entries.get(1)));
+			// the information of the last duplicate was carried over
+			assertEquals("comment 2", entries.get(1).getComment());
+		}
+	}
+
+	@Test
+	public void testRemoveBeforeZip64DataDescriptor() throws IOException {
+		File zipFile = ZipFileOutputTest.createZip64DescriptorFile();
+		byte[] originalBytes = Files.readAllBytes(zipFile.toPath());
+		long zip64Offset;
+		long afterOffset;
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			zip64Offset = input.findDirectoryFileEntry("zip64").getRelativeOffsetOfLocalHeader();
+			afterOffset = input.findDirectoryFileEntry("after").getRelativeOffsetOfLocalHeader();
+		}
+		try (ZipFileEditor editor = new ZipFileEditor(zipFile)) {
+			assertTrue(editor.removeEntry("first"));
+		}
+		byte[] zipBytes = Files.readAllBytes(zipFile.toPath());
+		// the zip64 entry slid down with all of its data-descriptor
+		assertArrayEquals(Arrays.copyOfRange(originalBytes, (int) zip64Offset, (int) afterOffset),
+				Arrays.copyOf(zipBytes, (int) (afterOffset - zip64Offset)));
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			assertEquals(2, input.readDirectoryFileEntries().size());
+			ZipCentralDirectoryFileEntry afterEntry = input.findDirectoryFileEntry("after");
+			assertEquals(afterOffset - zip64Offset, afterEntry.getRelativeOffsetOfLocalHeader());
+			assertArrayEquals("after data".getBytes(), input.readFileDataAll(afterEntry));
+			assertArrayEquals("zip64 data".getBytes(), input.readFileDataAll(input.findDirectoryFileEntry("zip64")));
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertArrayEquals("after data".getBytes(), readAll(zip.getInputStream(zip.getEntry("after"))));
+		}
+	}
+
+	@Test
+	public void testReplaceFromFile() throws IOException {
+		File zipFile = createZipFile();
+		byte[] newBytes = new byte[50000];
+		for (int i = 0; i < newBytes.length; i++) {
+			newBytes[i] = (byte) (i % 7);
+		}
+		File dataFile = File.createTempFile(getClass().getSimpleName(), ".t");
+		dataFile.deleteOnExit();
+		try (FileOutputStream fos = new FileOutputStream(dataFile)) {
+			fos.write(newBytes);
+		}
+		try (ZipFileEditor editor = new ZipFileEditor(zipFile)) {
+			// nothing is removed so the existing entries do not move
+			assertFalse(editor.replaceEntry(ZipFileHeader.builder().withFileName("five").build(), dataFile));
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(5, zip.size());
+			assertArrayEquals(newBytes, readAll(zip.getInputStream(zip.getEntry("five"))));
+			assertArrayEquals(fileBytes("one"), readAll(zip.getInputStream(zip.getEntry("one"))));
+		}
+	}
+
+	private File createZipFile() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(zipFile)) {
+			for (String name : new String[] { "one", "two", "three", "four" }) {
+				output.writeFileHeader(ZipFileHeader.builder()
+						.withFileName(name)
+						.withCompressionMethod(CompressionMethod.DEFLATED)
+						.build());
+				output.writeFileDataAll(fileBytes(name));
+				output.addDirectoryFileInfo(ZipCentralDirectoryFileInfo.builder()
+						.withComment("comment " + name)
+						.withExternalFileAttributes(0100644 << 16)
+						.build());
+			}
+			output.finishZip(ZipCentralDirectoryEndInfo.builder().withComment("end comment").build());
+		}
+		return zipFile;
+	}
+
+	private File createDuplicateZipFile() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(zipFile)) {
+			String[] names = new String[] { "dup", "other", "dup" };
+			for (int i = 0; i < names.length; i++) {
+				output.writeFileHeader(ZipFileHeader.builder().withFileName(names[i]).build());
+				output.writeFileDataAll(fileBytes(names[i]));
+				output.addDirectoryFileInfo(ZipCentralDirectoryFileInfo.builder().withComment("comment " + i).build());
+			}
+		}
+		return zipFile;
+	}
+
+	private byte[] fileBytes(String name) {
+		byte[] bytes = new byte[20000 + name.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) name.charAt(i % name.length());
+		}
+		return bytes;
+	}
+
+	private byte[] readAll(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int numRead;
+		while ((numRead = inputStream.read(buffer)) >= 0) {
+			baos.write(buffer, 0, numRead);
+		}
+		return baos.toByteArray();
+	}
+}
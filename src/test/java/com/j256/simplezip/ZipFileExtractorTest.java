@@ -0,0 +1,140 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class ZipFileExtractorTest {
+
+	@Test
+	public void testStuff() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		int numFiles = 50;
+		byte[][] fileBytes = new byte[numFiles][];
+		Random random = new Random(1);
+		long totalSize = 0;
+		try (ZipFileOutput output = new ZipFileOutput(zipFile)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("dir/").build());
+			output.finishFileData();
+			for (int i = 0; i < numFiles; i++) {
+				fileBytes[i] = new byte[random.nextInt(100000)];
+				for (int j = 0; j < fileBytes[i].length; j++) {
+					fileBytes[i][j] = (byte) random.nextInt(10);
+				}
+				totalSize += fileBytes[i].length;
+				output.writeFileHeader(ZipFileHeader.builder().withFileName("dir/sub" + (i % 3) + "/file" + i).build());
+				output.writeFileDataAll(fileBytes[i]);
+			}
+		}
+
+		File outputDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			ZipFileExtractor extractor = new ZipFileExtractor(input, executor, 4);
+			assertEquals(totalSize, extractor.extractAll(outputDir));
+		} finally {
+			executor.shutdown();
+		}
+
+		assertTrue(new File(outputDir, "dir").isDirectory());
+		for (int i = 0; i < numFiles; i++) {
+			File file = new File(outputDir, "dir/sub" + (i % 3) + "/file" + i);
+			assertArrayEquals(fileBytes[i], Files.readAllBytes(file.toPath()));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testZipSlip() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
+			zos.putNextEntry(new ZipEntry("../escaped"));
+			zos.write(new byte[] { 1, 2, 3 });
+			zos.closeEntry();
+		}
+
+		File outputDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			new ZipFileExtractor(input, executor, 1).extractAll(outputDir);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = InterruptedIOException.class)
+	public void testInterruptedTask() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(zipFile)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("file").build());
+			output.writeFileDataAll(new byte[] { 1, 2, 3 });
+		}
+
+		File outputDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+		// runs the tasks as if the executor had been shut down with shutdownNow()
+		ExecutorService executor = new AbstractExecutorService() {
+			@Override
+			public void execute(Runnable command) {
+				Thread.currentThread().interrupt();
+				try {
+					command.run();
+				} finally {
+					Thread.interrupted();
+				}
+			}
+
+			@Override
+			public void shutdown() {
+			}
+
+			@Override
+			public List<Runnable> shutdownNow() {
+				return Collections.emptyList();
+			}
+
+			@Override
+			public boolean isShutdown() {
+				return false;
+			}
+
+			@Override
+			public boolean isTerminated() {
+				return false;
+			}
+
+			@Override
+			public boolean awaitTermination(long timeout, TimeUnit unit) {
+				return true;
+			}
+		};
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			new ZipFileExtractor(input, executor, 1).extractAll(outputDir);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadNumTasks() {
+		new ZipFileExtractor(null, null, 0);
+	}
+}
@@ -14,6 +14,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
@@ -649,6 +650,51 @@ public class ZipFileInputTest {
 		input.close();
 	}
 
+	@Test
+	public void testSkipFileDataWithoutDecoding() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ZipFileOutput output = new ZipFileOutput(baos);
+		output.enableFileBuffering(1024 * 1024, 1024 * 1024);
+		byte[] bytes = new byte[100000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i % 7);
+		}
+		for (int i = 0; i < 3; i++) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("file" + i).build());
+			output.writeFileDataAll(bytes);
+		}
+		output.close();
+
+		final long[] skipped = new long[1];
+		InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(baos.toByteArray())) {
+			@Override
+			public long skip(long numBytes) throws IOException {
+				long num = super.skip(numBytes);
+				skipped[0] += num;
+				return num;
+			}
+		};
+		ZipFileInput input = new ZipFileInput(inputStream);
+		long compressedTotal = 0;
+		for (int i = 0; i < 2; i++) {
+			ZipFileHeader header = input.readFileHeader();
+			assertEquals("file" + i, header.getFileName());
+			assertFalse(header.hasFlag(GeneralPurposeFlag.DATA_DESCRIPTOR));
+			compressedTotal += header.getCompressedSize();
+			if (i == 0) {
+				assertEquals(bytes.length, input.skipFileData());
+			}
+			// the second one is skipped by readFileHeader()
+		}
+		ZipFileHeader header = input.readFileHeader();
+		assertEquals("file2", header.getFileName());
+		assertEquals(compressedTotal, skipped[0]);
+		assertArrayEquals(bytes, input.readFileDataAll());
+		assertNull(input.readFileHeader());
+		assertNotNull(input.readDirectoryFileEntry());
+		input.close();
+	}
+
 	private byte[] readFileToBytes(File file) throws IOException {
 		try (FileInputStream fis = new FileInputStream(file);
 				ByteArrayOutputStream baos = new ByteArrayOutputStream();) {
@@ -11,16 +11,25 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.junit.Test;
@@ -31,8 +40,10 @@ import com.j256.simplezip.format.ZipCentralDirectoryEnd;
 import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
 import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
 import com.j256.simplezip.format.ZipCentralDirectoryFileInfo;
+import com.j256.simplezip.format.ZipDataDescriptor;
 import com.j256.simplezip.format.ZipFileHeader;
 import com.j256.simplezip.format.ZipFileHeader.Builder;
+import com.j256.simplezip.format.extra.Zip64ExtraField;
 
 public class ZipFileOutputTest {
 
@@ -209,6 +220,338 @@ public class ZipFileOutputTest {
 		output.close();
 	}
 
+	@Test
+	public void testParallelDeflate() throws IOException {
+		byte[] fileBytes = new byte[1000000];
+		Random random = new Random(1);
+		for (int i = 0; i < fileBytes.length; i++) {
+			fileBytes[i] = (byte) random.nextInt(20);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			ZipFileOutput output = new ZipFileOutput(baos);
+			output.enableParallelDeflate(executor, 100000);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("big").build());
+			output.writeFileDataAll(fileBytes);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("small").build());
+			output.writeFileDataAll(new byte[] { 1, 2, 3 });
+			output.close();
+		} finally {
+			executor.shutdown();
+		}
+
+		// now try to read it back in with the jdk stuff which checks the crc and sizes
+		ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		ZipEntry zipEntry = zis.getNextEntry();
+		assertEquals("big", zipEntry.getName());
+		assertArrayEquals(fileBytes, readFully(zis));
+		zipEntry = zis.getNextEntry();
+		assertEquals("small", zipEntry.getName());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, readFully(zis));
+		assertNull(zis.getNextEntry());
+		zis.close();
+	}
+
+	@Test
+	public void testTransferStoredFile() throws IOException {
+		byte[] fileBytes = new byte[500000];
+		new Random(2).nextBytes(fileBytes);
+		File file = File.createTempFile(getClass().getSimpleName(), ".t");
+		file.deleteOnExit();
+		try (FileOutputStream fos = new FileOutputStream(file);) {
+			fos.write(fileBytes);
+		}
+		File emptyFile = File.createTempFile(getClass().getSimpleName(), ".t");
+		emptyFile.deleteOnExit();
+		CRC32 crc32 = new CRC32();
+		crc32.update(fileBytes);
+
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(zipFile)) {
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("calculated")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			output.writeFileData(file);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("deflated").build());
+			output.writeFileDataAll(new byte[] { 1, 2, 3 });
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("supplied")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.withCrc32(crc32.getValue())
+					.withUncompressedSize(fileBytes.length)
+					.build());
+			output.writeRawFileData(file);
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("empty")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			output.writeFileData(emptyFile);
+			assertEquals(zipFile.length(), output.getNumBytesWritten());
+		}
+
+		// the jdk stream reader needs the sizes and crc in the stored file-headers
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
+			ZipEntry zipEntry = zis.getNextEntry();
+			assertEquals("calculated", zipEntry.getName());
+			assertEquals(crc32.getValue(), zipEntry.getCrc());
+			assertArrayEquals(fileBytes, readFully(zis));
+			zipEntry = zis.getNextEntry();
+			assertEquals("deflated", zipEntry.getName());
+			assertArrayEquals(new byte[] { 1, 2, 3 }, readFully(zis));
+			zipEntry = zis.getNextEntry();
+			assertEquals("supplied", zipEntry.getName());
+			assertArrayEquals(fileBytes, readFully(zis));
+			zipEntry = zis.getNextEntry();
+			assertEquals("empty", zipEntry.getName());
+			assertEquals(0, readFully(zis).length);
+			assertNull(zis.getNextEntry());
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			ZipCentralDirectoryFileEntry entry = input.findDirectoryFileEntry("calculated");
+			assertEquals(crc32.getValue(), entry.getCrc32());
+			assertEquals(fileBytes.length, entry.getCompressedSize());
+			assertArrayEquals(fileBytes, input.readFileDataAll(entry));
+			assertArrayEquals(fileBytes, input.readFileDataAll(input.findDirectoryFileEntry("supplied")));
+		}
+	}
+
+	@Test
+	public void testCopyRawEntries() throws IOException {
+		byte[] deflatedBytes = new byte[100000];
+		for (int i = 0; i < deflatedBytes.length; i++) {
+			deflatedBytes[i] = (byte) (i % 11);
+		}
+		byte[] storedBytes = new byte[] { 1, 2, 3, 4, 5 };
+		CRC32 crc32 = new CRC32();
+		crc32.update(storedBytes);
+		File sourceFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		sourceFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(sourceFile)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("skipped").build());
+			output.writeFileDataAll(new byte[] { 9, 9, 9 });
+			// no crc or sizes so this has a data-descriptor
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("deflated").build());
+			output.writeFileDataAll(deflatedBytes);
+			output.addDirectoryFileInfo(ZipCentralDirectoryFileInfo.builder().withComment("a comment").build());
+			// zip64 extra field that has the offset of the source header
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("stored")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.withCrc32(crc32.getValue())
+					.withCompressedSize(storedBytes.length)
+					.withUncompressedSize(storedBytes.length)
+					.withZip64ExtraField(new Zip64ExtraField(storedBytes.length, storedBytes.length, 0, 0))
+					.build());
+			output.writeFileDataAll(storedBytes);
+		}
+
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ZipFileRandomInput input = new ZipFileRandomInput(sourceFile);
+				ZipFileOutput fileOutput = new ZipFileOutput(zipFile);
+				ZipFileOutput streamOutput = new ZipFileOutput(baos);) {
+			assertNotNull(input.findDirectoryFileEntry("stored").getZip64ExtraField());
+			for (ZipFileOutput output : new ZipFileOutput[] { fileOutput, streamOutput }) {
+				// write a new entry first so the offsets change
+				output.writeFileHeader(ZipFileHeader.builder().withFileName("new").build());
+				output.writeFileDataAll(new byte[] { 7, 8 });
+				output.copyRawEntry(input, input.findDirectoryFileEntry("stored"));
+				output.copyRawEntry(input, input.findDirectoryFileEntry("deflated"));
+				assertTrue(output.addDirectoryFileInfo("stored",
+						ZipCentralDirectoryFileInfo.builder().withComment("another comment").build()));
+				output.finishZip();
+			}
+			assertEquals(zipFile.length(), fileOutput.getNumBytesWritten());
+		}
+		byte[] fileZipBytes = Files.readAllBytes(zipFile.toPath());
+		// both ways should result in the same bytes
+		assertArrayEquals(fileZipBytes, baos.toByteArray());
+
+		// the jdk stream reader walks the file-headers and data-descriptors
+		try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(fileZipBytes))) {
+			assertEquals("new", zis.getNextEntry().getName());
+			assertArrayEquals(new byte[] { 7, 8 }, readFully(zis));
+			assertEquals("stored", zis.getNextEntry().getName());
+			assertArrayEquals(storedBytes, readFully(zis));
+			assertEquals("deflated", zis.getNextEntry().getName());
+			assertArrayEquals(deflatedBytes, readFully(zis));
+			assertNull(zis.getNextEntry());
+		}
+		// the jdk file reader uses the central-directory offsets
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(3, zip.size());
+			assertArrayEquals(storedBytes, readFully(zip.getInputStream(zip.getEntry("stored"))));
+			assertArrayEquals(deflatedBytes, readFully(zip.getInputStream(zip.getEntry("deflated"))));
+			assertEquals("a comment", zip.getEntry("deflated").getComment());
+			assertEquals("another comment", zip.getEntry("stored").getComment());
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			ZipCentralDirectoryFileEntry entry = input.findDirectoryFileEntry("stored");
+			// the zip64 field with the old offset was dropped since it was not needed
+			assertNull(entry.getZip64ExtraField());
+			assertArrayEquals(storedBytes, input.readFileDataAll(entry));
+			assertArrayEquals(deflatedBytes, input.readFileDataAll(input.findDirectoryFileEntry("deflated")));
+		}
+	}
+
+	@Test
+	public void testCopyRawEntryZip64DataDescriptor() throws IOException {
+		File sourceFile = createZip64DescriptorFile();
+		byte[] sourceBytes = Files.readAllBytes(sourceFile.toPath());
+		long zip64Offset;
+		long afterOffset;
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ZipFileRandomInput input = new ZipFileRandomInput(sourceFile);
+				ZipFileOutput fileOutput = new ZipFileOutput(zipFile);
+				ZipFileOutput streamOutput = new ZipFileOutput(baos);) {
+			zip64Offset = input.findDirectoryFileEntry("zip64").getRelativeOffsetOfLocalHeader();
+			afterOffset = input.findDirectoryFileEntry("after").getRelativeOffsetOfLocalHeader();
+			for (ZipFileOutput output : new ZipFileOutput[] { fileOutput, streamOutput }) {
+				output.copyRawEntry(input, input.findDirectoryFileEntry("zip64"));
+				output.copyRawEntry(input, input.findDirectoryFileEntry("after"));
+				output.finishZip();
+			}
+		}
+		byte[] fileZipBytes = Files.readAllBytes(zipFile.toPath());
+		assertArrayEquals(fileZipBytes, baos.toByteArray());
+		// the whole data-descriptor with its 8 byte sizes was copied
+		int zip64Length = (int) (afterOffset - zip64Offset);
+		assertArrayEquals(Arrays.copyOfRange(sourceBytes, (int) zip64Offset, (int) afterOffset),
+				Arrays.copyOf(fileZipBytes, zip64Length));
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			ZipCentralDirectoryFileEntry afterEntry = input.findDirectoryFileEntry("after");
+			assertEquals(zip64Length, afterEntry.getRelativeOffsetOfLocalHeader());
+			assertArrayEquals("after data".getBytes(), input.readFileDataAll(afterEntry));
+			assertArrayEquals("zip64 data".getBytes(), input.readFileDataAll(input.findDirectoryFileEntry("zip64")));
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(2, zip.size());
+			assertArrayEquals("zip64 data".getBytes(), readFully(zip.getInputStream(zip.getEntry("zip64"))));
+			assertArrayEquals("after data".getBytes(), readFully(zip.getInputStream(zip.getEntry("after"))));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCopyRawEntryInsideFile() throws IOException {
+		File sourceFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		sourceFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(sourceFile)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("foo").build());
+			output.writeFileDataAll(new byte[] { 1 });
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(sourceFile);
+				ZipFileOutput output = new ZipFileOutput(new ByteArrayOutputStream());) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("bar").build());
+			output.copyRawEntry(input, input.findDirectoryFileEntry("foo"));
+		}
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		byte[] bytes1 = new byte[] { 1, 2, 3 };
+		byte[] bytes2 = new byte[10000];
+		for (int i = 0; i < bytes2.length; i++) {
+			bytes2[i] = (byte) (i % 5);
+		}
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(zipFile)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("one").build());
+			output.writeFileDataAll(bytes1);
+			output.addDirectoryFileInfo(ZipCentralDirectoryFileInfo.builder().withComment("first").build());
+			output.finishZip(ZipCentralDirectoryEndInfo.builder().withComment("a long comment to shrink").build());
+		}
+		long directoryOffset;
+		byte[] directoryBytes;
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			directoryOffset = input.getDirectoryOffset();
+			directoryBytes = toBytes(input.getDirectoryBuffer());
+		}
+		byte[] dataBytes = Arrays.copyOf(Files.readAllBytes(zipFile.toPath()), (int) directoryOffset);
+
+		// first append keeps the comment
+		try (ZipFileOutput output = ZipFileOutput.openForAppend(zipFile)) {
+			assertEquals(directoryOffset, output.getNumBytesWritten());
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("two").build());
+			output.writeFileDataAll(bytes2);
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(2, zip.size());
+			assertEquals("a long comment to shrink", zip.getComment());
+		}
+
+		// second append has a shorter comment so the file shrinks
+		File storedFile = File.createTempFile(getClass().getSimpleName(), ".t");
+		storedFile.deleteOnExit();
+		try (FileOutputStream fos = new FileOutputStream(storedFile)) {
+			fos.write(bytes2);
+		}
+		try (ZipFileOutput output = ZipFileOutput.openForAppend(zipFile)) {
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("three")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			output.writeFileData(storedFile);
+			output.addDirectoryFileInfo(ZipCentralDirectoryFileInfo.builder().withComment("third").build());
+			assertFalse(output.addDirectoryFileInfo("one", ZipCentralDirectoryFileInfo.builder().build()));
+			output.finishZip(ZipCentralDirectoryEndInfo.builder().withComment("short").build());
+		}
+
+		byte[] zipBytes = Files.readAllBytes(zipFile.toPath());
+		// the existing file data was not touched
+		assertArrayEquals(dataBytes, Arrays.copyOf(zipBytes, dataBytes.length));
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			assertEquals("short", input.getDirectoryEnd().getComment());
+			// the existing central-directory entries are written out as they were
+			byte[] newDirectoryBytes = toBytes(input.getDirectoryBuffer());
+			assertArrayEquals(directoryBytes, Arrays.copyOf(newDirectoryBytes, directoryBytes.length));
+			assertEquals(3, input.readDirectoryFileEntries().size());
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(3, zip.size());
+			assertArrayEquals(bytes1, readFully(zip.getInputStream(zip.getEntry("one"))));
+			assertEquals("first", zip.getEntry("one").getComment());
+			assertArrayEquals(bytes2, readFully(zip.getInputStream(zip.getEntry("two"))));
+			assertArrayEquals(bytes2, readFully(zip.getInputStream(zip.getEntry("three"))));
+			assertEquals("third", zip.getEntry("three").getComment());
+		}
+		try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+			assertEquals("one", zis.getNextEntry().getName());
+			assertEquals("two", zis.getNextEntry().getName());
+			assertEquals("three", zis.getNextEntry().getName());
+			assertArrayEquals(bytes2, readFully(zis));
+			assertNull(zis.getNextEntry());
+		}
+	}
+
+	@Test
+	public void testAppendZip64() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipFileOutput output = new ZipFileOutput(zipFile)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("one").build());
+			output.writeFileDataAll(new byte[] { 1, 2, 3 });
+			output.finishZip(ZipCentralDirectoryEndInfo.builder().withZip64(true).withComment("comment").build());
+		}
+		try (ZipFileOutput output = ZipFileOutput.openForAppend(zipFile)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("two").build());
+			output.writeFileDataAll(new byte[] { 4, 5 });
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			assertNotNull(input.getZip64DirectoryEnd());
+			assertEquals(2, input.getZip64DirectoryEnd().getNumRecordsTotal());
+			assertEquals("comment", input.getDirectoryEnd().getComment());
+			assertArrayEquals(new byte[] { 1, 2, 3 }, input.readFileDataAll(input.findDirectoryFileEntry("one")));
+			assertArrayEquals(new byte[] { 4, 5 }, input.readFileDataAll(input.findDirectoryFileEntry("two")));
+		}
+	}
+
 	@Test
 	public void testWriteFilePath() throws IOException {
 		File file = File.createTempFile(getClass().getSimpleName(), ".t");
@@ -682,6 +1025,147 @@ public class ZipFileOutputTest {
 		zipInput.close();
 	}
 
+	@Test
+	public void testHeaderPatching() throws IOException {
+		byte[] buffer = new byte[IoUtils.STANDARD_BUFFER_SIZE * 3];
+		new Random(3).nextBytes(buffer);
+		CRC32 crc32 = new CRC32();
+		crc32.update(buffer);
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		try (ZipFileOutput zipOutput = new ZipFileOutput(zipFile)) {
+			zipOutput.enableHeaderPatching();
+			zipOutput.writeFileHeader(ZipFileHeader.builder().withFileName("deflated").build());
+			zipOutput.writeFileDataAll(buffer);
+			zipOutput.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("stored")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			zipOutput.writeFileDataPart(buffer, 0, 100);
+			zipOutput.writeFileDataPart(buffer, 100, buffer.length - 100);
+			zipOutput.finishFileData();
+			zipOutput.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("sized")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.withUncompressedSize(3)
+					.build());
+			zipOutput.writeFileDataAll(new byte[] { 1, 2, 3 });
+			zipOutput.flush();
+			assertEquals(zipFile.length(), zipOutput.getNumBytesWritten());
+		}
+
+		// the jdk stream reader needs the sizes and crc in the stored file-headers
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
+			assertEquals("deflated", zis.getNextEntry().getName());
+			assertArrayEquals(buffer, readFully(zis));
+			ZipEntry zipEntry = zis.getNextEntry();
+			assertEquals("stored", zipEntry.getName());
+			assertEquals(crc32.getValue(), zipEntry.getCrc());
+			assertArrayEquals(buffer, readFully(zis));
+			assertEquals("sized", zis.getNextEntry().getName());
+			assertArrayEquals(new byte[] { 1, 2, 3 }, readFully(zis));
+			assertNull(zis.getNextEntry());
+		}
+		try (ZipFileRandomInput input = new ZipFileRandomInput(zipFile)) {
+			for (ZipCentralDirectoryFileEntry entry : input.readDirectoryFileEntries()) {
+				ZipFileHeader header = input.readFileHeader(entry);
+				assertFalse(header.hasFlag(GeneralPurposeFlag.DATA_DESCRIPTOR));
+				assertEquals(entry.getCrc32(), header.getCrc32());
+				assertEquals(entry.getCompressedSize(), header.getCompressedSize());
+				assertEquals(entry.getUncompressedSize(), header.getUncompressedSize());
+				if (entry.getFileName().equals("sized")) {
+					// the size was known so no zip64 field was reserved
+					assertNull(header.getZip64ExtraField());
+				} else {
+					assertNotNull(header.getZip64ExtraField());
+					assertEquals(entry.getCompressedSize(), header.getZip64ExtraField().getCompressedSize());
+					assertEquals(entry.getUncompressedSize(), header.getZip64ExtraField().getUncompressedSize());
+					// the zip64 field is only in the local file-header
+					assertNull(entry.getZip64ExtraField());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testHeaderPatchingSeekableChannel() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		byte[] bytes = new byte[] { 1, 2, 3, 4, 5 };
+		try (ZipFileOutput zipOutput = new ZipFileOutput(
+				Files.newByteChannel(zipFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE))) {
+			zipOutput.enableHeaderPatching();
+			zipOutput.writeFileHeader(ZipFileHeader.builder().withFileName("first").build());
+			zipOutput.writeFileDataAll(bytes);
+			zipOutput.writeFileHeader(ZipFileHeader.builder().withFileName("empty").build());
+			zipOutput.finishFileData();
+		}
+		try (ZipFileInput input = new ZipFileInput(zipFile)) {
+			ZipFileHeader header = input.readFileHeader();
+			assertEquals("first", header.getFileName());
+			assertFalse(header.hasFlag(GeneralPurposeFlag.DATA_DESCRIPTOR));
+			assertArrayEquals(bytes, input.readFileDataAll());
+			header = input.readFileHeader();
+			assertEquals("empty", header.getFileName());
+			assertArrayEquals(new byte[0], input.readFileDataAll());
+		}
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertArrayEquals(bytes, readFully(zip.getInputStream(zip.getEntry("first"))));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testHeaderPatchingNotSeekable() throws IOException {
+		try (ZipFileOutput zipOutput = new ZipFileOutput(new ByteArrayOutputStream())) {
+			zipOutput.enableHeaderPatching();
+		}
+	}
+
+	@Test
+	public void testDirectorySpilling() throws IOException {
+		File zipFile = File.createTempFile(getClass().getSimpleName(), ".zip");
+		zipFile.deleteOnExit();
+		// enough entries that the central-directory is spilled
+		int numFiles = 30000;
+		try (ZipFileOutput zipOutput = new ZipFileOutput(zipFile)) {
+			zipOutput.enableDirectorySpilling();
+			for (int i = 0; i < numFiles; i++) {
+				zipOutput.writeFileHeader(ZipFileHeader.builder()
+						.withFileName("file" + i)
+						.withCompressionMethod(CompressionMethod.NONE)
+						.build());
+				zipOutput.writeFileDataAll(new byte[] { (byte) i });
+				if (i == numFiles - 1) {
+					zipOutput.addDirectoryFileInfo(ZipCentralDirectoryFileInfo.builder().withComment("last").build());
+				}
+			}
+			// the first entries have been spilled by now
+			assertTrue(zipOutput.addDirectoryFileInfo("file1",
+					ZipCentralDirectoryFileInfo.builder().withComment("first").build()));
+			assertFalse(zipOutput.addDirectoryFileInfo("unknown", ZipCentralDirectoryFileInfo.builder().build()));
+		}
+
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(numFiles, zip.size());
+			ZipEntry zipEntry = zip.getEntry("file1");
+			assertEquals("first", zipEntry.getComment());
+			assertArrayEquals(new byte[] { 1 }, readFully(zip.getInputStream(zipEntry)));
+			assertEquals("last", zip.getEntry("file" + (numFiles - 1)).getComment());
+			zipEntry = zip.getEntry("file12345");
+			assertNull(zipEntry.getComment());
+			assertArrayEquals(new byte[] { (byte) 12345 }, readFully(zip.getInputStream(zipEntry)));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDirectorySpillingAfterFile() throws IOException {
+		try (ZipFileOutput zipOutput = new ZipFileOutput(new ByteArrayOutputStream())) {
+			zipOutput.writeFileHeader(ZipFileHeader.builder().withFileName("file").build());
+			zipOutput.finishFileData();
+			zipOutput.enableDirectorySpilling();
+		}
+	}
+
 	@Test
 	public void testFinishWithoutData() throws IOException {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -770,4 +1254,121 @@ public class ZipFileOutputTest {
 		assertEquals(comment, dirHeader.getComment());
 		input.close();
 	}
+
+	private byte[] toBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Create a Zip-file with a small "zip64" entry written the way streaming writers such as Python's zipfile with
+	 * force_zip64 do: the file-header has a Zip64 extra-field with just the sizes, so the data-descriptor has 8 byte
+	 * sizes even though they are small. It is between a "first" and an "after" entry.
+	 */
+	static File createZip64DescriptorFile() throws IOException {
+		String[] names = new String[] { "first", "zip64", "after" };
+		ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+		int[] offsets = new int[names.length];
+		long[] crcs = new long[names.length];
+		int[] dataLengths = new int[names.length];
+		byte[][] encodedBytes = new byte[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			byte[] data = (names[i] + " data").getBytes();
+			CRC32 crc32 = new CRC32();
+			crc32.update(data);
+			crcs[i] = crc32.getValue();
+			dataLengths[i] = data.length;
+			// the jdk stream reader only allows data-descriptors on deflated entries
+			boolean zip64 = names[i].equals("zip64");
+			if (zip64) {
+				Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true /* no wrap */);
+				deflater.setInput(data);
+				deflater.finish();
+				byte[] deflated = new byte[100];
+				encodedBytes[i] = Arrays.copyOf(deflated, deflater.deflate(deflated));
+				deflater.end();
+			} else {
+				encodedBytes[i] = data;
+			}
+			offsets[i] = buffer.position();
+			buffer.putInt(0x04034b50);
+			buffer.putShort((short) (zip64 ? 45 : 10));
+			buffer.putShort((short) (zip64 ? GeneralPurposeFlag.DATA_DESCRIPTOR.getValue() : 0));
+			buffer.putShort((short) (zip64 ? CompressionMethod.DEFLATED : CompressionMethod.NONE).getValue());
+			buffer.putShort((short) 0);
+			buffer.putShort((short) 0);
+			buffer.putInt(zip64 ? 0 : (int) crcs[i]);
+			buffer.putInt(zip64 ? -1 : data.length);
+			buffer.putInt(zip64 ? -1 : data.length);
+			buffer.putShort((short) names[i].length());
+			buffer.putShort((short) (zip64 ? 4 + 16 : 0));
+			buffer.put(names[i].getBytes());
+			if (zip64) {
+				// sizes are unknown when the file-header is written
+				buffer.putShort((short) Zip64ExtraField.EXPECTED_ID);
+				buffer.putShort((short) 16);
+				buffer.putLong(0);
+				buffer.putLong(0);
+			}
+			buffer.put(encodedBytes[i]);
+			if (zip64) {
+				buffer.putInt(ZipDataDescriptor.OPTIONAL_EXPECTED_SIGNATURE);
+				buffer.putInt((int) crcs[i]);
+				buffer.putLong(encodedBytes[i].length);
+				buffer.putLong(data.length);
+			}
+		}
+		int directoryOffset = buffer.position();
+		for (int i = 0; i < names.length; i++) {
+			boolean zip64 = names[i].equals("zip64");
+			buffer.putInt(0x02014b50);
+			buffer.putShort((short) 45);
+			buffer.putShort((short) (zip64 ? 45 : 10));
+			buffer.putShort((short) (zip64 ? GeneralPurposeFlag.DATA_DESCRIPTOR.getValue() : 0));
+			buffer.putShort((short) (zip64 ? CompressionMethod.DEFLATED : CompressionMethod.NONE).getValue());
+			buffer.putShort((short) 0);
+			buffer.putShort((short) 0);
+			buffer.putInt((int) crcs[i]);
+			buffer.putInt(encodedBytes[i].length);
+			buffer.putInt(dataLengths[i]);
+			buffer.putShort((short) names[i].length());
+			// extra, comment, disk number, internal and external attributes
+			buffer.putShort((short) 0);
+			buffer.putShort((short) 0);
+			buffer.putShort((short) 0);
+			buffer.putShort((short) 0);
+			buffer.putInt(0);
+			buffer.putInt(offsets[i]);
+			buffer.put(names[i].getBytes());
+		}
+		int directorySize = buffer.position() - directoryOffset;
+		buffer.putInt(0x06054b50);
+		buffer.putShort((short) 0);
+		buffer.putShort((short) 0);
+		buffer.putShort((short) names.length);
+		buffer.putShort((short) names.length);
+		buffer.putInt(directorySize);
+		buffer.putInt(directoryOffset);
+		buffer.putShort((short) 0);
+
+		File file = File.createTempFile(ZipFileOutputTest.class.getSimpleName(), ".zip");
+		file.deleteOnExit();
+		try (FileOutputStream fos = new FileOutputStream(file)) {
+			fos.write(buffer.array(), 0, buffer.position());
+		}
+		return file;
+	}
+
+	private byte[] readFully(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (true) {
+			int num = inputStream.read(buffer);
+			if (num < 0) {
+				return baos.toByteArray();
+			}
+			baos.write(buffer, 0, num);
+		}
+	}
 }
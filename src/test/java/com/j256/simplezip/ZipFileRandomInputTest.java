@@ -0,0 +1,301 @@
+package com.j256.simplezip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.j256.simplezip.format.CompressionMethod;
+import com.j256.simplezip.format.ZipCentralDirectoryEndInfo;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntry;
+import com.j256.simplezip.format.ZipCentralDirectoryFileEntryView;
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class ZipFileRandomInputTest {
+
+	@Test
+	public void testStuff() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		byte[] bytes1 = new byte[] { 1, 2, 3 };
+		byte[] bytes2 = new byte[10000];
+		for (int i = 0; i < bytes2.length; i++) {
+			bytes2[i] = (byte) (i % 7);
+		}
+		try (ZipFileOutput output = new ZipFileOutput(file)) {
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("stored.txt")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			output.writeFileDataAll(bytes1);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("deflated.txt").build());
+			output.writeFileDataAll(bytes2);
+			output.finishZip(ZipCentralDirectoryEndInfo.builder().withComment("a comment").build());
+		}
+
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file)) {
+			assertNull(input.getZip64DirectoryEnd());
+			assertEquals("a comment", input.getDirectoryEnd().getComment());
+			List<ZipCentralDirectoryFileEntry> entries = input.readDirectoryFileEntries();
+			assertEquals(2, entries.size());
+
+			// read them in reverse order to make sure that we are seeking
+			ZipCentralDirectoryFileEntry entry = input.findDirectoryFileEntry("deflated.txt");
+			assertNotNull(entry);
+			assertEquals("deflated.txt", input.readFileHeader(entry).getFileName());
+			assertArrayEquals(bytes2, input.readFileDataAll(entry));
+			assertEquals(entry.getCompressedSize(), input.readRawFileDataAll(entry).length);
+
+			entry = input.findDirectoryFileEntry("stored.txt");
+			assertNotNull(entry);
+			assertArrayEquals(bytes1, input.readFileDataAll(entry));
+			assertArrayEquals(bytes1, input.readRawFileDataAll(entry));
+
+			assertNull(input.findDirectoryFileEntry("unknown"));
+
+			Iterator<ZipCentralDirectoryFileEntryView> iterator = input.iterateDirectoryFileEntryViews();
+			assertTrue(iterator.hasNext());
+			assertEquals("stored.txt", iterator.next().getFileName());
+			assertTrue(iterator.hasNext());
+			assertEquals("deflated.txt", iterator.next().getFileName());
+			assertFalse(iterator.hasNext());
+		}
+	}
+
+	@Test
+	public void testMemoryMapped() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		byte[] bytes1 = new byte[] { 1, 2, 3 };
+		byte[] bytes2 = new byte[10000];
+		for (int i = 0; i < bytes2.length; i++) {
+			bytes2[i] = (byte) (i % 7);
+		}
+		try (ZipFileOutput output = new ZipFileOutput(file)) {
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("stored.txt")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			output.writeFileDataAll(bytes1);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("deflated.txt").build());
+			output.writeFileDataAll(bytes2);
+			output.finishZip(ZipCentralDirectoryEndInfo.builder().withVersionMade(1221).build());
+		}
+
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file, true)) {
+			assertNotNull(input.getZip64DirectoryEnd());
+			assertEquals(2, input.readDirectoryFileEntries().size());
+			ZipCentralDirectoryFileEntry entry = input.findDirectoryFileEntry("deflated.txt");
+			assertEquals("deflated.txt", input.readFileHeader(entry).getFileName());
+			assertArrayEquals(bytes2, input.readFileDataAll(entry));
+			entry = input.findDirectoryFileEntry("stored.txt");
+			assertArrayEquals(bytes1, input.readFileDataAll(entry));
+		}
+	}
+
+	@Test
+	public void testMultipleStreams() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		byte[] bytes1 = new byte[] { 1, 2, 3, 4, 5 };
+		byte[] bytes2 = new byte[] { 6, 7, 8, 9 };
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
+			zos.putNextEntry(new ZipEntry("one"));
+			zos.write(bytes1);
+			zos.closeEntry();
+			zos.putNextEntry(new ZipEntry("two"));
+			zos.write(bytes2);
+			zos.closeEntry();
+		}
+
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file.getPath());
+				InputStream stream1 = input.openFileDataInputStream(input.findDirectoryFileEntry("one"), false);
+				InputStream stream2 = input.openFileDataInputStream(input.findDirectoryFileEntry("two"), false);) {
+			// interleave the reads of the two streams
+			for (int i = 0; i < bytes2.length; i++) {
+				assertEquals(bytes1[i], stream1.read());
+				assertEquals(bytes2[i], stream2.read());
+			}
+			assertEquals(bytes1[bytes1.length - 1], stream1.read());
+			assertEquals(-1, stream1.read());
+			assertEquals(-1, stream2.read());
+		}
+	}
+
+	@Test
+	public void testZip64() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		byte[] bytes = new byte[] { 1, 2, 3 };
+		try (ZipFileOutput output = new ZipFileOutput(file)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("foo.txt").build());
+			output.writeFileDataAll(bytes);
+			output.finishZip(ZipCentralDirectoryEndInfo.builder().withVersionMade(1221).build());
+		}
+
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file)) {
+			assertNotNull(input.getZip64DirectoryEnd());
+			assertEquals(1, input.readDirectoryFileEntries().size());
+			assertArrayEquals(bytes, input.readFileDataAll(input.findDirectoryFileEntry("foo.txt")));
+		}
+	}
+
+	@Test
+	public void testJdkZip64ManyEntries() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		int numEntries = IoUtils.MAX_UNSIGNED_SHORT_VALUE + 10;
+		try (ZipOutputStream zos = new ZipOutputStream(new java.io.BufferedOutputStream(new FileOutputStream(file)))) {
+			for (int i = 0; i < numEntries; i++) {
+				zos.putNextEntry(new ZipEntry("file" + i));
+				zos.write(i);
+				zos.closeEntry();
+			}
+		}
+
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file)) {
+			assertNotNull(input.getZip64DirectoryEnd());
+			assertEquals(numEntries, input.readDirectoryFileEntries().size());
+			int index = numEntries - 1;
+			byte[] data = input.readFileDataAll(input.findDirectoryFileEntry("file" + index));
+			assertArrayEquals(new byte[] { (byte) index }, data);
+		}
+	}
+
+	@Test
+	public void testReadToFile() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		byte[] bytes = new byte[] { 1, 2, 3 };
+		try (ZipFileOutput output = new ZipFileOutput(file)) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("foo.txt").build());
+			output.writeFileDataAll(bytes);
+		}
+		File outputFile = File.createTempFile(getClass().getSimpleName(), ".out");
+		outputFile.deleteOnExit();
+		try (ZipFileRandomInput input = new ZipFileRandomInput(file)) {
+			ZipCentralDirectoryFileEntry entry = input.findDirectoryFileEntry("foo.txt");
+			assertEquals(bytes.length, input.readFileDataToFile(entry, outputFile));
+			assertArrayEquals(bytes, Files.readAllBytes(outputFile.toPath()));
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			assertEquals(bytes.length, input.readFileData(entry, baos));
+			assertArrayEquals(bytes, baos.toByteArray());
+		}
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testReadFromBadFile() throws IOException {
+		new ZipFileRandomInput(new File("/doesnotexist/file.zip")).close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotZipFile() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+		new ZipFileRandomInput(file).close();
+	}
+
+	@Test
+	public void testNotZipFileChannelClosed() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+
+		// the caller's channel is left open
+		try (FileChannel channel = FileChannel.open(file.toPath())) {
+			try {
+				new ZipFileRandomInput(channel, true).close();
+				fail("Should have thrown");
+			} catch (IOException ioe) {
+				// expected
+			}
+			assertTrue(channel.isOpen());
+		}
+
+		// the channel that we opened is closed
+		File fdDir = new File("/proc/self/fd");
+		assumeTrue(fdDir.isDirectory());
+		int numFds = fdDir.list().length;
+		for (int i = 0; i < 20; i++) {
+			for (boolean memoryMapped : new boolean[] { false, true }) {
+				try {
+					new ZipFileRandomInput(file, memoryMapped).close();
+					fail("Should have thrown");
+				} catch (IOException ioe) {
+					// expected
+				}
+			}
+		}
+		assertTrue(fdDir.list().length < numFds + 10);
+	}
+
+	@Test
+	public void testReadFileDataToChannel() throws IOException {
+		File file = File.createTempFile(getClass().getSimpleName(), ".zip");
+		file.deleteOnExit();
+		byte[] bytes1 = new byte[200000];
+		byte[] bytes2 = new byte[300000];
+		Random random = new Random(1);
+		for (int i = 0; i < bytes1.length; i++) {
+			bytes1[i] = (byte) random.nextInt();
+		}
+		for (int i = 0; i < bytes2.length; i++) {
+			bytes2[i] = (byte) random.nextInt(5);
+		}
+		try (ZipFileOutput output = new ZipFileOutput(file)) {
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("stored.txt")
+					.withCompressionMethod(CompressionMethod.NONE)
+					.build());
+			output.writeFileDataAll(bytes1);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("deflated.txt").build());
+			output.writeFileDataAll(bytes2);
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("empty.txt").build());
+			output.writeFileDataAll(new byte[0]);
+			output.writeFileHeader(ZipFileHeader.builder()
+					.withFileName("simple.txt")
+					.withCompressionMethod(CompressionMethod.SIMPLEZIP)
+					.build());
+			output.writeFileDataAll(bytes1);
+		}
+
+		for (boolean memoryMapped : new boolean[] { false, true }) {
+			try (ZipFileRandomInput input = new ZipFileRandomInput(file, memoryMapped)) {
+				assertArrayEquals(bytes1, readToChannel(input, "stored.txt"));
+				assertArrayEquals(bytes2, readToChannel(input, "deflated.txt"));
+				assertArrayEquals(new byte[0], readToChannel(input, "empty.txt"));
+				assertArrayEquals(bytes1, readToChannel(input, "simple.txt"));
+			}
+		}
+	}
+
+	private byte[] readToChannel(ZipFileRandomInput input, String fileName) throws IOException {
+		ZipCentralDirectoryFileEntry entry = input.findDirectoryFileEntry(fileName);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		long num = input.readFileData(entry, Channels.newChannel(baos));
+		assertEquals(baos.size(), num);
+		return baos.toByteArray();
+	}
+}
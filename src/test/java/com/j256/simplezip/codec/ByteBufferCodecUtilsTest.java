@@ -0,0 +1,93 @@
+package com.j256.simplezip.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+public class ByteBufferCodecUtilsTest {
+
+	/** set by the build when the tests are run with the Java 11 classes from the multi-release output */
+	private static final String COPY_FREE_PROPERTY = "simplezip.test.copyFree";
+
+	@Test
+	public void testVersion() {
+		// make sure that we are testing the version of the class that the build expects
+		assertEquals(Boolean.getBoolean(COPY_FREE_PROPERTY), ByteBufferCodecUtils.isCopyFree());
+	}
+
+	@Test
+	public void testRoundTrip() throws DataFormatException {
+		byte[] bytes = new byte[500000];
+		Random random = new Random(1);
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) random.nextInt(20);
+		}
+		for (boolean direct : new boolean[] { false, true }) {
+			ByteBuffer deflated = deflate(toBuffer(bytes, direct), direct);
+			ByteBuffer inflated = inflate(deflated, bytes.length, direct);
+			byte[] result = new byte[inflated.remaining()];
+			inflated.get(result);
+			assertArrayEquals(bytes, result);
+		}
+	}
+
+	private ByteBuffer deflate(ByteBuffer input, boolean direct) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true /* no wrap */);
+		ByteBuffer output = allocate(input.remaining() + 1024, direct);
+		// small chunks of output to make sure that we handle the partial consumption of the input
+		ByteBuffer chunk = allocate(1000, direct);
+		while (input.hasRemaining()) {
+			chunk.clear();
+			ByteBufferCodecUtils.deflate(deflater, input, chunk, Deflater.NO_FLUSH);
+			chunk.flip();
+			output.put(chunk);
+		}
+		deflater.finish();
+		while (!deflater.finished()) {
+			chunk.clear();
+			ByteBufferCodecUtils.deflate(deflater, input, chunk, Deflater.NO_FLUSH);
+			chunk.flip();
+			output.put(chunk);
+		}
+		deflater.end();
+		output.flip();
+		return output;
+	}
+
+	private ByteBuffer inflate(ByteBuffer input, int size, boolean direct) throws DataFormatException {
+		Inflater inflater = new Inflater(true /* no wrap */);
+		ByteBuffer output = allocate(size, direct);
+		ByteBuffer chunk = allocate(777, direct);
+		while (!inflater.finished()) {
+			chunk.clear();
+			ByteBufferCodecUtils.inflate(inflater, input, chunk);
+			chunk.flip();
+			output.put(chunk);
+		}
+		inflater.end();
+		output.flip();
+		return output;
+	}
+
+	private ByteBuffer toBuffer(byte[] bytes, boolean direct) {
+		ByteBuffer buffer = allocate(bytes.length, direct);
+		buffer.put(bytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	private ByteBuffer allocate(int size, boolean direct) {
+		if (direct) {
+			return ByteBuffer.allocateDirect(size);
+		} else {
+			return ByteBuffer.allocate(size);
+		}
+	}
+}
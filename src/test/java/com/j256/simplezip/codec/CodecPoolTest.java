@@ -0,0 +1,133 @@
+package com.j256.simplezip.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+import com.j256.simplezip.RewindableInputStream;
+import com.j256.simplezip.ZipFileInput;
+import com.j256.simplezip.ZipFileOutput;
+import com.j256.simplezip.format.ZipFileHeader;
+
+public class CodecPoolTest {
+
+	@Test
+	public void testInflaters() {
+		CodecPool pool = new CodecPool(1, 100);
+		Inflater inflater1 = pool.borrowInflater();
+		Inflater inflater2 = pool.borrowInflater();
+		assertNotSame(inflater1, inflater2);
+		pool.returnInflater(inflater1);
+		// pool is full so this one is ended and thrown away
+		pool.returnInflater(inflater2);
+		assertSame(inflater1, pool.borrowInflater());
+
+		CodecPool.Stats stats = pool.getInflaterStats();
+		assertEquals(2, stats.getNumCreated());
+		assertEquals(1, stats.getNumReused());
+		assertEquals(1, stats.getNumDiscarded());
+		assertEquals(0, stats.getNumIdle());
+		assertNotNull(stats.toString());
+	}
+
+	@Test
+	public void testDeflaterLevel() throws IOException {
+		CodecPool pool = new CodecPool(2, 100);
+		byte[] bytes = new byte[10000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i % 13);
+		}
+		// the same deflater should be reused with a different level
+		byte[] encoded1 = encode(pool, Deflater.BEST_SPEED, bytes);
+		byte[] encoded2 = encode(pool, Deflater.BEST_COMPRESSION, bytes);
+		assertEquals(1, pool.getDeflaterStats().getNumCreated());
+		assertEquals(1, pool.getDeflaterStats().getNumReused());
+		assertArrayEquals(bytes, decode(pool, encoded1));
+		assertArrayEquals(bytes, decode(pool, encoded2));
+		assertEquals(1, pool.getInflaterStats().getNumCreated());
+		assertEquals(1, pool.getInflaterStats().getNumReused());
+	}
+
+	@Test
+	public void testBuffers() {
+		CodecPool pool = new CodecPool(2, 100);
+		byte[] buffer = pool.borrowBuffer();
+		assertEquals(100, buffer.length);
+		assertEquals(100, pool.getBufferSize());
+		pool.returnBuffer(buffer);
+		// wrong size is ignored
+		pool.returnBuffer(new byte[10]);
+		assertEquals(1, pool.getBufferStats().getNumIdle());
+		assertSame(buffer, pool.borrowBuffer());
+		assertNotNull(pool.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadMaxIdle() {
+		new CodecPool(0, 100);
+	}
+
+	@Test
+	public void testZipFileReuse() throws IOException {
+		CodecPool pool = new CodecPool(4, CodecPool.DEFAULT_BUFFER_SIZE);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ZipFileOutput output = new ZipFileOutput(baos);
+		output.setCodecPool(pool);
+		int numFiles = 20;
+		for (int i = 0; i < numFiles; i++) {
+			output.writeFileHeader(ZipFileHeader.builder().withFileName("file" + i).build());
+			output.writeFileDataAll(("some contents of file " + i).getBytes());
+		}
+		output.close();
+		assertEquals(1, pool.getDeflaterStats().getNumCreated());
+		assertEquals(numFiles - 1, pool.getDeflaterStats().getNumReused());
+
+		ZipFileInput input = new ZipFileInput(new ByteArrayInputStream(baos.toByteArray()));
+		input.setCodecPool(pool);
+		for (int i = 0; i < numFiles; i++) {
+			ZipFileHeader header = input.readFileHeader();
+			assertEquals("file" + i, header.getFileName());
+			assertArrayEquals(("some contents of file " + i).getBytes(), input.readFileDataAll());
+		}
+		input.close();
+		assertEquals(1, pool.getInflaterStats().getNumCreated());
+		assertEquals(numFiles - 1, pool.getInflaterStats().getNumReused());
+	}
+
+	private byte[] encode(CodecPool pool, int level, byte[] bytes) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DeflatorFileDataEncoder encoder = new DeflatorFileDataEncoder(baos, level, pool);
+		encoder.encode(bytes, 0, bytes.length);
+		encoder.close();
+		// a second close should not return the deflater twice
+		encoder.close();
+		return baos.toByteArray();
+	}
+
+	private byte[] decode(CodecPool pool, byte[] encoded) throws IOException {
+		RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(encoded), 1024);
+		InflatorFileDataDecoder decoder = new InflatorFileDataDecoder(input, encoded.length, pool);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		while (true) {
+			int num = decoder.decode(buffer, 0, buffer.length);
+			if (num < 0) {
+				break;
+			}
+			baos.write(buffer, 0, num);
+		}
+		decoder.close();
+		decoder.close();
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,73 @@
+package com.j256.simplezip.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+public class DeflatorFileDataEncoderTest {
+
+	@Test
+	public void testReuseInputBuffer() throws Exception {
+		CodecPool pool = new CodecPool(2, 1024);
+		Random random = new Random(1);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		// tiny output buffer to make sure that we drain it multiple times
+		DeflatorFileDataEncoder encoder = new DeflatorFileDataEncoder(baos, Deflater.BEST_SPEED, pool, 7);
+		byte[] buffer = new byte[10000];
+		for (int i = 0; i < 50; i++) {
+			int length = random.nextInt(buffer.length);
+			for (int j = 0; j < length; j++) {
+				buffer[j] = (byte) random.nextInt(10);
+			}
+			encoder.encode(buffer, 0, length);
+			expected.write(buffer, 0, length);
+			// the encoder should not be referencing our buffer after encode returns
+			Arrays.fill(buffer, (byte) 99);
+		}
+		encoder.close();
+		// the odd sized buffer should not go into the pool
+		assertEquals(0, pool.getBufferStats().getNumIdle());
+		assertArrayEquals(expected.toByteArray(), inflate(baos.toByteArray()));
+	}
+
+	@Test
+	public void testPooledBuffer() throws IOException, DataFormatException {
+		CodecPool pool = new CodecPool(2, 1024);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DeflatorFileDataEncoder encoder = new DeflatorFileDataEncoder(baos, Deflater.DEFAULT_COMPRESSION, pool);
+		byte[] bytes = "hello there, hello there, hello there".getBytes();
+		encoder.encode(bytes, 5, bytes.length - 5);
+		encoder.close();
+		assertEquals(1, pool.getBufferStats().getNumIdle());
+		assertArrayEquals(Arrays.copyOfRange(bytes, 5, bytes.length), inflate(baos.toByteArray()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadOutputSize() {
+		new DeflatorFileDataEncoder(new ByteArrayOutputStream(), Deflater.DEFAULT_COMPRESSION,
+				CodecPool.getDefaultPool(), 0);
+	}
+
+	private byte[] inflate(byte[] bytes) throws DataFormatException {
+		Inflater inflater = new Inflater(true /* no wrap */);
+		inflater.setInput(bytes);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (!inflater.finished()) {
+			int num = inflater.inflate(buffer);
+			baos.write(buffer, 0, num);
+		}
+		inflater.end();
+		return baos.toByteArray();
+	}
+}
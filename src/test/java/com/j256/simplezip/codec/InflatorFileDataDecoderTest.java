@@ -0,0 +1,119 @@
+package com.j256.simplezip.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import com.j256.simplezip.RewindableInputStream;
+
+public class InflatorFileDataDecoderTest {
+
+	@Test
+	public void testUnknownSize() throws IOException {
+		byte[] bytes = randomBytes(300000);
+		byte[] deflated = deflate(bytes);
+		RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(withTrailer(deflated)), 1024);
+		InflatorFileDataDecoder decoder = new InflatorFileDataDecoder(input);
+		assertArrayEquals(bytes, decodeAll(decoder));
+		assertEquals(deflated.length, decoder.getBytesRead());
+		assertEquals(bytes.length, decoder.getBytesWritten());
+		// we should have been rewound to the trailer
+		assertEquals(deflated.length, input.getByteCount());
+		assertEquals(123, input.read());
+		decoder.close();
+	}
+
+	@Test
+	public void testKnownSize() throws IOException {
+		byte[] bytes = randomBytes(300000);
+		byte[] deflated = deflate(bytes);
+		// small rewind buffer which would fail if the decoder tried to rewind its large chunks
+		RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(withTrailer(deflated)), 10);
+		InflatorFileDataDecoder decoder = new InflatorFileDataDecoder(input, deflated.length);
+		assertArrayEquals(bytes, decodeAll(decoder));
+		assertEquals(deflated.length, decoder.getBytesRead());
+		assertEquals(bytes.length, decoder.getBytesWritten());
+		assertEquals(deflated.length, input.getByteCount());
+		assertEquals(123, input.read());
+		decoder.close();
+	}
+
+	@Test
+	public void testKnownSizeExtraBytes() throws IOException {
+		byte[] bytes = randomBytes(1000);
+		byte[] deflated = deflate(bytes);
+		// the compressed size includes some extra bytes after the deflated data which should be skipped
+		byte[] padded = Arrays.copyOf(deflated, deflated.length + 10);
+		RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(withTrailer(padded)), 10);
+		InflatorFileDataDecoder decoder = new InflatorFileDataDecoder(input, padded.length);
+		assertArrayEquals(bytes, decodeAll(decoder));
+		assertEquals(padded.length, decoder.getBytesRead());
+		assertEquals(123, input.read());
+		decoder.close();
+	}
+
+	@Test(expected = EOFException.class)
+	public void testKnownSizeTooSmall() throws IOException {
+		byte[] bytes = randomBytes(1000);
+		byte[] deflated = deflate(bytes);
+		RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(deflated), 10);
+		InflatorFileDataDecoder decoder = new InflatorFileDataDecoder(input, deflated.length / 2);
+		try {
+			decodeAll(decoder);
+		} finally {
+			decoder.close();
+		}
+	}
+
+	private byte[] randomBytes(int size) {
+		Random random = new Random(size);
+		byte[] bytes = new byte[size];
+		// only some of the values so the data compresses a bit
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) random.nextInt(16);
+		}
+		return bytes;
+	}
+
+	private byte[] deflate(byte[] bytes) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true /* no wrap */);
+		deflater.setInput(bytes);
+		deflater.finish();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			int num = deflater.deflate(buffer);
+			baos.write(buffer, 0, num);
+		}
+		deflater.end();
+		return baos.toByteArray();
+	}
+
+	private byte[] withTrailer(byte[] bytes) {
+		byte[] result = Arrays.copyOf(bytes, bytes.length + 1);
+		result[bytes.length] = 123;
+		return result;
+	}
+
+	private byte[] decodeAll(InflatorFileDataDecoder decoder) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (true) {
+			int num = decoder.decode(buffer, 0, buffer.length);
+			if (num < 0) {
+				break;
+			}
+			baos.write(buffer, 0, num);
+		}
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,165 @@
+package com.j256.simplezip.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelDeflatorFileDataEncoderTest {
+
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void beforeClass() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testManyBlocks() throws Exception {
+		byte[] bytes = randomBytes(1000000);
+		// small block size and pending so we go through all of the paths
+		testRoundTrip(bytes, 40000, 3, bytes.length);
+		testRoundTrip(bytes, 40000, 1, 12345);
+		testRoundTrip(bytes, 100, 2, 777);
+	}
+
+	@Test
+	public void testExactBlocks() throws Exception {
+		byte[] bytes = randomBytes(100000);
+		testRoundTrip(bytes, 50000, 4, 50000);
+	}
+
+	@Test
+	public void testSingleBlock() throws Exception {
+		byte[] bytes = randomBytes(1000);
+		testRoundTrip(bytes, ParallelDeflatorFileDataEncoder.DEFAULT_BLOCK_SIZE,
+				ParallelDeflatorFileDataEncoder.DEFAULT_MAX_PENDING_BLOCKS, bytes.length);
+	}
+
+	@Test
+	public void testPooledDeflaterOtherLevel() throws Exception {
+		CodecPool codecPool = new CodecPool(1, CodecPool.DEFAULT_BUFFER_SIZE);
+		// the pooled deflater has to change level before the first block
+		codecPool.returnDeflater(codecPool.borrowDeflater(Deflater.BEST_COMPRESSION));
+		byte[] bytes = randomBytes(100000);
+		testRoundTrip(bytes, codecPool, 50000, 1, bytes.length);
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		testRoundTrip(new byte[0], 1000, 2, 1);
+	}
+
+	@Test(timeout = 10000)
+	public void testExecutorBusy() throws Exception {
+		// like when the executor's only thread is itself writing a zip and waiting on us
+		ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+		final CountDownLatch latch = new CountDownLatch(1);
+		try {
+			busyExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						latch.await();
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			byte[] bytes = randomBytes(300000);
+			testRoundTrip(bytes, CodecPool.getDefaultPool(), busyExecutor, 40000, 2, 10000);
+		} finally {
+			latch.countDown();
+			busyExecutor.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEncodeAfterClose() throws IOException {
+		ParallelDeflatorFileDataEncoder encoder =
+				new ParallelDeflatorFileDataEncoder(new ByteArrayOutputStream(), Deflater.BEST_SPEED, executor);
+		encoder.close();
+		// second close is a no-op
+		encoder.close();
+		encoder.encode(new byte[1], 0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadBlockSize() {
+		new ParallelDeflatorFileDataEncoder(new ByteArrayOutputStream(), Deflater.BEST_SPEED,
+				CodecPool.getDefaultPool(), executor, 0, 1);
+	}
+
+	private void testRoundTrip(byte[] bytes, int blockSize, int maxPending, int writeSize)
+			throws IOException, DataFormatException {
+		testRoundTrip(bytes, CodecPool.getDefaultPool(), blockSize, maxPending, writeSize);
+	}
+
+	private void testRoundTrip(byte[] bytes, CodecPool codecPool, int blockSize, int maxPending, int writeSize)
+			throws IOException, DataFormatException {
+		testRoundTrip(bytes, codecPool, executor, blockSize, maxPending, writeSize);
+	}
+
+	private void testRoundTrip(byte[] bytes, CodecPool codecPool, ExecutorService executor, int blockSize,
+			int maxPending, int writeSize) throws IOException, DataFormatException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ParallelDeflatorFileDataEncoder encoder = new ParallelDeflatorFileDataEncoder(baos,
+				Deflater.DEFAULT_COMPRESSION, codecPool, executor, blockSize, maxPending);
+		for (int offset = 0; offset < bytes.length; offset += writeSize) {
+			encoder.encode(bytes, offset, Math.min(writeSize, bytes.length - offset));
+		}
+		encoder.close();
+		assertEquals(bytes.length, encoder.getByteCount());
+		assertEquals(crc(bytes, 0, bytes.length), encoder.getCrc32());
+		assertArrayEquals(bytes, inflate(baos.toByteArray()));
+	}
+
+	private long crc(byte[] bytes, int offset, int length) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(bytes, offset, length);
+		return crc32.getValue();
+	}
+
+	private byte[] randomBytes(int size) {
+		Random random = new Random(size);
+		byte[] bytes = new byte[size];
+		// only some of the values so the data compresses a bit
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) random.nextInt(16);
+		}
+		return bytes;
+	}
+
+	private byte[] inflate(byte[] bytes) throws DataFormatException {
+		Inflater inflater = new Inflater(true /* no wrap */);
+		inflater.setInput(bytes);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (!inflater.finished()) {
+			int num = inflater.inflate(buffer);
+			baos.write(buffer, 0, num);
+		}
+		// make sure the stream finished at the end of our bytes
+		assertEquals(0, inflater.getRemaining());
+		inflater.end();
+		return baos.toByteArray();
+	}
+}
@@ -19,7 +19,9 @@ import com.j256.simplezip.format.ZipFileHeader;
 
 /**
  * Copies a zip/jar/war file by reading it in with a ZipFileInput and writing it out with ZipFileOutput. With this
- * example you can see the mechanisms used to duplicate the Zip data while giving you full control of all fields.
+ * example you can see the mechanisms used to duplicate the Zip data while giving you full control of all fields. To
+ * copy selected entries verbatim, see {@link ZipFileOutput#copyRawEntry(com.j256.simplezip.ZipFileRandomInput,
+ * ZipCentralDirectoryFileEntry)}.
  * 
  * @author graywatson
  */
@@ -9,6 +9,8 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.junit.Test;
 
@@ -85,6 +87,27 @@ public class ZipCentralDirectoryEndTest {
 				.read(new RewindableInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }), 1024)));
 	}
 
+	@Test
+	public void testReadBuffer() throws IOException {
+		Builder builder = ZipCentralDirectoryEnd.builder();
+		builder.setDirectorySize(IoUtils.MAX_UNSIGNED_INT_VALUE - 1);
+		builder.setDirectoryOffset(IoUtils.MAX_UNSIGNED_INT_VALUE - 2);
+		builder.setCommentBytes("hello".getBytes());
+		ZipCentralDirectoryEnd end = builder.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		end.write(baos);
+		ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		ZipCentralDirectoryEnd read = ZipCentralDirectoryEnd.read(buffer);
+		assertEquals(end.getDirectorySize(), read.getDirectorySize());
+		assertEquals(end.getDirectoryOffset(), read.getDirectoryOffset());
+		assertEquals("hello", read.getComment());
+		assertFalse(buffer.hasRemaining());
+
+		buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5 }).order(ByteOrder.LITTLE_ENDIAN);
+		assertNull(ZipCentralDirectoryEnd.read(buffer));
+		assertEquals(0, buffer.position());
+	}
+
 	@Test
 	public void testNeedsZip64() {
 		Builder builder = ZipCentralDirectoryEnd.builder();
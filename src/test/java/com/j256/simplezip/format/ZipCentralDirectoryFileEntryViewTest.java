@@ -0,0 +1,158 @@
+package com.j256.simplezip.format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import com.j256.simplezip.IoUtils;
+import com.j256.simplezip.format.extra.Zip64ExtraField;
+
+public class ZipCentralDirectoryFileEntryViewTest {
+
+	@Test
+	public void testStuff() throws IOException {
+		ZipCentralDirectoryFileEntry.Builder builder = ZipCentralDirectoryFileEntry.builder();
+		builder.setVersionMade(1);
+		builder.setVersionNeeded(2);
+		builder.setGeneralPurposeFlags(GeneralPurposeFlag.DEFLATING_MAXIMUM.getValue());
+		builder.setCompressionMethod(CompressionMethod.DEFLATED.getValue());
+		builder.setLastModifiedTime(3);
+		builder.setLastModifiedDate(4);
+		builder.setCrc32(0xFFFFFFF0L);
+		builder.setCompressedSize(5);
+		builder.setUncompressedSize(6);
+		builder.setDiskNumberStart(7);
+		builder.setInternalFileAttributes(8);
+		builder.setExternalFileAttributes(9);
+		builder.setRelativeOffsetOfLocalHeader(10);
+		builder.setFileName("hello");
+		builder.setCommentBytes("comment".getBytes());
+		ZipCentralDirectoryFileEntry entry = builder.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		// some bytes in front
+		baos.write(new byte[] { 1, 2, 3 });
+		entry.write(baos);
+
+		ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		ZipCentralDirectoryFileEntryView view = new ZipCentralDirectoryFileEntryView(buffer, 3);
+		assertEquals(entry.getVersionMade(), view.getVersionMade());
+		assertEquals(entry.getVersionNeeded(), view.getVersionNeeded());
+		assertEquals(entry.getGeneralPurposeFlags(), view.getGeneralPurposeFlags());
+		assertTrue(view.hasFlag(GeneralPurposeFlag.DEFLATING_MAXIMUM));
+		assertEquals(entry.getCompressionMethod(), view.getCompressionMethod());
+		assertEquals(entry.getLastModifiedTime(), view.getLastModifiedTime());
+		assertEquals(entry.getLastModifiedDate(), view.getLastModifiedDate());
+		assertEquals(entry.getCrc32(), view.getCrc32());
+		assertEquals(entry.getCompressedSize(), view.getCompressedSize());
+		assertEquals(entry.getCompressedSize(), view.getZip64CompressedSize());
+		assertEquals(entry.getUncompressedSize(), view.getUncompressedSize());
+		assertEquals(entry.getUncompressedSize(), view.getZip64UncompressedSize());
+		assertEquals(entry.getDiskNumberStart(), view.getDiskNumberStart());
+		assertEquals(entry.getInternalFileAttributes(), view.getInternalFileAttributes());
+		assertEquals(entry.getExternalFileAttributes(), view.getExternalFileAttributes());
+		assertEquals(entry.getRelativeOffsetOfLocalHeader(), view.getRelativeOffsetOfLocalHeader());
+		assertEquals(entry.getRelativeOffsetOfLocalHeader(), view.getZip64RelativeOffsetOfLocalHeader());
+		assertEquals("hello", view.getFileName());
+		assertTrue(view.fileNameEquals("hello".getBytes()));
+		assertFalse(view.fileNameEquals("hellp".getBytes()));
+		assertFalse(view.fileNameEquals("hell".getBytes()));
+		assertEquals(5, view.getFileNameBytes().remaining());
+		assertEquals('h', view.getFileNameBytes().get(0));
+		assertEquals(0, view.getExtraFieldBytes().remaining());
+		assertEquals("comment".length(), view.getCommentBytes().remaining());
+		assertNull(view.getZip64ExtraField());
+		assertEquals(baos.size() - 3, view.getRecordSize());
+		assertEquals(3, view.getOffset());
+		assertNotNull(view.toString());
+		assertEquals("hello", view.toEntry().getFileName());
+
+		assertFalse(view.wrap(buffer, 0));
+		assertFalse(view.wrap(buffer, 4));
+		// truncated
+		assertFalse(view.wrap((ByteBuffer) buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).limit(buffer.limit() - 1),
+				3));
+	}
+
+	@Test
+	public void testZip64() {
+		ZipCentralDirectoryFileEntry.Builder builder = ZipCentralDirectoryFileEntry.builder();
+		builder.setFileName("hello");
+		long size = IoUtils.MAX_UNSIGNED_INT_VALUE + 100;
+		builder.setCompressedSize(size);
+		builder.setUncompressedSize(size + 1);
+		builder.setRelativeOffsetOfLocalHeader(size + 2);
+		ByteBuffer buffer = toBuffer(builder.build());
+
+		ZipCentralDirectoryFileEntryView view = new ZipCentralDirectoryFileEntryView(buffer, 0);
+		Zip64ExtraField zip64 = view.getZip64ExtraField();
+		assertNotNull(zip64);
+		assertEquals(IoUtils.MAX_UNSIGNED_INT_VALUE, view.getCompressedSize());
+		assertEquals(size, view.getZip64CompressedSize());
+		assertEquals(size + 1, view.getZip64UncompressedSize());
+		assertEquals(size + 2, view.getZip64RelativeOffsetOfLocalHeader());
+	}
+
+	@Test
+	public void testIterator() {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int i = 0; i < 10; i++) {
+			ZipCentralDirectoryFileEntry.Builder builder = ZipCentralDirectoryFileEntry.builder();
+			builder.setFileName("file" + i);
+			byte[] bytes = toBuffer(builder.build()).array();
+			baos.write(bytes, 0, bytes.length);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		Iterator<ZipCentralDirectoryFileEntryView> iterator = ZipCentralDirectoryFileEntryView.iterator(buffer);
+		ZipCentralDirectoryFileEntryView first = null;
+		for (int i = 0; i < 10; i++) {
+			assertTrue(iterator.hasNext());
+			ZipCentralDirectoryFileEntryView view = iterator.next();
+			if (first == null) {
+				first = view;
+			} else {
+				// same instance is reused
+				assertTrue(first == view);
+			}
+			assertEquals("file" + i, view.getFileName());
+		}
+		assertFalse(iterator.hasNext());
+		try {
+			iterator.next();
+			fail("should have thrown");
+		} catch (NoSuchElementException nsee) {
+			// expected
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBigEndian() {
+		new ZipCentralDirectoryFileEntryView().wrap(ByteBuffer.allocate(100), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoRecord() {
+		new ZipCentralDirectoryFileEntryView(ByteBuffer.allocate(100).order(ByteOrder.LITTLE_ENDIAN), 0);
+	}
+
+	private ByteBuffer toBuffer(ZipCentralDirectoryFileEntry entry) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			entry.write(baos);
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+		return ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
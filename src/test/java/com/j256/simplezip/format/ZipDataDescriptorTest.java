@@ -133,4 +133,23 @@ public class ZipDataDescriptorTest {
 		assertEquals(compressedSize, dataDesc.getCompressedSize());
 		assertEquals(uncompressedSize, dataDesc.getUncompressedSize());
 	}
+
+	@Test
+	public void testReadUnsignedValues() throws IOException {
+		long crc32 = 0xFEDCBA98L;
+		long compressedSize = 0xF0000000L;
+		long uncompressedSize = 0xF1000000L;
+		Builder builder = ZipDataDescriptor.builder();
+		builder.setCrc32(crc32);
+		builder.setCompressedSize(compressedSize);
+		builder.setUncompressedSize(uncompressedSize);
+		ZipDataDescriptor dataDesc = builder.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		dataDesc.write(baos);
+		dataDesc = ZipDataDescriptor.read(new RewindableInputStream(new ByteArrayInputStream(baos.toByteArray()), 1024),
+				compressedSize, uncompressedSize);
+		assertEquals(crc32, dataDesc.getCrc32());
+		assertEquals(compressedSize, dataDesc.getCompressedSize());
+		assertEquals(uncompressedSize, dataDesc.getUncompressedSize());
+	}
 }
@@ -359,6 +359,29 @@ public class ZipFileHeaderTest {
 				result.getGeneralPurposeFlagsAsEnums());
 	}
 
+	@Test
+	public void testReadUnsignedSizes() throws IOException {
+		long compressedSize = 0xF0000000L;
+		long uncompressedSize = 0xF1000000L;
+		ZipFileHeader header = ZipFileHeader.builder()
+				.withFileName("hello.txt")
+				.withCompressedSize(compressedSize)
+				.withUncompressedSize(uncompressedSize)
+				.withCrc32(0xFEDCBA98L)
+				.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		header.write(baos);
+		baos.write(123);
+		RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(baos.toByteArray()), 1024);
+		ZipFileHeader result = ZipFileHeader.read(input);
+		assertEquals("hello.txt", result.getFileName());
+		assertEquals(compressedSize, result.getCompressedSize());
+		assertEquals(uncompressedSize, result.getUncompressedSize());
+		assertEquals(0xFEDCBA98L, result.getCrc32());
+		// the stream should be right after the header
+		assertEquals(123, input.read());
+	}
+
 	@Test
 	public void testHasFlags() {
 		Builder builder = ZipFileHeader.builder();
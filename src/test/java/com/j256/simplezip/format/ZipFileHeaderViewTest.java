@@ -0,0 +1,99 @@
+package com.j256.simplezip.format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import com.j256.simplezip.IoUtils;
+import com.j256.simplezip.format.extra.Zip64ExtraField;
+
+public class ZipFileHeaderViewTest {
+
+	@Test
+	public void testStuff() throws IOException {
+		ZipFileHeader header = ZipFileHeader.builder()
+				.withVersionNeeded(2)
+				.withGeneralPurposeFlags(GeneralPurposeFlag.DEFLATING_MAXIMUM)
+				.withCompressionMethod(CompressionMethod.DEFLATED)
+				.withLastModifiedTime(3)
+				.withLastModifiedDate(4)
+				.withCrc32(0xFFFFFFF0L)
+				.withCompressedSize(5)
+				.withUncompressedSize(6)
+				.withFileName("hello")
+				.withExtraFieldBytes(new byte[] { 7, 8, 9, 10 })
+				.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		header.write(baos);
+
+		ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		ZipFileHeaderView view = new ZipFileHeaderView(buffer, 0);
+		assertEquals(header.getVersionNeeded(), view.getVersionNeeded());
+		assertEquals(header.getGeneralPurposeFlags(), view.getGeneralPurposeFlags());
+		assertTrue(view.hasFlag(GeneralPurposeFlag.DEFLATING_MAXIMUM));
+		assertEquals(header.getCompressionMethod(), view.getCompressionMethod());
+		assertEquals(header.getLastModifiedTime(), view.getLastModifiedTime());
+		assertEquals(header.getLastModifiedDate(), view.getLastModifiedDate());
+		assertEquals(header.getCrc32(), view.getCrc32());
+		assertEquals(header.getCompressedSize(), view.getCompressedSize());
+		assertEquals(header.getUncompressedSize(), view.getUncompressedSize());
+		assertEquals("hello", view.getFileName());
+		assertEquals(5, view.getFileNameBytes().remaining());
+		assertEquals(4, view.getExtraFieldBytes().remaining());
+		assertEquals(7, view.getExtraFieldBytes().get(0));
+		assertNull(view.getZip64ExtraField());
+		assertFalse(view.hasZip64ExtraField());
+		assertEquals(baos.size(), view.getRecordSize());
+		assertNotNull(view.toString());
+		assertEquals("hello", view.toHeader().getFileName());
+
+		assertFalse(view.wrap(buffer, 1));
+		assertFalse(view.wrap(buffer, -1));
+	}
+
+	@Test
+	public void testZip64() throws IOException {
+		long size = IoUtils.MAX_UNSIGNED_INT_VALUE + 100;
+		ZipFileHeader header = ZipFileHeader.builder()
+				.withFileName("hello")
+				.withZip64ExtraField(Zip64ExtraField.builder().withCompressedSize(size).build())
+				.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		header.write(baos);
+		ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		ZipFileHeaderView view = new ZipFileHeaderView(buffer, 0);
+		assertNotNull(view.getZip64ExtraField());
+		assertEquals(size, view.getZip64ExtraField().getCompressedSize());
+		assertTrue(view.hasZip64ExtraField());
+	}
+
+	@Test
+	public void testShortZip64ExtraField() throws IOException {
+		// some writers only put the sizes in the file-header zip64 field
+		ByteBuffer extraBuffer = ByteBuffer.allocate(4 + 4 + 4 + 16).order(ByteOrder.LITTLE_ENDIAN);
+		extraBuffer.putShort((short) 0x1234).putShort((short) 4).putInt(0);
+		extraBuffer.putShort((short) Zip64ExtraField.EXPECTED_ID).putShort((short) 16).putLong(0).putLong(0);
+		ZipFileHeader header =
+				ZipFileHeader.builder().withFileName("hello").withExtraFieldBytes(extraBuffer.array()).build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		header.write(baos);
+		ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		ZipFileHeaderView view = new ZipFileHeaderView(buffer, 0);
+		assertNull(view.getZip64ExtraField());
+		assertTrue(view.hasZip64ExtraField());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoRecord() {
+		new ZipFileHeaderView(ByteBuffer.allocate(100).order(ByteOrder.LITTLE_ENDIAN), 0);
+	}
+}